@@ -0,0 +1,80 @@
+package de.hetzge.eclipse.aicoder;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Minimal JMH style harness for the test runtime: the operation is warmed up and then repeated for a fixed time. Reports the average time per operation and, like the JMH GC profiler, the
+ * bytes allocated per operation and the garbage collections during the measurement.
+ */
+public final class MicroBenchmark {
+
+	private static volatile int sink;
+
+	public record Result(
+			String name,
+			long operationCount,
+			double nanosPerOperation,
+			double bytesPerOperation, // -1 if the JVM can't measure allocations
+			long gcCount,
+			long gcMillis) {
+
+		@Override
+		public String toString() {
+			return String.format("%-45s %12.1f ns/op %14.0f B/op %6d gc %6d ms gc (%d ops)", this.name, this.nanosPerOperation, this.bytesPerOperation, this.gcCount, this.gcMillis, this.operationCount);
+		}
+	}
+
+	private MicroBenchmark() {
+	}
+
+	public static Result run(String name, Duration warmupDuration, Duration measurementDuration, Supplier<?> operation) {
+		loop(warmupDuration, operation);
+		final long beforeGcCount = getGcCount();
+		final long beforeGcMillis = getGcMillis();
+		final long beforeAllocatedBytes = getAllocatedBytes();
+		final long beforeNanos = System.nanoTime();
+		final long operationCount = loop(measurementDuration, operation);
+		final long nanos = System.nanoTime() - beforeNanos;
+		final long allocatedBytes = getAllocatedBytes() - beforeAllocatedBytes;
+		final Result result = new Result(
+				name,
+				operationCount,
+				(double) nanos / operationCount,
+				beforeAllocatedBytes >= 0 ? (double) allocatedBytes / operationCount : -1,
+				getGcCount() - beforeGcCount,
+				getGcMillis() - beforeGcMillis);
+		System.out.println(result);
+		return result;
+	}
+
+	private static long loop(Duration duration, Supplier<?> operation) {
+		final long endNanos = System.nanoTime() + duration.toNanos();
+		long operationCount = 0;
+		do {
+			// consume the result, so that the JIT can't remove the operation
+			sink += System.identityHashCode(operation.get());
+			operationCount++;
+		} while (System.nanoTime() < endNanos);
+		return operationCount;
+	}
+
+	private static long getAllocatedBytes() {
+		final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof final com.sun.management.ThreadMXBean allocationThreadMXBean && allocationThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+			return allocationThreadMXBean.getCurrentThreadAllocatedBytes();
+		}
+		return -1;
+	}
+
+	private static long getGcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+	}
+
+	private static long getGcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+	}
+}
@@ -0,0 +1,154 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.eclipse.jface.text.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import de.hetzge.eclipse.aicoder.CompletionMode;
+import de.hetzge.eclipse.aicoder.MicroBenchmark;
+import de.hetzge.eclipse.aicoder.history.AiCoderHistoryEntry;
+import de.hetzge.eclipse.aicoder.inline.InlineCompletion;
+import de.hetzge.eclipse.aicoder.llm.LlmTokenizer;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import de.hetzge.eclipse.aicoder.util.DiffUtils;
+import de.hetzge.eclipse.aicoder.util.JinjaUtils;
+import de.hetzge.eclipse.aicoder.util.Utils;
+
+/**
+ * Baseline of the CPU bound code that runs on every trigger or accept, with realistic input sizes (5000 line files, packages with 300 types). Runs as plugin test with
+ * -Daicoder.benchmark=true.
+ */
+@EnabledIfSystemProperty(named = "aicoder.benchmark", matches = "true")
+class HotPathBenchmarkTest {
+
+	private static final Duration WARMUP = Duration.ofSeconds(2);
+	private static final Duration MEASUREMENT = Duration.ofSeconds(5);
+	private static final int FILE_LINE_COUNT = 5000;
+	private static final int PACKAGE_TYPE_COUNT = 300;
+	private static final int TYPE_MEMBER_COUNT = 20;
+
+	@Test
+	void benchmark_context_entry_apply() {
+		final BenchmarkContextEntry packageEntry = new BenchmarkContextEntry("package", "de.hetzge.benchmark", IntStream.range(0, PACKAGE_TYPE_COUNT)
+				.mapToObj(typeIndex -> new BenchmarkContextEntry("type", "Type" + typeIndex, IntStream.range(0, TYPE_MEMBER_COUNT)
+						.mapToObj(memberIndex -> new BenchmarkContextEntry("member", String.format("public String method%d_%d(int value, String text) { return text + value; }", typeIndex, memberIndex), List.of()))
+						.toList()))
+				.toList());
+		final RootContextEntry rootContextEntry = new RootContextEntry(List.of(packageEntry), Duration.ZERO);
+		run("ContextEntry.apply (300 types)", () -> ContextEntry.apply(rootContextEntry, new ContextContext(0, LlmTokenizer.APPROXIMATE)));
+	}
+
+	@Test
+	void benchmark_diff() {
+		final String oldContent = createJavaFile(FILE_LINE_COUNT);
+		final String newContent = oldContent.lines()
+				.map(line -> line.contains("field1") ? line.replace("field1", "renamed1") : line)
+				.collect(Collectors.joining("\n"));
+		run("DiffUtils.diff (5000 lines)", () -> DiffUtils.diff(oldContent, newContent));
+	}
+
+	@Test
+	void benchmark_inline_completion_create() {
+		final Document document = new Document(createJavaFile(FILE_LINE_COUNT));
+		final int modelOffset = document.getLength() / 2;
+		final String content = IntStream.range(0, 10).mapToObj(i -> "\t\tSystem.out.println(" + i + ");").collect(Collectors.joining("\n"));
+		final AiCoderHistoryEntry historyEntry = new AiCoderHistoryEntry(CompletionMode.INLINE, "Main.java", "");
+		run("InlineCompletion.create (5000 lines)", () -> {
+			try {
+				return InlineCompletion.create(historyEntry, document, modelOffset, modelOffset, 0, content, 16, 0);
+			} catch (final Exception exception) {
+				throw new RuntimeException(exception);
+			}
+		});
+	}
+
+	@Test
+	void benchmark_count_approximate_tokens() {
+		final String content = createJavaFile(FILE_LINE_COUNT);
+		run("Utils.countApproximateTokens (5000 lines)", () -> Utils.countApproximateTokens(content));
+	}
+
+	@Test
+	void benchmark_merge_code_locations() {
+		final List<String> lines = createJavaFile(400).lines().toList();
+		final LastEditsContextEntry.CodeLocation locationA = new LastEditsContextEntry.CodeLocation("Main.java", 0, 249, String.join("\n", lines.subList(0, 250)));
+		final LastEditsContextEntry.CodeLocation locationB = new LastEditsContextEntry.CodeLocation("Main.java", 150, 399, String.join("\n", lines.subList(150, 400)));
+		run("CodeLocation.mergeContent (400 lines)", () -> locationA.merge(locationB));
+	}
+
+	@Test
+	void benchmark_apply_template() {
+		final List<String> lines = createJavaFile(FILE_LINE_COUNT).lines().toList();
+		final String prefix = String.join("\n", lines.subList(0, FILE_LINE_COUNT / 2));
+		final String suffix = String.join("\n", lines.subList(FILE_LINE_COUNT / 2, lines.size()));
+		final String template = AiCoderPreferences.getOpenAiFimTemplate();
+		run("JinjaUtils.applyTemplate (5000 lines)", () -> JinjaUtils.applyTemplate(template, Map.ofEntries(
+				Map.entry("prefix", prefix),
+				Map.entry("suffix", suffix))));
+	}
+
+	@Test
+	void benchmark_key_string() {
+		final ContextEntryKey key = new ContextEntryKey(TypeContextEntry.PREFIX, "de.hetzge.eclipse.aicoder.context.ContextEntryKey");
+		run("ContextEntryKey.getKeyString", key::getKeyString);
+	}
+
+	private static void run(String name, Supplier<?> operation) {
+		final MicroBenchmark.Result result = MicroBenchmark.run(name, WARMUP, MEASUREMENT, operation);
+		assertTrue(result.operationCount() > 0);
+	}
+
+	private static String createJavaFile(int lineCount) {
+		final List<String> lines = new ArrayList<>();
+		lines.add("package de.hetzge.benchmark;");
+		lines.add("");
+		lines.add("public class Main {");
+		for (int i = 0; lines.size() < lineCount - 1; i++) {
+			lines.add(switch (i % 5) {
+			case 0 -> "\tprivate int field" + i + " = " + i + ";";
+			case 1 -> "\tpublic int getField" + i + "() {";
+			case 2 -> "\t\treturn this.field" + (i - 2) + " * 2; // doubled";
+			case 3 -> "\t}";
+			default -> "";
+			});
+		}
+		lines.add("}");
+		return String.join("\n", lines);
+	}
+
+	private static final class BenchmarkContextEntry extends ContextEntry {
+		private final String prefix;
+		private final String value;
+
+		private BenchmarkContextEntry(String prefix, String value, List<BenchmarkContextEntry> childContextEntries) {
+			super(childContextEntries, Duration.ZERO);
+			this.prefix = prefix;
+			this.value = value;
+		}
+
+		@Override
+		public ContextEntryKey getKey() {
+			return new ContextEntryKey(this.prefix, this.value);
+		}
+
+		@Override
+		public String getLabel() {
+			return this.value;
+		}
+
+		@Override
+		public String getContent(ContextContext context) {
+			return this.value + "\n" + super.getContent(context);
+		}
+	}
+}
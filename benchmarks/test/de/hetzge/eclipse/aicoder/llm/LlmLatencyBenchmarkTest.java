@@ -0,0 +1,216 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.text.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.context.ContextContext;
+import de.hetzge.eclipse.aicoder.context.ContextEntry;
+import de.hetzge.eclipse.aicoder.context.FillInMiddleContextEntry;
+import de.hetzge.eclipse.aicoder.context.RootContextEntry;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+
+/**
+ * Measures the latency the plugin adds on top of the model: requests are sent to a local {@link MockLlmServer} and the time the server spends on purpose (latency and token rate) is
+ * subtracted. Runs as plugin test (the preferences are needed) and offline.
+ */
+class LlmLatencyBenchmarkTest {
+
+	private static final int WARMUP_ITERATIONS = 20;
+	private static final int ITERATIONS = 100;
+	private static final long MAX_MEDIAN_OVERHEAD_MS = 50;
+	private static final String[] PREFERENCE_KEYS = {
+			AiCoderPreferences.OLLAMA_BASE_URL_KEY,
+			AiCoderPreferences.OPENAI_BASE_URL_KEY,
+			AiCoderPreferences.CODESTRAL_BASE_URL_KEY,
+			AiCoderPreferences.FILL_IN_MIDDLE_PROVIDER_KEY,
+			AiCoderPreferences.FILL_IN_MIDDLE_MODEL_KEY,
+			AiCoderPreferences.EDIT_PROVIDER_KEY,
+			AiCoderPreferences.EDIT_MODEL_KEY,
+			AiCoderPreferences.ENABLE_STREAMING_KEY,
+			AiCoderPreferences.RESPONSE_CACHE_SIZE_KEY };
+
+	private MockLlmServer server;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		this.server = new MockLlmServer();
+		final IPreferenceStore store = getStore();
+		store.setValue(AiCoderPreferences.OLLAMA_BASE_URL_KEY, this.server.getBaseUrl());
+		store.setValue(AiCoderPreferences.OPENAI_BASE_URL_KEY, this.server.getBaseUrl());
+		store.setValue(AiCoderPreferences.CODESTRAL_BASE_URL_KEY, this.server.getBaseUrl());
+		store.setValue(AiCoderPreferences.RESPONSE_CACHE_SIZE_KEY, 0);
+	}
+
+	@AfterEach
+	void tearDown() {
+		this.server.close();
+		final IPreferenceStore store = getStore();
+		for (final String key : PREFERENCE_KEYS) {
+			store.setToDefault(key);
+		}
+	}
+
+	@Test
+	void benchmark_ollama_streaming() throws Exception {
+		configure(LlmProvider.OLLAMA, true);
+		assertOverhead("Ollama streaming", Duration.ZERO, index -> executeFillInTheMiddle(index));
+	}
+
+	@Test
+	void benchmark_openai_text_completion_streaming() throws Exception {
+		configure(LlmProvider.OPENAI, true);
+		assertOverhead("OpenAI completions streaming", Duration.ZERO, index -> executeFillInTheMiddle(index));
+	}
+
+	@Test
+	void benchmark_mistral_fim_non_streaming() throws Exception {
+		configure(LlmProvider.MISTRAL, false);
+		assertOverhead("Mistral FIM", Duration.ZERO, index -> executeFillInTheMiddle(index));
+	}
+
+	@Test
+	void benchmark_openai_chat_completion() throws Exception {
+		getStore().setValue(AiCoderPreferences.EDIT_PROVIDER_KEY, LlmProvider.OPENAI.name());
+		getStore().setValue(AiCoderPreferences.EDIT_MODEL_KEY, "mock");
+		assertOverhead("OpenAI chat completions", Duration.ZERO, index -> LlmUtils.executeEdit("system", "Change " + index));
+	}
+
+	@Test
+	void benchmark_streaming_with_model_latency() throws Exception {
+		configure(LlmProvider.OLLAMA, true);
+		this.server.completion("a b c d e f g h i j").latency(Duration.ofMillis(30)).tokensPerSecond(500);
+		// 30 ms until the first token and 9 times 2 ms for the following ones
+		assertOverhead("Ollama streaming (simulated model)", Duration.ofMillis(30 + 9 * 2), index -> executeFillInTheMiddle(index));
+	}
+
+	@Test
+	void benchmark_context_pipeline() throws Exception {
+		final StringBuilder builder = new StringBuilder("package test;\n\npublic class Main {\n");
+		for (int i = 0; i < 2000; i++) {
+			builder.append("\tprivate int field").append(i).append(" = ").append(i).append(";\n");
+		}
+		builder.append("}\n");
+		final Document document = new Document(builder.toString());
+		final int offset = document.getLength() / 2;
+		final List<Long> durations = new ArrayList<>();
+		for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+			final long before = System.nanoTime();
+			final RootContextEntry rootContextEntry = new RootContextEntry(List.of(FillInMiddleContextEntry.create("Main.java", document, offset)), Duration.ZERO);
+			final String content = ContextEntry.apply(rootContextEntry, new ContextContext(8192, LlmTokenizer.APPROXIMATE));
+			if (i >= WARMUP_ITERATIONS) {
+				durations.add(System.nanoTime() - before);
+			}
+			assertTrue(content.contains(FillInMiddleContextEntry.FILL_HERE_PLACEHOLDER));
+		}
+		report("Context pipeline", durations);
+		assertTrue(percentile(durations, 50) < TimeUnit.MILLISECONDS.toNanos(MAX_MEDIAN_OVERHEAD_MS));
+	}
+
+	@Test
+	void test_error_status() throws Exception {
+		configure(LlmProvider.OLLAMA, false);
+		this.server.failNext(1, 500);
+		final LlmResponse errorResponse = executeFillInTheMiddle(0).get(10, TimeUnit.SECONDS);
+		assertTrue(errorResponse.isError());
+		assertEquals(500, errorResponse.getStatusCode());
+		final LlmResponse response = executeFillInTheMiddle(1).get(10, TimeUnit.SECONDS);
+		assertFalse(response.isError());
+	}
+
+	@Test
+	void test_disconnect_while_streaming() throws Exception {
+		configure(LlmProvider.OPENAI, true);
+		this.server.disconnectAfterTokens(2);
+		assertTrue(isFailed(executeFillInTheMiddle(0)));
+		this.server.disconnectAfterTokens(-1);
+		assertFalse(isFailed(executeFillInTheMiddle(1)));
+		assertEquals(2, this.server.getRequests().size());
+	}
+
+	@Test
+	void test_streaming_closed_by_terminator() throws Exception {
+		configure(LlmProvider.OLLAMA, true);
+		// the whole stream would take 2 seconds
+		this.server.completion("a(); b(); c(); d(); e();").tokensPerSecond(2);
+		final List<String> partialContents = new CopyOnWriteArrayList<>();
+		final LlmStreamTerminator terminator = content -> content.indexOf(';') >= 0 ? content.indexOf(';') + 1 : -1;
+		final LlmResponse response = LlmUtils.executeFillInTheMiddle("public class Main {\n\t", "\n}\n", partialContents::add, terminator).get(10, TimeUnit.SECONDS);
+		assertFalse(response.isError());
+		assertEquals("a();", response.getContent());
+		assertEquals("a();", partialContents.get(partialContents.size() - 1));
+		assertTrue(response.getDuration().compareTo(Duration.ofSeconds(2)) < 0);
+	}
+
+	private void configure(LlmProvider provider, boolean streaming) {
+		final IPreferenceStore store = getStore();
+		store.setValue(AiCoderPreferences.FILL_IN_MIDDLE_PROVIDER_KEY, provider.name());
+		store.setValue(AiCoderPreferences.FILL_IN_MIDDLE_MODEL_KEY, "mock");
+		store.setValue(AiCoderPreferences.ENABLE_STREAMING_KEY, streaming);
+	}
+
+	private static CompletableFuture<LlmResponse> executeFillInTheMiddle(int index) {
+		return LlmUtils.executeFillInTheMiddle("public class Main" + index + " {\n\t", "\n}\n", content -> {
+		}, null);
+	}
+
+	private static boolean isFailed(CompletableFuture<LlmResponse> responseFuture) throws InterruptedException {
+		try {
+			return responseFuture.get(10, TimeUnit.SECONDS).isError();
+		} catch (final ExecutionException | TimeoutException exception) {
+			return true;
+		}
+	}
+
+	private void assertOverhead(String name, Duration serverDuration, IntFunction<CompletableFuture<LlmResponse>> execution) throws Exception {
+		final List<Long> overheads = new ArrayList<>();
+		for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+			final long before = System.nanoTime();
+			final LlmResponse response = execution.apply(i).get(10, TimeUnit.SECONDS);
+			final long duration = System.nanoTime() - before;
+			assertFalse(response.isError(), response.getPlainResponse());
+			if (i >= WARMUP_ITERATIONS) {
+				overheads.add(duration - serverDuration.toNanos());
+			}
+		}
+		report(name, overheads);
+		assertTrue(percentile(overheads, 50) < TimeUnit.MILLISECONDS.toNanos(MAX_MEDIAN_OVERHEAD_MS),
+				String.format("%s: median overhead above %d ms", name, MAX_MEDIAN_OVERHEAD_MS));
+	}
+
+	private static void report(String name, List<Long> durations) {
+		System.out.println(String.format("%-40s p50 %7.2f ms  p90 %7.2f ms  p99 %7.2f ms",
+				name,
+				percentile(durations, 50) / 1_000_000.0,
+				percentile(durations, 90) / 1_000_000.0,
+				percentile(durations, 99) / 1_000_000.0));
+	}
+
+	private static long percentile(List<Long> values, int percentile) {
+		final List<Long> sortedValues = new ArrayList<>(values);
+		Collections.sort(sortedValues);
+		return sortedValues.get(Math.min(sortedValues.size() - 1, sortedValues.size() * percentile / 100));
+	}
+
+	private static IPreferenceStore getStore() {
+		return AiCoderActivator.getDefault().getPreferenceStore();
+	}
+}
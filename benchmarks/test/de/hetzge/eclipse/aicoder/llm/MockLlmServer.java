@@ -0,0 +1,262 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mjson.Json;
+
+/**
+ * Local stand-in for the LLM providers. Speaks the Ollama "/api/generate", OpenAI "/v1/completions" and "/v1/chat/completions" and Mistral "/v1/fim/completions" protocols (streaming and
+ * non-streaming) and answers with a configured completion. Latency, token rate and errors can be configured to measure the overhead of the plugin independently of a real model.
+ */
+final class MockLlmServer implements AutoCloseable {
+
+	private static final Pattern TOKEN_PATTERN = Pattern.compile("\\s*\\S+|\\s+");
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final List<Json> requests;
+	private final AtomicInteger failNextCount;
+	private final Random random;
+	private volatile String completion;
+	private volatile Duration latency;
+	private volatile int tokensPerSecond;
+	private volatile int errorStatusCode;
+	private volatile double errorRate;
+	private volatile int disconnectAfterTokens;
+
+	MockLlmServer() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		this.executor = Executors.newCachedThreadPool();
+		this.requests = new CopyOnWriteArrayList<>();
+		this.failNextCount = new AtomicInteger();
+		this.random = new Random(42);
+		this.completion = "System.out.println(\"Hello World!\");";
+		this.latency = Duration.ZERO;
+		this.tokensPerSecond = 0;
+		this.errorStatusCode = 500;
+		this.errorRate = 0;
+		this.disconnectAfterTokens = -1;
+		this.server.createContext("/api/generate", exchange -> handle(exchange, Protocol.OLLAMA));
+		this.server.createContext("/v1/completions", exchange -> handle(exchange, Protocol.TEXT_COMPLETION));
+		this.server.createContext("/v1/chat/completions", exchange -> handle(exchange, Protocol.CHAT_COMPLETION));
+		this.server.createContext("/v1/fim/completions", exchange -> handle(exchange, Protocol.CHAT_COMPLETION));
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+	private enum Protocol {
+		OLLAMA,
+		TEXT_COMPLETION,
+		CHAT_COMPLETION
+	}
+
+	String getBaseUrl() {
+		return "http://" + this.server.getAddress().getHostString() + ":" + this.server.getAddress().getPort();
+	}
+
+	MockLlmServer completion(String completion) {
+		this.completion = completion;
+		return this;
+	}
+
+	/**
+	 * @param latency the time until the first token
+	 */
+	MockLlmServer latency(Duration latency) {
+		this.latency = latency;
+		return this;
+	}
+
+	/**
+	 * @param tokensPerSecond the generation speed after the first token or 0 for no delay
+	 */
+	MockLlmServer tokensPerSecond(int tokensPerSecond) {
+		this.tokensPerSecond = tokensPerSecond;
+		return this;
+	}
+
+	/**
+	 * Answers the next requests with the given http status code.
+	 */
+	MockLlmServer failNext(int count, int statusCode) {
+		this.failNextCount.set(count);
+		this.errorStatusCode = statusCode;
+		return this;
+	}
+
+	/**
+	 * Answers the given share of the requests (0..1) with the given http status code.
+	 */
+	MockLlmServer errorRate(double errorRate, int statusCode) {
+		this.errorRate = errorRate;
+		this.errorStatusCode = statusCode;
+		return this;
+	}
+
+	/**
+	 * Closes the connection of streamed responses after the given number of tokens or never if negative.
+	 */
+	MockLlmServer disconnectAfterTokens(int disconnectAfterTokens) {
+		this.disconnectAfterTokens = disconnectAfterTokens;
+		return this;
+	}
+
+	List<Json> getRequests() {
+		return this.requests;
+	}
+
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * The exchange is only closed regularly, so that an {@link IOException} aborts the connection.
+	 */
+	private void handle(HttpExchange exchange, Protocol protocol) throws IOException {
+		try {
+			final Json requestJson = Json.read(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			this.requests.add(requestJson);
+			if (isFailure()) {
+				final byte[] body = Json.object().set("error", "Injected error").toString().getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(this.errorStatusCode, body.length);
+				exchange.getResponseBody().write(body);
+				exchange.close();
+				return;
+			}
+			final boolean streaming = requestJson.at("stream", false).asBoolean();
+			final List<String> tokens = tokenize(this.completion);
+			final int promptTokens = Math.max(1, requestJson.toString().length() / 4);
+			sleep(this.latency);
+			if (streaming) {
+				stream(exchange, protocol, tokens, promptTokens);
+			} else {
+				for (int i = 1; i < tokens.size(); i++) {
+					sleepBetweenTokens();
+				}
+				final byte[] body = createResponse(protocol, this.completion, promptTokens, tokens.size()).toString().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, body.length);
+				exchange.getResponseBody().write(body);
+			}
+			exchange.close();
+		} catch (final InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			exchange.close();
+		}
+	}
+
+	private void stream(HttpExchange exchange, Protocol protocol, List<String> tokens, int promptTokens) throws IOException, InterruptedException {
+		exchange.getResponseHeaders().add("Content-Type", protocol == Protocol.OLLAMA ? "application/x-ndjson" : "text/event-stream");
+		exchange.sendResponseHeaders(200, 0);
+		final OutputStream outputStream = exchange.getResponseBody();
+		for (int i = 0; i < tokens.size(); i++) {
+			if (i == this.disconnectAfterTokens) {
+				// the server closes the connection without the terminating chunk
+				throw new IOException("Injected disconnect");
+			}
+			if (i > 0) {
+				sleepBetweenTokens();
+			}
+			writeLine(outputStream, protocol, createChunk(protocol, tokens.get(i)));
+		}
+		if (protocol == Protocol.OLLAMA) {
+			writeLine(outputStream, protocol, Json.object()
+					.set("response", "")
+					.set("done", true)
+					.set("prompt_eval_count", promptTokens)
+					.set("eval_count", tokens.size()));
+		} else {
+			writeLine(outputStream, protocol, Json.object()
+					.set("choices", Json.array())
+					.set("usage", createUsage(promptTokens, tokens.size())));
+			outputStream.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+		}
+		outputStream.flush();
+	}
+
+	private static void writeLine(OutputStream outputStream, Protocol protocol, Json json) throws IOException {
+		final String line = protocol == Protocol.OLLAMA ? json + "\n" : "data: " + json + "\n\n";
+		outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+		outputStream.flush();
+	}
+
+	private static Json createChunk(Protocol protocol, String token) {
+		return switch (protocol) {
+		case OLLAMA -> Json.object().set("response", token).set("done", false);
+		case TEXT_COMPLETION -> Json.object().set("choices", Json.array(Json.object().set("index", 0).set("text", token)));
+		case CHAT_COMPLETION -> Json.object().set("choices", Json.array(Json.object().set("index", 0).set("delta", Json.object().set("content", token))));
+		};
+	}
+
+	private static Json createResponse(Protocol protocol, String content, int promptTokens, int completionTokens) {
+		return switch (protocol) {
+		case OLLAMA -> Json.object()
+				.set("response", content)
+				.set("done", true)
+				.set("prompt_eval_count", promptTokens)
+				.set("eval_count", completionTokens);
+		case TEXT_COMPLETION -> Json.object()
+				.set("choices", Json.array(Json.object().set("index", 0).set("text", content)))
+				.set("usage", createUsage(promptTokens, completionTokens));
+		case CHAT_COMPLETION -> Json.object()
+				.set("choices", Json.array(Json.object().set("index", 0).set("message", Json.object().set("role", "assistant").set("content", content))))
+				.set("usage", createUsage(promptTokens, completionTokens));
+		};
+	}
+
+	private static Json createUsage(int promptTokens, int completionTokens) {
+		return Json.object()
+				.set("prompt_tokens", promptTokens)
+				.set("completion_tokens", completionTokens)
+				.set("total_tokens", promptTokens + completionTokens);
+	}
+
+	private boolean isFailure() {
+		if (this.failNextCount.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+			return true;
+		}
+		synchronized (this.random) {
+			return this.errorRate > 0 && this.random.nextDouble() < this.errorRate;
+		}
+	}
+
+	private void sleepBetweenTokens() throws InterruptedException {
+		if (this.tokensPerSecond > 0) {
+			Thread.sleep(1000L / this.tokensPerSecond);
+		}
+	}
+
+	private static void sleep(Duration duration) throws InterruptedException {
+		if (!duration.isZero()) {
+			Thread.sleep(duration.toMillis());
+		}
+	}
+
+	private static List<String> tokenize(String content) {
+		final List<String> tokens = new ArrayList<>();
+		final Matcher matcher = TOKEN_PATTERN.matcher(content);
+		while (matcher.find()) {
+			tokens.add(matcher.group());
+		}
+		return tokens;
+	}
+}
@@ -11,6 +11,11 @@ import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
 import de.hetzge.eclipse.aicoder.content.InstructionStorage;
+import de.hetzge.eclipse.aicoder.context.ProjectFileTrees;
+import de.hetzge.eclipse.aicoder.context.TypeContextEntryCache;
+import de.hetzge.eclipse.aicoder.history.AiCoderHistoryStore;
+import de.hetzge.eclipse.aicoder.llm.LlmTokenizers;
+import de.hetzge.eclipse.aicoder.llm.OllamaWarmup;
 import de.hetzge.eclipse.aicoder.mcp.McpClients;
 
 public class AiCoderActivator extends AbstractUIPlugin {
@@ -19,6 +24,7 @@ public class AiCoderActivator extends AbstractUIPlugin {
 
 	private static AiCoderActivator plugin;
 	private InstructionStorage instructionStorage;
+	private AiCoderHistoryStore historyStore;
 
 	public AiCoderActivator() {
 	}
@@ -28,6 +34,8 @@ public class AiCoderActivator extends AbstractUIPlugin {
 		super.start(context);
 		plugin = this;
 		this.instructionStorage = InstructionStorage.load(getStateLocation());
+		this.historyStore = AiCoderHistoryStore.load(getStateLocation());
+		LlmTokenizers.INSTANCE.preload();
 		McpClients.INSTANCE.reload(() -> {
 			log().info("MCP clients loaded: " + McpClients.INSTANCE.getMcpStatusCountsString());
 		});
@@ -35,6 +43,10 @@ public class AiCoderActivator extends AbstractUIPlugin {
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		OllamaWarmup.INSTANCE.stop();
+		TypeContextEntryCache.INSTANCE.dispose();
+		ProjectFileTrees.INSTANCE.dispose();
+		this.historyStore.close();
 		plugin = null;
 		super.stop(context);
 	}
@@ -43,6 +55,10 @@ public class AiCoderActivator extends AbstractUIPlugin {
 		return this.instructionStorage;
 	}
 
+	public AiCoderHistoryStore getHistoryStore() {
+		return this.historyStore;
+	}
+
 	public static AiCoderActivator getDefault() {
 		return plugin;
 	}
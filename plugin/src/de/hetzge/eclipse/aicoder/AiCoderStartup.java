@@ -13,6 +13,7 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.texteditor.ITextEditor;
 
 import de.hetzge.eclipse.aicoder.inline.InlineCompletionController;
+import de.hetzge.eclipse.aicoder.llm.OllamaWarmup;
 
 /**
  * https://stackoverflow.com/a/26901175/7662651
@@ -23,6 +24,7 @@ public class AiCoderStartup implements IStartup {
 
 	@Override
 	public void earlyStartup() {
+		OllamaWarmup.INSTANCE.start(PlatformUI.getWorkbench());
 		for (final IWorkbenchWindow window : PlatformUI.getWorkbench().getWorkbenchWindows()) {
 			final IWorkbenchPage activePage = window.getActivePage();
 			activePage.addPartListener(new IPartListener2() {
@@ -31,6 +33,11 @@ public class AiCoderStartup implements IStartup {
 					getTextEditor(partReference).ifPresent(InlineCompletionController::setup);
 				}
 
+				@Override
+				public void partActivated(IWorkbenchPartReference partReference) {
+					getTextEditor(partReference).map(InlineCompletionController::setup).ifPresent(InlineCompletionController::precomputeContext);
+				}
+
 				@Override
 				public void partInputChanged(IWorkbenchPartReference partReference) {
 				}
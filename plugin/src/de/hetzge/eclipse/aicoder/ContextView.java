@@ -457,6 +457,9 @@ public class ContextView extends ViewPart {
 				if (ContextPreferences.isSticky(key)) {
 					tag += " [Sticky]";
 				}
+				if (contextEntry.getSkipReason() != null && !ContextPreferences.isBlacklisted(key)) {
+					tag += String.format(" [Dropped: %s]", contextEntry.getSkipReason());
+				}
 				return String.format("%s%s (%s) [%s]", text, tag, contextEntry.getTokenCount(), contextEntry.getCreationDuration().toMillis());
 			}
 			return null;
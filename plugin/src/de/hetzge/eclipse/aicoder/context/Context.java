@@ -32,7 +32,6 @@ import de.hetzge.eclipse.aicoder.util.LambdaExceptionUtils;
  * TODO trigger ai refactor (ctrl + shift + space when code is selected)
  * TODO mark context entries with error that occured while creation
  * TODO mark sticky / disabled in resource tree
- * TODO multiple suggestions (count configurable, or as long as user does not select one)
  * TODO grep blacklist for files and folders (and use gitignore) -> use for File Tree context
  * TODO reranker context
  * TODO clipboard history
@@ -78,6 +77,24 @@ public final class Context {
 			ClipboardContextEntry.PREFIX,
 			FillInMiddleContextEntry.PREFIX);
 
+	/**
+	 * The order of the cache friendly layout: from the entries that rarely change to the ones that change with every trigger, so that providers can reuse the cached prompt prefix.
+	 */
+	public static final List<String> CACHE_FRIENDLY_PREFIX_ORDER = List.of(
+			ProjectInformationsContextEntry.PREFIX,
+			DependenciesContextEntry.PREFIX,
+			StickyContextEntry.PREFIX,
+			UserContextEntry.PREFIX,
+			FileTreeContextEntry.PREFIX,
+			PackageContextEntry.PREFIX,
+			ImportsContextEntry.PREFIX,
+			SuperContextEntry.PREFIX,
+			OpenEditorsContextEntry.PREFIX,
+			ScopeContextEntry.PREFIX,
+			LastEditsContextEntry.PREFIX,
+			ClipboardContextEntry.PREFIX,
+			FillInMiddleContextEntry.PREFIX);
+
 	public static final Set<String> DEFAULT_ACTIVE_PREFIXES = Set.of(FillInMiddleContextEntry.PREFIX);
 
 	public static Optional<? extends ContextEntry> create(ContextEntryKey key) throws CoreException {
@@ -3,11 +3,40 @@ package de.hetzge.eclipse.aicoder.context;
 import java.util.HashSet;
 import java.util.Set;
 
+import de.hetzge.eclipse.aicoder.llm.LlmOption;
+import de.hetzge.eclipse.aicoder.llm.LlmTokenizer;
+import de.hetzge.eclipse.aicoder.llm.LlmTokenizers;
+
 public class ContextContext {
 	private final Set<ContextEntryKey> doneKeys;
+	private final int tokenBudget;
+	private final LlmTokenizer tokenizer;
+	private AppliedContent appliedContent;
+
+	/**
+	 * The length and token count of the entries applied within the current entry.
+	 */
+	record AppliedContent(int length, int tokenCount) {
+		private static final AppliedContent EMPTY = new AppliedContent(0, 0);
+	}
 
 	public ContextContext() {
-		this.doneKeys = new HashSet<>();
+		this(0, LlmTokenizers.INSTANCE.get(LlmOption.createFillInMiddleModelOptionFromPreferences()));
+	}
+
+	/**
+	 * @param tokenBudget the maximum number of tokens of the whole context or 0 if unlimited
+	 * @param tokenizer the tokenizer of the LLM the context is created for
+	 */
+	public ContextContext(int tokenBudget, LlmTokenizer tokenizer) {
+		this(new HashSet<>(), tokenBudget, tokenizer);
+	}
+
+	private ContextContext(Set<ContextEntryKey> doneKeys, int tokenBudget, LlmTokenizer tokenizer) {
+		this.doneKeys = doneKeys;
+		this.tokenBudget = tokenBudget;
+		this.tokenizer = tokenizer;
+		this.appliedContent = AppliedContent.EMPTY;
 	}
 
 	public boolean isDone(ContextEntry entry) {
@@ -17,4 +46,59 @@ public class ContextContext {
 	public void markDone(ContextEntry entry) {
 		this.doneKeys.add(entry.getKey());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Takes over the entries that were done in a {@link #copy()} (and their token counts).
+	 */
+	public void markDone(ContextContext context) {
+		this.doneKeys.addAll(context.doneKeys);
+		this.appliedContent = new AppliedContent(this.appliedContent.length() + context.appliedContent.length(), this.appliedContent.tokenCount() + context.appliedContent.tokenCount());
+	}
+
+	/**
+	 * @return an independent copy, to tentatively apply an entry
+	 */
+	public ContextContext copy() {
+		return new ContextContext(new HashSet<>(this.doneKeys), this.tokenBudget, this.tokenizer);
+	}
+
+	public boolean hasTokenBudget() {
+		return this.tokenBudget > 0;
+	}
+
+	public int getTokenBudget() {
+		return this.tokenBudget;
+	}
+
+	public int countTokens(String content) {
+		return this.tokenizer.countTokens(content);
+	}
+
+	/**
+	 * Starts to apply an entry: the entries applied from now on are its children.
+	 *
+	 * @return the content applied so far within the enclosing entry, which has to be passed to {@link #endEntry(AppliedContent, String)}
+	 */
+	AppliedContent startEntry() {
+		final AppliedContent enclosingAppliedContent = this.appliedContent;
+		this.appliedContent = AppliedContent.EMPTY;
+		return enclosingAppliedContent;
+	}
+
+	/**
+	 * Ends to apply an entry. Only the content of leaf entries is tokenized, the token counts of the children are summed up and the text around them (headings and templates) is
+	 * approximated with 4 characters per token.
+	 *
+	 * @return the token count of the entry
+	 */
+	int endEntry(AppliedContent enclosingAppliedContent, String content) {
+		final int tokenCount;
+		if (this.appliedContent.length() == 0) {
+			tokenCount = this.tokenizer.countTokens(content);
+		} else {
+			tokenCount = this.appliedContent.tokenCount() + (Math.max(0, content.length() - this.appliedContent.length()) + 3) / 4;
+		}
+		this.appliedContent = new AppliedContent(enclosingAppliedContent.length() + content.length(), enclosingAppliedContent.tokenCount() + tokenCount);
+		return tokenCount;
+	}
+}
@@ -13,11 +13,13 @@ import de.hetzge.eclipse.aicoder.preferences.ContextPreferences;
 public abstract class ContextEntry {
 
 	private int tokenCount;
+	private String skipReason;
 	protected final List<? extends ContextEntry> childContextEntries;
 	private final Duration creationDuration;
 
 	public ContextEntry(List<? extends ContextEntry> childContextEntries, Duration creationDuration) {
 		this.tokenCount = 0;
+		this.skipReason = null;
 		this.childContextEntries = childContextEntries;
 		this.creationDuration = creationDuration;
 	}
@@ -30,6 +32,26 @@ public abstract class ContextEntry {
 		this.tokenCount = tokenCount;
 	}
 
+	/**
+	 * @return why the entry is not part of the last applied context or null if it is included
+	 */
+	public String getSkipReason() {
+		return this.skipReason;
+	}
+
+	/**
+	 * Excludes the (already applied) entry and its children from the context.
+	 */
+	public void skip(String reason) {
+		resetTokenCount(this);
+		this.skipReason = reason;
+	}
+
+	private static void resetTokenCount(ContextEntry entry) {
+		entry.setTokenCount(0);
+		entry.getChildContextEntries().forEach(ContextEntry::resetTokenCount);
+	}
+
 	public abstract ContextEntryKey getKey();
 
 	public String getContent(ContextContext context) {
@@ -53,13 +75,19 @@ public abstract class ContextEntry {
 	}
 
 	public static String apply(final ContextEntry entry, ContextContext context) {
-		if (ContextPreferences.isBlacklisted(entry.getKey()) || context.isDone(entry)) {
-			entry.setTokenCount(0);
+		if (ContextPreferences.isBlacklisted(entry.getKey())) {
+			entry.skip("Blacklisted");
+			return "";
+		}
+		if (context.isDone(entry)) {
+			entry.skip("Already included");
 			return "";
 		}
 		context.markDone(entry);
+		entry.skipReason = null;
+		final ContextContext.AppliedContent enclosingAppliedContent = context.startEntry();
 		final String content = entry.getContent(context);
-		entry.setTokenCount(content.length());
+		entry.setTokenCount(context.endEntry(enclosingAppliedContent, content));
 		return content;
 	}
 }
\ No newline at end of file
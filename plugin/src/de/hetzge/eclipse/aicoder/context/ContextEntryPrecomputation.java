@@ -0,0 +1,19 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import org.eclipse.core.runtime.CoreException;
+
+import de.hetzge.eclipse.aicoder.util.LambdaExceptionUtils.Supplier_WithExceptions;
+
+/**
+ * Reads the data of a context entry (possibly in the background) and returns a factory, which creates a fresh entry from the data with every call. The entries themselves are
+ * not shared, because they hold the state of the context they were applied to.
+ */
+record ContextEntryPrecomputation(String prefix, Supplier_WithExceptions<ContextEntryFactory, CoreException> supplier) {
+
+	/**
+	 * @return a factory, which reads the data only when the entry is created
+	 */
+	ContextEntryFactory toFactory() {
+		return new ContextEntryFactory(this.prefix, () -> this.supplier.get().supplier().get());
+	}
+}
@@ -0,0 +1,75 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import java.util.Optional;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.ui.IEditorInput;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+
+/**
+ * Reads the data of the cursor independent context entries of an editor (project information, file tree, dependencies, super types, imports and package) in the background, so
+ * that a trigger only has to create the entries from it and read the entries around the cursor. The data is read again when the editor is activated or saved and when the caret
+ * rests.
+ */
+public final class ContextPrecomputer {
+
+	private final Job job;
+	private volatile IEditorInput editorInput;
+	private volatile int offset;
+	private volatile PrecomputedContext precomputedContext;
+
+	public ContextPrecomputer() {
+		this.job = new Job("Precompute AI Coder context") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				final IEditorInput currentEditorInput = ContextPrecomputer.this.editorInput;
+				final long before = System.currentTimeMillis();
+				try {
+					PrecomputedContext.create(currentEditorInput, ContextPrecomputer.this.offset, monitor).ifPresent(precomputedContext -> {
+						ContextPrecomputer.this.precomputedContext = precomputedContext;
+						AiCoderActivator.log().info(String.format("Precomputed context in %dms", System.currentTimeMillis() - before));
+					});
+				} catch (final CoreException | RuntimeException exception) {
+					AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to precompute context", exception));
+				}
+				return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+			}
+		};
+		this.job.setSystem(true);
+	}
+
+	/**
+	 * Recreates the entries after the delay (a pending or running creation is canceled).
+	 */
+	public void schedule(IEditorInput editorInput, int offset, long delayMs) {
+		if (!AiCoderPreferences.isContextPrecomputationEnabled()) {
+			this.precomputedContext = null;
+			return;
+		}
+		this.editorInput = editorInput;
+		this.offset = offset;
+		this.job.cancel();
+		this.job.schedule(delayMs);
+	}
+
+	/**
+	 * @return the last created entries if they belong to the editor input
+	 */
+	public Optional<PrecomputedContext> get(IEditorInput editorInput) {
+		if (!AiCoderPreferences.isContextPrecomputationEnabled()) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(this.precomputedContext).filter(precomputedContext -> precomputedContext.editorInput().equals(editorInput));
+	}
+
+	public void dispose() {
+		this.job.cancel();
+		this.precomputedContext = null;
+	}
+}
@@ -43,21 +43,35 @@ public class DependenciesContextEntry extends ContextEntry {
 		return ContextUtils.contentTemplate("Dependencies", super.getContent(context));
 	}
 
-	public static ContextEntryFactory factory(IProject project) {
-		return new ContextEntryFactory(PREFIX, () -> create(project));
+	static ContextEntryPrecomputation precomputation(IProject project) {
+		return new ContextEntryPrecomputation(PREFIX, () -> {
+			final List<String> dependencies = readDependencies(project);
+			return new ContextEntryFactory(PREFIX, () -> create(dependencies, System.currentTimeMillis()));
+		});
 	}
 
 	public static DependenciesContextEntry create(IProject project) throws JavaModelException {
 		final long before = System.currentTimeMillis();
-		final List<DependencyContextEntry> entries = new ArrayList<>();
+		return create(readDependencies(project), before);
+	}
+
+	private static DependenciesContextEntry create(List<String> dependencies, long before) {
+		final List<DependencyContextEntry> entries = dependencies.stream()
+				.map(DependencyContextEntry::create)
+				.toList();
+		return new DependenciesContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
+	}
+
+	private static List<String> readDependencies(IProject project) throws JavaModelException {
+		final List<String> dependencies = new ArrayList<>();
 		final IJavaProject javaProject = JavaCore.create(project);
 		if (javaProject != null && javaProject.exists()) {
 			for (final IClasspathEntry classpathEntry : javaProject.getReferencedClasspathEntries()) {
 				if (classpathEntry.getEntryKind() == IClasspathEntry.CPE_LIBRARY) {
-					entries.add(DependencyContextEntry.create(classpathEntry.getPath().toOSString()));
+					dependencies.add(classpathEntry.getPath().toOSString());
 				}
 			}
 		}
-		return new DependenciesContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
+		return dependencies;
 	}
 }
@@ -6,6 +6,7 @@ import java.util.stream.Stream;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IType;
 import org.eclipse.swt.graphics.Image;
 
 import de.hetzge.eclipse.aicoder.AiCoderActivator;
@@ -43,21 +44,33 @@ public class ImportsContextEntry extends ContextEntry {
 		return new ContextEntryKey(PREFIX, PREFIX);
 	}
 
-	public static ContextEntryFactory factory(ICompilationUnit unit) {
-		return new ContextEntryFactory(PREFIX, () -> create(unit));
+	static ContextEntryPrecomputation precomputation(ICompilationUnit unit) {
+		return new ContextEntryPrecomputation(PREFIX, () -> {
+			final List<IType> importedTypes = findImportedTypes(unit);
+			return new ContextEntryFactory(PREFIX, () -> create(importedTypes, System.currentTimeMillis()));
+		});
 	}
 
 	public static ImportsContextEntry create(ICompilationUnit unit) throws CoreException {
 		final long before = System.currentTimeMillis();
-		final List<TypeContextEntry> entries = Stream.of(unit.getImports())
+		return create(findImportedTypes(unit), before);
+	}
+
+	private static ImportsContextEntry create(List<IType> importedTypes, long before) throws CoreException {
+		final List<TypeContextEntry> entries = importedTypes.parallelStream()
+				.map(LambdaExceptionUtils.rethrowFunction(TypeContextEntry::create))
+				.toList();
+		return new ImportsContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
+	}
+
+	private static List<IType> findImportedTypes(ICompilationUnit unit) throws CoreException {
+		return Stream.of(unit.getImports())
 				.parallel()
 				.filter(importDeclaration -> !importDeclaration.isOnDemand())
 				.map(importDeclaration -> importDeclaration.getElementName())
 				.filter(elementName -> !AiCoderPreferences.isIgnoreJreClasses() || !JdkUtils.isJREPackage(elementName))
 				.map(LambdaExceptionUtils.rethrowFunction(unit.getJavaProject()::findType))
 				.filter(Utils::checkType)
-				.map(LambdaExceptionUtils.rethrowFunction(TypeContextEntry::create))
 				.toList();
-		return new ImportsContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
 	}
 }
\ No newline at end of file
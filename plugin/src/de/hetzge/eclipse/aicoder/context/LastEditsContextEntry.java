@@ -113,7 +113,7 @@ public class LastEditsContextEntry extends ContextEntry {
 		return TextEditorPlugin.getDefault().getEditPositionHistory().rawHistory().toList().reversed().stream().limit(3).toList();
 	}
 
-	private static record CodeLocation(String name, int firstLine, int lastLine, String content) {
+	static record CodeLocation(String name, int firstLine, int lastLine, String content) {
 		public boolean doesOverlap(CodeLocation other) {
 			return this.name.equals(other.name) && this.lastLine >= other.firstLine && this.firstLine <= other.lastLine;
 		}
@@ -10,6 +10,7 @@ import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.swt.graphics.Image;
 
@@ -52,8 +53,13 @@ public class PackageContextEntry extends ContextEntry {
 		return AiCoderActivator.getImage(AiCoderImageKey.PACKAGE_ICON);
 	}
 
-	public static ContextEntryFactory factory(ICompilationUnit unit) {
-		return new ContextEntryFactory(PREFIX, () -> create(unit));
+	static ContextEntryPrecomputation precomputation(ICompilationUnit unit) {
+		return new ContextEntryPrecomputation(PREFIX, () -> {
+			final IPackageFragment packageFragment = (IPackageFragment) unit.getAncestor(IJavaElement.PACKAGE_FRAGMENT);
+			final String elementName = packageFragment.getElementName();
+			final List<IType> types = findTypes(packageFragment);
+			return new ContextEntryFactory(PREFIX, () -> create(elementName, types, System.currentTimeMillis()));
+		});
 	}
 
 	public static PackageContextEntry create(ICompilationUnit unit) throws CoreException {
@@ -81,13 +87,21 @@ public class PackageContextEntry extends ContextEntry {
 
 	private static PackageContextEntry create(final IPackageFragment packageFragment) throws CoreException {
 		final long before = System.currentTimeMillis();
-		final String elementName = packageFragment.getElementName();
+		return create(packageFragment.getElementName(), findTypes(packageFragment), before);
+	}
+
+	private static PackageContextEntry create(String elementName, List<IType> types, long before) throws CoreException {
+		final List<TypeContextEntry> entries = types.stream()
+				.map(LambdaExceptionUtils.rethrowFunction(TypeContextEntry::create))
+				.toList();
+		return new PackageContextEntry(elementName, entries, Duration.ofMillis(System.currentTimeMillis() - before));
+	}
+
+	private static List<IType> findTypes(IPackageFragment packageFragment) throws CoreException {
 		final ICompilationUnit[] compilationUnits = JdtUtils.getCompilationUnits(packageFragment);
-		final List<TypeContextEntry> entries = Arrays.stream(compilationUnits)
+		return Arrays.stream(compilationUnits)
 				.flatMap(LambdaExceptionUtils.rethrowFunction(it -> Arrays.stream(it.getAllTypes())))
 				.filter(Utils::checkType)
-				.map(LambdaExceptionUtils.rethrowFunction(TypeContextEntry::create))
 				.toList();
-		return new PackageContextEntry(elementName, entries, Duration.ofMillis(System.currentTimeMillis() - before));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.ui.IEditorInput;
+
+import de.hetzge.eclipse.aicoder.util.EclipseUtils;
+import de.hetzge.eclipse.aicoder.util.LambdaExceptionUtils;
+
+/**
+ * The data of the cursor independent context entries of an editor, which is read in the background by the {@link ContextPrecomputer}.
+ *
+ * @param typeHandleIdentifier the top level type at the offset the data was read for (the super types depend on it)
+ * @param factories factories, which create fresh entries from the precomputed data for every trigger
+ */
+public record PrecomputedContext(IEditorInput editorInput, String typeHandleIdentifier, List<ContextEntryFactory> factories) {
+
+	boolean isValidFor(IEditorInput otherEditorInput, Optional<ICompilationUnit> compilationUnitOptional, int offset) throws JavaModelException {
+		return this.editorInput.equals(otherEditorInput) && Objects.equals(this.typeHandleIdentifier, getTypeHandleIdentifier(compilationUnitOptional, offset));
+	}
+
+	/**
+	 * @return the precomputed context or empty if the monitor was canceled
+	 */
+	static Optional<PrecomputedContext> create(IEditorInput editorInput, int offset, IProgressMonitor monitor) throws CoreException {
+		final Optional<ICompilationUnit> compilationUnitOptional = EclipseUtils.getCompilationUnit(editorInput);
+		final List<String> enabledPrefixes = RootContextEntry.getEnabledPrefixes();
+		final List<ContextEntryFactory> factories = RootContextEntry.createCursorIndependentPrecomputations(editorInput, compilationUnitOptional, offset).parallelStream()
+				.filter(precomputation -> enabledPrefixes.contains(precomputation.prefix()))
+				.filter(precomputation -> !monitor.isCanceled())
+				.map(LambdaExceptionUtils.rethrowFunction(precomputation -> precomputation.supplier().get()))
+				.toList();
+		if (monitor.isCanceled()) {
+			return Optional.empty();
+		}
+		return Optional.of(new PrecomputedContext(editorInput, getTypeHandleIdentifier(compilationUnitOptional, offset), factories));
+	}
+
+	private static String getTypeHandleIdentifier(Optional<ICompilationUnit> compilationUnitOptional, int offset) throws JavaModelException {
+		if (compilationUnitOptional.isEmpty()) {
+			return null;
+		}
+		return SuperContextEntry.getTypeAt(compilationUnitOptional.get(), offset).map(IType::getHandleIdentifier).orElse(null);
+	}
+}
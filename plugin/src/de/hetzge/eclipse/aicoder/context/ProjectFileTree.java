@@ -0,0 +1,165 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * The file and folder names of a project, which are kept up to date by the {@link ProjectFileTrees}. The tree is rendered as summary: folders deeper than {@link #MAX_DEPTH} or
+ * with more than {@link #MAX_CHILDREN} children are collapsed into their file count and the folders near the active file are expanded first, until the text doesn't fit into the
+ * maximum length any more.
+ */
+final class ProjectFileTree {
+
+	private static final int MAX_DEPTH = 8;
+	private static final int MAX_CHILDREN = 50;
+
+	private final Node root;
+
+	private static final class Node {
+		private final String name;
+		private final Node parent;
+		private final TreeMap<String, Node> children; // null for files
+		private int fileCount;
+
+		private Node(String name, Node parent, boolean folder) {
+			this.name = name;
+			this.parent = parent;
+			this.children = folder ? new TreeMap<>() : null;
+			this.fileCount = folder ? 0 : 1;
+		}
+	}
+
+	ProjectFileTree(String projectName) {
+		this.root = new Node(projectName, null, true);
+	}
+
+	/**
+	 * Adds the file or folder if its parent folder is part of the tree (the content of ignored folders is not).
+	 *
+	 * @param path the path relative to the project
+	 */
+	synchronized void add(IPath path, boolean folder) {
+		final Node parent = find(path.removeLastSegments(1));
+		if (path.isEmpty() || parent == null || parent.children == null || parent.children.containsKey(path.lastSegment())) {
+			return;
+		}
+		final Node node = new Node(path.lastSegment(), parent, folder);
+		parent.children.put(node.name, node);
+		updateFileCount(parent, node.fileCount);
+	}
+
+	/**
+	 * @param path the path relative to the project
+	 */
+	synchronized void remove(IPath path) {
+		final Node node = find(path);
+		if (node == null || node.parent == null) {
+			return;
+		}
+		node.parent.children.remove(node.name);
+		updateFileCount(node.parent, -node.fileCount);
+	}
+
+	/**
+	 * @param focusPath the folder of the active file relative to the project, its folders are always expanded
+	 * @param maxLength the maximum length of the text, the text is truncated if even the folders of the focus path don't fit
+	 */
+	synchronized String render(IPath focusPath, int maxLength) {
+		String fittingText = null;
+		for (int maxDistance = 0; maxDistance <= MAX_DEPTH; maxDistance++) {
+			final Rendering rendering = new Rendering(focusPath, maxDistance, maxLength);
+			if (!rendering.append(this.root, 0, true, 0)) {
+				return fittingText != null ? fittingText : rendering.getTruncatedText();
+			}
+			fittingText = rendering.builder.toString();
+			if (!rendering.collapsedByDistance) {
+				break;
+			}
+		}
+		return fittingText;
+	}
+
+	private Node find(IPath path) {
+		Node node = this.root;
+		for (final String segment : path.segments()) {
+			if (node.children == null) {
+				return null;
+			}
+			node = node.children.get(segment);
+			if (node == null) {
+				return null;
+			}
+		}
+		return node;
+	}
+
+	private static void updateFileCount(Node node, int difference) {
+		for (Node current = node; current != null; current = current.parent) {
+			current.fileCount += difference;
+		}
+	}
+
+	/**
+	 * Renders the folders up to the given distance from the focus path (number of folders between them and the focus path).
+	 */
+	private static final class Rendering {
+		private final IPath focusPath;
+		private final int maxDistance;
+		private final int maxLength;
+		private final StringBuilder builder;
+		private boolean collapsedByDistance;
+
+		private Rendering(IPath focusPath, int maxDistance, int maxLength) {
+			this.focusPath = focusPath;
+			this.maxDistance = maxDistance;
+			this.maxLength = maxLength;
+			this.builder = new StringBuilder();
+			this.collapsedByDistance = false;
+		}
+
+		/**
+		 * @return false if the maximum length was exceeded
+		 */
+		private boolean append(Node node, int depth, boolean onFocusPath, int distance) {
+			final String indent = "  ".repeat(depth);
+			if (node.children == null) {
+				return appendLine(indent + node.name);
+			}
+			final boolean withinLimits = depth < MAX_DEPTH && node.children.size() <= MAX_CHILDREN;
+			if (!onFocusPath && (!withinLimits || distance > this.maxDistance)) {
+				this.collapsedByDistance |= withinLimits;
+				return appendLine(String.format("%s%s (%d files)", indent, node.name, node.fileCount));
+			}
+			if (!appendLine(indent + node.name)) {
+				return false;
+			}
+			final String focusName = onFocusPath && this.focusPath.segmentCount() > depth ? this.focusPath.segment(depth) : null;
+			int shownCount = 0;
+			for (final Node child : node.children.values()) {
+				final boolean childOnFocusPath = child.name.equals(focusName);
+				if (shownCount >= MAX_CHILDREN && !childOnFocusPath) {
+					continue;
+				}
+				shownCount++;
+				if (!append(child, depth + 1, childOnFocusPath, childOnFocusPath ? 0 : distance + 1)) {
+					return false;
+				}
+			}
+			if (node.children.size() > shownCount) {
+				return appendLine(String.format("%s  ... (%d more)", indent, node.children.size() - shownCount));
+			}
+			return true;
+		}
+
+		private boolean appendLine(String line) {
+			this.builder.append(line).append("\n");
+			return this.builder.length() <= this.maxLength;
+		}
+
+		private String getTruncatedText() {
+			final int end = this.builder.lastIndexOf("\n", this.maxLength - 1);
+			return (end >= 0 ? this.builder.substring(0, end + 1) : "") + "...\n";
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.util.GitUtils;
+import de.hetzge.eclipse.aicoder.util.GitUtils.GitState;
+import de.hetzge.eclipse.aicoder.util.GitUtils.GitState.IgnoreMatcher;
+
+/**
+ * The {@link ProjectFileTree}s of the projects. A tree is read once when it is requested the first time and then updated by resource deltas. Derived, hidden and git ignored
+ * resources are not part of the tree: the ignored paths of the git status are used when the tree is read and added resources are matched against the ignore rules (with one
+ * matcher per resource change event). A change of a .gitignore file drops the tree, so that it is read again with the new ignored paths.
+ */
+public enum ProjectFileTrees {
+	INSTANCE;
+
+	private static final String GITIGNORE_FILENAME = ".gitignore";
+
+	private final Map<IProject, ProjectEntry> entryByProject;
+	private final Map<IProject, Long> generationByProject;
+	private final IResourceChangeListener resourceChangeListener;
+
+	private record ProjectEntry(ProjectFileTree tree, GitState gitState) {
+	}
+
+	private ProjectFileTrees() {
+		this.entryByProject = new ConcurrentHashMap<>();
+		this.generationByProject = new HashMap<>();
+		this.resourceChangeListener = this::resourceChanged;
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(this.resourceChangeListener, IResourceChangeEvent.POST_CHANGE);
+	}
+
+	ProjectFileTree get(IProject project) throws CoreException, IOException {
+		final ProjectEntry entry = this.entryByProject.get(project);
+		if (entry != null) {
+			return entry.tree();
+		}
+		final long readGeneration;
+		synchronized (this) {
+			readGeneration = this.generationByProject.getOrDefault(project, 0L);
+		}
+		final ProjectEntry newEntry = read(project);
+		synchronized (this) {
+			// changes while the tree was read are not part of it
+			if (readGeneration == this.generationByProject.getOrDefault(project, 0L)) {
+				this.entryByProject.putIfAbsent(project, newEntry);
+			}
+		}
+		return newEntry.tree();
+	}
+
+	public void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this.resourceChangeListener);
+		this.entryByProject.clear();
+	}
+
+	private void resourceChanged(IResourceChangeEvent event) {
+		if (event.getDelta() == null) {
+			return;
+		}
+		try {
+			for (final IResourceDelta projectDelta : event.getDelta().getAffectedChildren()) {
+				// marker and content changes don't change the tree
+				if (!isStructuralChange(projectDelta)) {
+					continue;
+				}
+				final IProject project = projectDelta.getResource().getProject();
+				synchronized (this) {
+					this.generationByProject.merge(project, 1L, Long::sum);
+				}
+				final ProjectEntry entry = this.entryByProject.get(project);
+				if (entry != null) {
+					final IgnoreMatcher ignoreMatcher = entry.gitState().createIgnoreMatcher();
+					projectDelta.accept(delta -> update(entry, ignoreMatcher, delta));
+				}
+			}
+		} catch (final CoreException exception) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to update file trees", exception));
+			this.entryByProject.clear();
+		}
+	}
+
+	private static boolean isStructuralChange(IResourceDelta projectDelta) throws CoreException {
+		final boolean[] structural = { false };
+		projectDelta.accept(delta -> {
+			structural[0] |= delta.getKind() != IResourceDelta.CHANGED
+					|| (delta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.TYPE)) != 0
+					|| delta.getResource().getName().equals(GITIGNORE_FILENAME);
+			return !structural[0];
+		});
+		return structural[0];
+	}
+
+	/**
+	 * @return true if the children of the delta have to be visited
+	 */
+	private boolean update(ProjectEntry entry, IgnoreMatcher ignoreMatcher, IResourceDelta delta) {
+		final IResource resource = delta.getResource();
+		final IProject project = resource.getProject();
+		if (this.entryByProject.get(project) != entry) {
+			return false;
+		}
+		if (resource instanceof IProject) {
+			if (delta.getKind() == IResourceDelta.REMOVED || (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+				this.entryByProject.remove(project);
+				return false;
+			}
+			return true;
+		}
+		if (resource.getName().equals(GITIGNORE_FILENAME)) {
+			this.entryByProject.remove(project);
+			return false;
+		}
+		switch (delta.getKind()) {
+		case IResourceDelta.ADDED:
+			if (!isIncluded(resource) || ignoreMatcher.matches(resource)) {
+				return false;
+			}
+			entry.tree().add(resource.getProjectRelativePath(), resource instanceof IContainer);
+			return true;
+		case IResourceDelta.REMOVED:
+			entry.tree().remove(resource.getProjectRelativePath());
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	private static ProjectEntry read(IProject project) throws CoreException, IOException {
+		final GitState gitState = GitUtils.getGitState(project);
+		final ProjectFileTree tree = new ProjectFileTree(project.getName());
+		project.accept(resource -> {
+			if (resource == project) {
+				return true;
+			}
+			if (!isIncluded(resource) || gitState.isIgnored(resource)) {
+				return false;
+			}
+			tree.add(resource.getProjectRelativePath(), resource instanceof IContainer);
+			return true;
+		});
+		return new ProjectEntry(tree, gitState);
+	}
+
+	private static boolean isIncluded(IResource resource) {
+		return !resource.isDerived() && !resource.isHidden() && !resource.isTeamPrivateMember() && resource.getLocation() != null;
+	}
+}
@@ -1,8 +1,9 @@
 package de.hetzge.eclipse.aicoder.context;
 
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.jdt.core.IJavaProject;
@@ -41,21 +42,35 @@ public class ProjectInformationsContextEntry extends ContextEntry {
 		return ContextUtils.contentTemplate("General project informations", super.getContent(context));
 	}
 
-	public static ContextEntryFactory factory(IProject project) {
-		return new ContextEntryFactory(PREFIX, () -> create(project));
+	static ContextEntryPrecomputation precomputation(IProject project) {
+		return new ContextEntryPrecomputation(PREFIX, () -> {
+			final Map<String, String> valueByKey = readInformations(project);
+			return new ContextEntryFactory(PREFIX, () -> create(valueByKey, System.currentTimeMillis()));
+		});
 	}
 
 	public static ContextEntry create(IProject project) {
 		final long before = System.currentTimeMillis();
-		final List<ProjectInformationContextEntry> entries = new ArrayList<>();
+		return create(readInformations(project), before);
+	}
+
+	private static ContextEntry create(Map<String, String> valueByKey, long before) {
+		final List<ProjectInformationContextEntry> entries = valueByKey.entrySet().stream()
+				.map(entry -> ProjectInformationContextEntry.create(entry.getKey(), entry.getValue()))
+				.toList();
+		return new ProjectInformationsContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
+	}
+
+	private static Map<String, String> readInformations(IProject project) {
+		final Map<String, String> valueByKey = new LinkedHashMap<>();
 		if (project != null) {
-			entries.add(ProjectInformationContextEntry.create("Name", project.getName()));
-			entries.add(ProjectInformationContextEntry.create("Path", project.getLocation().toString()));
+			valueByKey.put("Name", project.getName());
+			valueByKey.put("Path", project.getLocation().toString());
 			final IJavaProject javaProject = JavaCore.create(project);
 			if (javaProject != null && javaProject.exists()) {
-				entries.add(ProjectInformationContextEntry.create("Java Version", javaProject.getOption(JavaCore.COMPILER_COMPLIANCE, true)));
+				valueByKey.put("Java Version", javaProject.getOption(JavaCore.COMPILER_COMPLIANCE, true));
 			}
 		}
-		return new ProjectInformationsContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
+		return valueByKey;
 	}
 }
@@ -5,9 +5,13 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
@@ -16,6 +20,8 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.ui.IEditorInput;
 
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
 import de.hetzge.eclipse.aicoder.preferences.ContextPreferences;
 import de.hetzge.eclipse.aicoder.util.EclipseUtils;
 import de.hetzge.eclipse.aicoder.util.LambdaExceptionUtils;
@@ -23,8 +29,18 @@ import de.hetzge.eclipse.aicoder.util.LambdaExceptionUtils;
 public class RootContextEntry extends ContextEntry {
 	public static final String PREFIX = "ROOT";
 
+	private final boolean cacheFriendly;
+
 	public RootContextEntry(List<? extends ContextEntry> childContextEntries, Duration creationDuration) {
+		this(childContextEntries, creationDuration, false);
+	}
+
+	/**
+	 * @param cacheFriendly true if the children are ordered from stable to volatile ({@link Context#CACHE_FRIENDLY_PREFIX_ORDER})
+	 */
+	public RootContextEntry(List<? extends ContextEntry> childContextEntries, Duration creationDuration, boolean cacheFriendly) {
 		super(childContextEntries, creationDuration);
+		this.cacheFriendly = cacheFriendly;
 	}
 
 	@Override
@@ -34,7 +50,41 @@ public class RootContextEntry extends ContextEntry {
 
 	@Override
 	public String getContent(ContextContext context) {
-		return super.getContent(context) + "\n";
+		if (!context.hasTokenBudget()) {
+			return super.getContent(context) + "\n";
+		}
+		return allocate(context) + "\n";
+	}
+
+	/**
+	 * Selects the child entries greedily by priority until the token budget is used up. Entries later in the configured order (closer to the edit location) have a higher priority and the fill
+	 * in the middle entry is always kept. In the cache friendly layout the stable entries come first instead, so that they are rendered the same way with every trigger and the volatile
+	 * entries are dropped. The selected entries are joined in the configured order.
+	 */
+	private String allocate(ContextContext context) {
+		final List<ContextEntry> prioritizedEntries = new ArrayList<>(this.childContextEntries);
+		if (!this.cacheFriendly) {
+			Collections.reverse(prioritizedEntries);
+		}
+		prioritizedEntries.sort(Comparator.comparing(entry -> !(entry instanceof FillInMiddleContextEntry)));
+		final Map<ContextEntry, String> contentByEntry = new IdentityHashMap<>();
+		int remainingTokenCount = context.getTokenBudget();
+		for (final ContextEntry entry : prioritizedEntries) {
+			final ContextContext entryContext = context.copy();
+			final String content = apply(entry, entryContext);
+			final int tokenCount = entry.getTokenCount();
+			if (entry instanceof FillInMiddleContextEntry || tokenCount <= remainingTokenCount) {
+				context.markDone(entryContext);
+				contentByEntry.put(entry, content);
+				remainingTokenCount -= tokenCount;
+			} else {
+				AiCoderActivator.log().info(String.format("Drop context entry '%s' (%d tokens, %d left)", entry.getLabel(), tokenCount, Math.max(0, remainingTokenCount)));
+				entry.skip(String.format("Token budget exceeded: %d tokens needed, %d of %d left", tokenCount, Math.max(0, remainingTokenCount), context.getTokenBudget()));
+			}
+		}
+		return this.childContextEntries.stream()
+				.map(entry -> contentByEntry.getOrDefault(entry, ""))
+				.collect(Collectors.joining());
 	}
 
 	@Override
@@ -43,37 +93,69 @@ public class RootContextEntry extends ContextEntry {
 	}
 
 	public static RootContextEntry create(IDocument document, IEditorInput editorInput, int offset) throws BadLocationException, UnsupportedFlavorException, IOException, CoreException {
+		return create(document, editorInput, offset, Optional.empty());
+	}
+
+	/**
+	 * @param precomputedContextOptional the cursor independent entries of the editor, which are used instead of creating them if they fit to the offset
+	 */
+	public static RootContextEntry create(IDocument document, IEditorInput editorInput, int offset, Optional<PrecomputedContext> precomputedContextOptional) throws BadLocationException, UnsupportedFlavorException, IOException, CoreException {
 		final long before = System.currentTimeMillis();
-		final IProject project = EclipseUtils.getProject(editorInput);
 		final String filename = EclipseUtils.getFilename(editorInput).orElse("Active File");
 		final Path path = Path.of(filename);
 		final Optional<ICompilationUnit> compilationUnitOptional = EclipseUtils.getCompilationUnit(editorInput);
+		final Optional<PrecomputedContext> validPrecomputedContextOptional = precomputedContextOptional
+				.filter(LambdaExceptionUtils.rethrowPredicate(precomputedContext -> precomputedContext.isValidFor(editorInput, compilationUnitOptional, offset)));
 		final List<ContextEntryFactory> factories = new ArrayList<>();
-		factories.add(ProjectInformationsContextEntry.factory(project));
-		factories.add(FileTreeContextEntry.factory(editorInput));
-		factories.add(DependenciesContextEntry.factory(project));
-		factories.add(OpenEditorsContextEntry.factory());
+		if (validPrecomputedContextOptional.isPresent()) {
+			factories.addAll(validPrecomputedContextOptional.get().factories());
+		} else {
+			createCursorIndependentPrecomputations(editorInput, compilationUnitOptional, offset).stream()
+					.map(ContextEntryPrecomputation::toFactory)
+					.forEach(factories::add);
+		}
 		factories.add(StickyContextEntry.factory());
+		factories.add(OpenEditorsContextEntry.factory());
 		factories.add(UserContextEntry.factory(path));
 		if (compilationUnitOptional.isPresent()) {
-			final ICompilationUnit unit = compilationUnitOptional.get();
-			factories.add(SuperContextEntry.factory(unit, offset));
-			factories.add(ScopeContextEntry.factory(unit, offset));
-			factories.add(ImportsContextEntry.factory(unit));
-			factories.add(PackageContextEntry.factory(unit));
+			factories.add(ScopeContextEntry.factory(compilationUnitOptional.get(), offset));
 		}
 		factories.add(LastEditsContextEntry.factory());
 		factories.add(ClipboardContextEntry.factory());
 		factories.add(FillInMiddleContextEntry.factory(filename, document, offset));
-		final List<String> orderedPrefixes = ContextPreferences.getContextTypePositions().stream()
-				.filter(item -> item.enabled())
-				.map(item -> item.prefix())
-				.toList();
+		final List<String> enabledPrefixes = getEnabledPrefixes();
+		final boolean cacheFriendly = AiCoderPreferences.isCacheFriendlyContextLayoutEnabled();
+		final List<String> orderedPrefixes = cacheFriendly ? Context.CACHE_FRIENDLY_PREFIX_ORDER : enabledPrefixes;
 		final List<ContextEntry> filteredAndSortedEntries = factories.parallelStream()
-				.filter(factory -> orderedPrefixes.contains(factory.prefix()))
+				.filter(factory -> enabledPrefixes.contains(factory.prefix()))
 				.map(LambdaExceptionUtils.rethrowFunction(factory -> factory.supplier().get()))
 				.sorted(Comparator.comparingInt(entry -> orderedPrefixes.indexOf(entry.getKey().prefix())))
 				.toList();
-		return new RootContextEntry(filteredAndSortedEntries, Duration.ofMillis(System.currentTimeMillis() - before));
+		return new RootContextEntry(filteredAndSortedEntries, Duration.ofMillis(System.currentTimeMillis() - before), cacheFriendly);
+	}
+
+	/**
+	 * @return the precomputations of the entries that don't depend on the content around the cursor (the super types only depend on the type at the offset)
+	 */
+	static List<ContextEntryPrecomputation> createCursorIndependentPrecomputations(IEditorInput editorInput, Optional<ICompilationUnit> compilationUnitOptional, int offset) {
+		final IProject project = EclipseUtils.getProject(editorInput);
+		final List<ContextEntryPrecomputation> precomputations = new ArrayList<>();
+		precomputations.add(ProjectInformationsContextEntry.precomputation(project));
+		precomputations.add(FileTreeContextEntry.precomputation(editorInput));
+		precomputations.add(DependenciesContextEntry.precomputation(project));
+		if (compilationUnitOptional.isPresent()) {
+			final ICompilationUnit unit = compilationUnitOptional.get();
+			precomputations.add(SuperContextEntry.precomputation(unit, offset));
+			precomputations.add(ImportsContextEntry.precomputation(unit));
+			precomputations.add(PackageContextEntry.precomputation(unit));
+		}
+		return precomputations;
+	}
+
+	static List<String> getEnabledPrefixes() {
+		return ContextPreferences.getContextTypePositions().stream()
+				.filter(item -> item.enabled())
+				.map(item -> item.prefix())
+				.toList();
 	}
 }
\ No newline at end of file
@@ -1,20 +1,25 @@
 package de.hetzge.eclipse.aicoder.context;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.ILocalVariable;
 import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.IBinding;
 import org.eclipse.jdt.internal.corext.dom.ScopeAnalyzer;
+import org.eclipse.jdt.ui.SharedASTProvider;
 import org.eclipse.swt.graphics.Image;
 
 import de.hetzge.eclipse.aicoder.AiCoderActivator;
@@ -28,6 +33,12 @@ import de.hetzge.eclipse.aicoder.util.Utils;
 public class ScopeContextEntry extends ContextEntry {
 
 	public static final String PREFIX = "SCOPE";
+	private static final int MAX_CACHED_SOURCE_LENGTH = 100_000;
+
+	private static volatile ParsedUnit lastParsedUnit;
+
+	private record ParsedUnit(String handleIdentifier, String source, CompilationUnit ast) {
+	}
 
 	public ScopeContextEntry(List<? extends ContextEntry> childContextEntries, Duration creationDuration) {
 		super(childContextEntries, creationDuration);
@@ -59,11 +70,23 @@ public class ScopeContextEntry extends ContextEntry {
 
 	public static ScopeContextEntry create(ICompilationUnit unit, int offset) throws CoreException {
 		final long before = System.currentTimeMillis();
-		final CompilationUnit parsedUnit = parseUnit(unit);
-
-		final List<TypeContextEntry> entries = getBindingsInScope(parsedUnit, offset).stream().parallel()
-				.flatMap(LambdaExceptionUtils.rethrowFunction(binding -> {
-					if (binding.getJavaElement() instanceof final IType type) {
+		final CompilationUnit parsedUnit = getParsedUnit(unit, offset);
+		final List<IJavaElement> elements = new ArrayList<>();
+		// shared ASTs have to be accessed synchronized
+		synchronized (parsedUnit.getAST()) {
+			for (final IBinding binding : getBindingsInScope(parsedUnit, offset)) {
+				final IJavaElement element = binding.getJavaElement();
+				if (element != null) {
+					elements.add(element);
+				} else {
+					AiCoderActivator.log().info("Skip binding: " + binding.getKey() + "/-");
+				}
+			}
+		}
+
+		final List<TypeContextEntry> entries = elements.stream().parallel()
+				.flatMap(LambdaExceptionUtils.rethrowFunction(element -> {
+					if (element instanceof final IType type) {
 						final String fullyQualifiedName = type.getFullyQualifiedName();
 						if (AiCoderPreferences.isIgnoreJreClasses() && JdkUtils.isJREPackage(fullyQualifiedName)) {
 							return Stream.empty();
@@ -72,7 +95,7 @@ public class ScopeContextEntry extends ContextEntry {
 							return Stream.empty();
 						}
 						return Stream.of(TypeContextEntry.create(type));
-					} else if (binding.getJavaElement() instanceof final ILocalVariable localVariable) {
+					} else if (element instanceof final ILocalVariable localVariable) {
 						final IType type = localVariable.getJavaProject().findType(Signature.toString(localVariable.getTypeSignature()));
 						if (!Utils.checkType(type)) {
 							return Stream.empty();
@@ -83,8 +106,7 @@ public class ScopeContextEntry extends ContextEntry {
 						}
 						return Stream.of(TypeContextEntry.create(type));
 					} else {
-						AiCoderActivator.log().info("Skip binding: " + binding.getKey() + "/" +
-								(binding.getJavaElement() != null ? binding.getJavaElement().getClass().getName() : "-"));
+						AiCoderActivator.log().info("Skip binding: " + element.getHandleIdentifier() + "/" + element.getClass().getName());
 						return Stream.empty();
 					}
 				}))
@@ -93,11 +115,39 @@ public class ScopeContextEntry extends ContextEntry {
 		return new ScopeContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
 	}
 
-	private static CompilationUnit parseUnit(ICompilationUnit unit) {
+	/**
+	 * @return the AST of the reconciler if it is up to date, the AST of the last parse if the source didn't change since then or a new AST. Large units are parsed with the
+	 *         offset as focal position, so only the body of the enclosing method is resolved (and the AST is not kept).
+	 */
+	private static CompilationUnit getParsedUnit(ICompilationUnit unit, int offset) throws JavaModelException {
+		final CompilationUnit sharedAst = SharedASTProvider.getAST(unit, SharedASTProvider.WAIT_NO, null);
+		if (sharedAst != null) {
+			return sharedAst;
+		}
+		final String source = unit.getSource();
+		if (source != null && source.length() > MAX_CACHED_SOURCE_LENGTH) {
+			return parseUnit(unit, offset);
+		}
+		final ParsedUnit lastParsedUnit = ScopeContextEntry.lastParsedUnit;
+		if (lastParsedUnit != null && lastParsedUnit.handleIdentifier().equals(unit.getHandleIdentifier()) && Objects.equals(lastParsedUnit.source(), source)) {
+			return lastParsedUnit.ast();
+		}
+		final CompilationUnit ast = parseUnit(unit, -1);
+		ScopeContextEntry.lastParsedUnit = new ParsedUnit(unit.getHandleIdentifier(), source, ast);
+		return ast;
+	}
+
+	/**
+	 * @param focalPosition the position of which the enclosing method body is resolved or -1 for all
+	 */
+	private static CompilationUnit parseUnit(ICompilationUnit unit, int focalPosition) {
 		final ASTParser parser = ASTParser.newParser(AST.getJLSLatest());
 		parser.setKind(ASTParser.K_COMPILATION_UNIT);
 		parser.setSource(unit);
 		parser.setResolveBindings(true);
+		if (focalPosition >= 0) {
+			parser.setFocalPosition(focalPosition);
+		}
 		return (CompilationUnit) parser.createAST(null);
 	}
 
@@ -36,20 +36,44 @@ public class SuperContextEntry extends ContextEntry {
 		return ContextUtils.contentTemplate("Supertypes (classes and interfaces)", super.getContent(context));
 	}
 
-	public static ContextEntryFactory factory(ICompilationUnit unit, int offset) {
-		return new ContextEntryFactory(PREFIX, () -> create(unit, offset));
+	static ContextEntryPrecomputation precomputation(ICompilationUnit unit, int offset) {
+		return new ContextEntryPrecomputation(PREFIX, () -> {
+			final List<IType> superTypes = findSuperTypes(unit, offset);
+			return new ContextEntryFactory(PREFIX, () -> create(superTypes, System.currentTimeMillis()));
+		});
 	}
 
 	public static SuperContextEntry create(ICompilationUnit unit, int offset) throws JavaModelException, CoreException {
 		final long before = System.currentTimeMillis();
-		final List<TypeContextEntry> entries = Stream.of(unit.getTypes())
-				.filter(LambdaExceptionUtils.rethrowPredicate(type -> isOffsetInsideType(offset, type)))
-				.flatMap(LambdaExceptionUtils.rethrowFunction(type -> getSuperTypes(type)))
+		return create(findSuperTypes(unit, offset), before);
+	}
+
+	private static SuperContextEntry create(List<IType> superTypes, long before) throws CoreException {
+		final List<TypeContextEntry> entries = superTypes.stream()
 				.map(LambdaExceptionUtils.rethrowFunction(TypeContextEntry::create))
 				.toList();
 		return new SuperContextEntry(entries, Duration.ofMillis(System.currentTimeMillis() - before));
 	}
 
+	private static List<IType> findSuperTypes(ICompilationUnit unit, int offset) throws JavaModelException {
+		return Stream.of(unit.getTypes())
+				.filter(LambdaExceptionUtils.rethrowPredicate(type -> isOffsetInsideType(offset, type)))
+				.flatMap(LambdaExceptionUtils.rethrowFunction(type -> getSuperTypes(type)))
+				.toList();
+	}
+
+	/**
+	 * @return the top level type that contains the offset
+	 */
+	static Optional<IType> getTypeAt(ICompilationUnit unit, int offset) throws JavaModelException {
+		for (final IType type : unit.getTypes()) {
+			if (isOffsetInsideType(offset, type)) {
+				return Optional.of(type);
+			}
+		}
+		return Optional.empty();
+	}
+
 	private static Stream<IType> getSuperTypes(IType type) throws JavaModelException {
 		if (type.getFullyQualifiedName().equals(Object.class.getName())) {
 			return Stream.of();
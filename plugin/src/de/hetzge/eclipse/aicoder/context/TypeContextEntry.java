@@ -65,7 +65,21 @@ public class TypeContextEntry extends ContextEntry {
 		return ContextUtils.codeTemplate("Classpath entry", String.format("%s{\n%s}", this.signature, super.getContent(context)));
 	}
 
+	/**
+	 * @return the entry of the type, the content is taken from the {@link TypeContextEntryCache} if the type didn't change
+	 */
 	public static TypeContextEntry create(IType type) throws CoreException {
+		final long before = System.currentTimeMillis();
+		final TypeContextEntry cachedEntry = TypeContextEntryCache.INSTANCE.get(type, TypeContextEntry::read);
+		// entries hold the state of the last applied context, so the cached one is not shared
+		final List<TypeMemberContextEntry> members = cachedEntry.childContextEntries.stream()
+				.map(TypeMemberContextEntry.class::cast)
+				.map(TypeMemberContextEntry::copy)
+				.toList();
+		return new TypeContextEntry(type, cachedEntry.signature, members, Duration.ofMillis(System.currentTimeMillis() - before));
+	}
+
+	private static TypeContextEntry read(IType type) throws CoreException {
 		final long before = System.currentTimeMillis();
 		final List<TypeMemberContextEntry> members = new ArrayList<>();
 		final String typeSignature = Utils.getTypeKeywordLabel(type) + " " + JavaElementLabels.getElementLabel(type, JavaElementLabels.T_FULLY_QUALIFIED) + getSuperSignature(type);
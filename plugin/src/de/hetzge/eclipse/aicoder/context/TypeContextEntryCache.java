@@ -0,0 +1,120 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+
+import de.hetzge.eclipse.aicoder.util.LambdaExceptionUtils.Function_WithExceptions;
+
+/**
+ * LRU cache of the {@link TypeContextEntry}s (with their members) by the handle identifier of the type, so that unchanged types are not read again on every trigger. Entries are
+ * invalidated by Java model deltas: changes of a compilation unit or class file (including working copy reconciles) and classpath changes of a project or package fragment root.
+ * The entries are held by soft references, so they are released under memory pressure.
+ */
+public enum TypeContextEntryCache {
+	INSTANCE;
+
+	private static final int MAX_SIZE = 2000;
+	private static final int CLASSPATH_FLAGS = IJavaElementDelta.F_CLASSPATH_CHANGED
+			| IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED
+			| IJavaElementDelta.F_ADDED_TO_CLASSPATH
+			| IJavaElementDelta.F_REMOVED_FROM_CLASSPATH
+			| IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED;
+
+	private final Map<String, SoftReference<TypeContextEntry>> entryByHandleIdentifier;
+	private final Map<String, Integer> creationCountByHandleIdentifier;
+	private final IElementChangedListener elementChangedListener;
+	private long generation;
+
+	private TypeContextEntryCache() {
+		this.entryByHandleIdentifier = new LinkedHashMap<>(16, 0.75f, true);
+		this.creationCountByHandleIdentifier = new HashMap<>();
+		this.elementChangedListener = event -> invalidate(event.getDelta());
+		this.generation = 0;
+		JavaCore.addElementChangedListener(this.elementChangedListener, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+	}
+
+	/**
+	 * @return the cached entry of the type or the newly created one, which is shared and must be copied before it is applied
+	 */
+	public TypeContextEntry get(IType type, Function_WithExceptions<IType, TypeContextEntry, CoreException> factory) throws CoreException {
+		final String handleIdentifier = type.getHandleIdentifier();
+		final long createGeneration;
+		synchronized (this) {
+			final SoftReference<TypeContextEntry> reference = this.entryByHandleIdentifier.get(handleIdentifier);
+			final TypeContextEntry entry = reference != null ? reference.get() : null;
+			if (entry != null) {
+				return entry;
+			}
+			createGeneration = this.generation;
+			this.creationCountByHandleIdentifier.merge(handleIdentifier, 1, Integer::sum);
+		}
+		final TypeContextEntry entry;
+		try {
+			entry = factory.apply(type);
+		} finally {
+			synchronized (this) {
+				this.creationCountByHandleIdentifier.computeIfPresent(handleIdentifier, (ignore, count) -> count > 1 ? count - 1 : null);
+			}
+		}
+		synchronized (this) {
+			// don't cache an entry that was created while the type changed
+			if (createGeneration == this.generation) {
+				this.entryByHandleIdentifier.put(handleIdentifier, new SoftReference<>(entry));
+				while (this.entryByHandleIdentifier.size() > MAX_SIZE) {
+					this.entryByHandleIdentifier.remove(this.entryByHandleIdentifier.keySet().iterator().next());
+				}
+			}
+		}
+		return entry;
+	}
+
+	public synchronized void clear() {
+		this.entryByHandleIdentifier.clear();
+		this.generation++;
+	}
+
+	public void dispose() {
+		JavaCore.removeElementChangedListener(this.elementChangedListener);
+		clear();
+	}
+
+	private void invalidate(IJavaElementDelta delta) {
+		final IJavaElement element = delta.getElement();
+		if (element instanceof ICompilationUnit || element instanceof IClassFile) {
+			removeEntries(element.getHandleIdentifier());
+		} else if (element instanceof IMember) {
+			final IJavaElement unit = element.getAncestor(IJavaElement.COMPILATION_UNIT);
+			removeEntries((unit != null ? unit : element).getHandleIdentifier());
+		} else if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & CLASSPATH_FLAGS) != 0) {
+			removeEntries(element.getHandleIdentifier());
+		} else {
+			for (final IJavaElementDelta childDelta : delta.getAffectedChildren()) {
+				invalidate(childDelta);
+			}
+		}
+	}
+
+	/**
+	 * Removes the entries of the types in the element with the handle identifier (the handle identifiers of the types start with it).
+	 */
+	private synchronized void removeEntries(String handleIdentifierPrefix) {
+		final boolean removed = this.entryByHandleIdentifier.keySet().removeIf(handleIdentifier -> handleIdentifier.startsWith(handleIdentifierPrefix));
+		// a delta of an element without cached or currently created types must not discard the other creations
+		if (removed || this.creationCountByHandleIdentifier.keySet().stream().anyMatch(handleIdentifier -> handleIdentifier.startsWith(handleIdentifierPrefix))) {
+			this.generation++;
+		}
+	}
+}
@@ -50,6 +50,10 @@ public class TypeMemberContextEntry extends ContextEntry {
 		return String.format("  %s;\n", this.signature);
 	}
 
+	TypeMemberContextEntry copy() {
+		return new TypeMemberContextEntry(this.element, this.signature, this.javadoc, getCreationDuration());
+	}
+
 	public static TypeMemberContextEntry create(IJavaElement element) throws CoreException {
 		final long before = System.currentTimeMillis();
 		if (element instanceof final IField field) {
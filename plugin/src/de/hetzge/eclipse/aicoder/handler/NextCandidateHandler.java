@@ -0,0 +1,22 @@
+package de.hetzge.eclipse.aicoder.handler;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.inline.InlineCompletionController;
+import de.hetzge.eclipse.aicoder.util.EclipseUtils;
+
+public class NextCandidateHandler extends AbstractHandler {
+
+	@Override
+	public Object execute(ExecutionEvent event) throws ExecutionException {
+		AiCoderActivator.log().info("Execute next candidate handler");
+		final ITextEditor textEditor = EclipseUtils.getActiveTextEditor().orElseThrow(() -> new ExecutionException("No active text editor"));
+		InlineCompletionController.setup(textEditor).cycleCandidate(1);
+		return null;
+	}
+
+}
@@ -0,0 +1,29 @@
+package de.hetzge.eclipse.aicoder.history;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The large text fields of a {@link AiCoderHistoryEntry}, which are only kept in memory until they are written to the {@link AiCoderHistoryStore}.
+ */
+enum AiCoderHistoryBody {
+	INPUT("input"),
+	OUTPUT("output"),
+	LLM_RESPONSE("llmResponse"),
+	CONTENT("content"),
+	PREVIOUS_CONTENT("previousContent");
+
+	private final String jsonKey;
+
+	private AiCoderHistoryBody(String jsonKey) {
+		this.jsonKey = jsonKey;
+	}
+
+	String getJsonKey() {
+		return this.jsonKey;
+	}
+
+	static Optional<AiCoderHistoryBody> fromJsonKey(String jsonKey) {
+		return Arrays.stream(values()).filter(body -> body.jsonKey.equals(jsonKey)).findFirst();
+	}
+}
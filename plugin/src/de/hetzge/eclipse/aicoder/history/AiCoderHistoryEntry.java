@@ -1,41 +1,86 @@
 package de.hetzge.eclipse.aicoder.history;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import de.hetzge.eclipse.aicoder.CompletionMode;
-
+import de.hetzge.eclipse.aicoder.llm.LlmHedgeOutcome;
+import de.hetzge.eclipse.aicoder.llm.LlmResponse;
+import mjson.Json;
+
+/**
+ * A completion in the history. The summary fields are always in memory, the large text fields (prompt, response and document snapshots) only until they are written to the
+ * {@link AiCoderHistoryStore} and are read from there again when they are requested.
+ */
 public class AiCoderHistoryEntry {
+	private long id;
 	private final LocalDateTime timestamp;
 	private final String file;
 	private final CompletionMode mode;
 	private String modelLabel;
+	private LlmHedgeOutcome hedgeOutcome;
 	private HistoryStatus status;
 	// Input stats
-	private String input;
 	private int inputCharacterCount;
 	private int inputWordCount;
 	private int inputLineCount;
 	// Output stats
-	private String output;
 	private int outputCharacterCount;
 	private int outputWordCount;
 	private int outputLineCount;
 	// Token counts
 	private int inputTokenCount;
+	private int cachedInputTokenCount;
 	private int outputTokenCount;
 	// Durations
 	private long durationMs;
 	private long llmDurationMs;
-	private String plainLlmResponse;
-	private String content;
-	private final String previousContent;
+	// Bodies
+	private final Map<AiCoderHistoryBody, String> pendingBodies;
+	private final Map<AiCoderHistoryBody, DocumentSnapshot> pendingSnapshots;
+	private final Map<AiCoderHistoryBody, AiCoderHistoryStore.Location> bodyLocations;
+	private final Set<String> baseIds;
+	private AiCoderHistoryStore store;
+	private Path lastSegment;
 
 	public AiCoderHistoryEntry(CompletionMode mode, String file, String previousContent) {
+		this(mode, file, DocumentSnapshot.of(previousContent));
+	}
+
+	public AiCoderHistoryEntry(CompletionMode mode, String file, DocumentSnapshot previousContent) {
+		this(-1, LocalDateTime.now(), mode, file);
+		this.pendingSnapshots.put(AiCoderHistoryBody.PREVIOUS_CONTENT, previousContent);
+	}
+
+	private AiCoderHistoryEntry(long id, LocalDateTime timestamp, CompletionMode mode, String file) {
+		this.id = id;
 		this.mode = mode;
-		this.timestamp = LocalDateTime.now();
+		this.timestamp = timestamp;
 		this.file = file;
-		this.previousContent = previousContent;
 		this.status = HistoryStatus.STARTED;
+		this.cachedInputTokenCount = LlmResponse.UNKNOWN_TOKENS;
+		this.pendingBodies = new EnumMap<>(AiCoderHistoryBody.class);
+		this.pendingSnapshots = new EnumMap<>(AiCoderHistoryBody.class);
+		this.bodyLocations = new EnumMap<>(AiCoderHistoryBody.class);
+		this.baseIds = new HashSet<>();
+		this.store = null;
+		this.lastSegment = null;
+	}
+
+	/**
+	 * @return the id assigned by the {@link AiCoderHistoryStore} or -1 if the entry was not stored yet
+	 */
+	long getId() {
+		return this.id;
+	}
+
+	void setId(long id) {
+		this.id = id;
 	}
 
 	public CompletionMode getMode() {
@@ -50,6 +95,14 @@ public class AiCoderHistoryEntry {
 		this.modelLabel = modelLabel;
 	}
 
+	public LlmHedgeOutcome getHedgeOutcome() {
+		return this.hedgeOutcome;
+	}
+
+	public void setHedgeOutcome(LlmHedgeOutcome hedgeOutcome) {
+		this.hedgeOutcome = hedgeOutcome;
+	}
+
 	public HistoryStatus getStatus() {
 		return this.status;
 	}
@@ -59,11 +112,11 @@ public class AiCoderHistoryEntry {
 	}
 
 	public String getInput() {
-		return this.input;
+		return getBody(AiCoderHistoryBody.INPUT);
 	}
 
 	public void setInput(String input) {
-		this.input = input;
+		putBody(AiCoderHistoryBody.INPUT, input);
 		this.inputWordCount = input.split("\\s+").length;
 		this.inputLineCount = (int) input.lines().count();
 		this.inputCharacterCount = input.length();
@@ -82,11 +135,11 @@ public class AiCoderHistoryEntry {
 	}
 
 	public String getOutput() {
-		return this.output;
+		return getBody(AiCoderHistoryBody.OUTPUT);
 	}
 
 	public void setOutput(String output) {
-		this.output = output;
+		putBody(AiCoderHistoryBody.OUTPUT, output);
 		this.outputWordCount = output.split("\\s+").length;
 		this.outputLineCount = (int) output.lines().count();
 		this.outputCharacterCount = output.length();
@@ -112,6 +165,14 @@ public class AiCoderHistoryEntry {
 		this.inputTokenCount = inputTokenCount;
 	}
 
+	public int getCachedInputTokenCount() {
+		return this.cachedInputTokenCount;
+	}
+
+	public void setCachedInputTokenCount(int cachedInputTokenCount) {
+		this.cachedInputTokenCount = cachedInputTokenCount;
+	}
+
 	public int getOutputTokenCount() {
 		return this.outputTokenCount;
 	}
@@ -137,23 +198,34 @@ public class AiCoderHistoryEntry {
 	}
 
 	public String getPlainLlmResponse() {
-		return this.plainLlmResponse;
+		return getBody(AiCoderHistoryBody.LLM_RESPONSE);
 	}
 
 	public void setPlainLlmResponse(String plainLlmResponse) {
-		this.plainLlmResponse = plainLlmResponse;
+		putBody(AiCoderHistoryBody.LLM_RESPONSE, plainLlmResponse);
 	}
 
 	public String getContent() {
-		return this.content;
+		return getBody(AiCoderHistoryBody.CONTENT);
+	}
+
+	/**
+	 * @param content the document after the completion was accepted
+	 */
+	public synchronized void setContent(DocumentSnapshot content) {
+		this.pendingSnapshots.put(AiCoderHistoryBody.CONTENT, content);
 	}
 
-	public void setContent(String content) {
-		this.content = content;
+	public boolean hasContent() {
+		return hasBody(AiCoderHistoryBody.CONTENT);
 	}
 
 	public String getPreviousContent() {
-		return this.previousContent;
+		return getBody(AiCoderHistoryBody.PREVIOUS_CONTENT);
+	}
+
+	public boolean hasPreviousContent() {
+		return hasBody(AiCoderHistoryBody.PREVIOUS_CONTENT);
 	}
 
 	public LocalDateTime getTimestamp() {
@@ -172,10 +244,172 @@ public class AiCoderHistoryEntry {
 		return formattedDuration(this.llmDurationMs);
 	}
 
+	/**
+	 * @return the cached input tokens and their share of all input tokens or "-" if the provider did not report them
+	 */
+	public String getFormattedCachedInputTokenCount() {
+		if (this.cachedInputTokenCount < 0) {
+			return "-";
+		}
+		if (this.inputTokenCount <= 0) {
+			return String.valueOf(this.cachedInputTokenCount);
+		}
+		return String.format("%d (%d%%)", this.cachedInputTokenCount, Math.round(100.0 * this.cachedInputTokenCount / this.inputTokenCount));
+	}
+
 	public int getTokensPerSecond() {
+		if (this.llmDurationMs <= 0) {
+			return 0; // e.g. answered from cache
+		}
 		return (int) (this.outputTokenCount / (this.llmDurationMs / 1000.0));
 	}
 
+	private synchronized void putBody(AiCoderHistoryBody body, String value) {
+		if (value != null) {
+			this.pendingBodies.put(body, value);
+		}
+	}
+
+	/**
+	 * Document snapshots are reconstructed from their base and edits, so this is expensive for the content bodies.
+	 */
+	private String getBody(AiCoderHistoryBody body) {
+		final DocumentSnapshot pendingSnapshot;
+		final AiCoderHistoryStore.Location location;
+		final AiCoderHistoryStore currentStore;
+		synchronized (this) {
+			final String pendingValue = this.pendingBodies.get(body);
+			if (pendingValue != null) {
+				return pendingValue;
+			}
+			pendingSnapshot = this.pendingSnapshots.get(body);
+			location = this.bodyLocations.get(body);
+			currentStore = this.store;
+		}
+		if (pendingSnapshot != null) {
+			return pendingSnapshot.getContent();
+		}
+		return location != null && currentStore != null ? currentStore.readBody(location, body) : null;
+	}
+
+	private synchronized boolean hasBody(AiCoderHistoryBody body) {
+		return this.pendingBodies.containsKey(body) || this.pendingSnapshots.containsKey(body) || this.bodyLocations.containsKey(body);
+	}
+
+	/**
+	 * @return the text bodies that were changed since the entry was written the last time
+	 */
+	synchronized Map<AiCoderHistoryBody, String> getPendingBodies() {
+		return new EnumMap<>(this.pendingBodies);
+	}
+
+	/**
+	 * @return the document snapshots that were changed since the entry was written the last time
+	 */
+	synchronized Map<AiCoderHistoryBody, DocumentSnapshot> getPendingSnapshots() {
+		return new EnumMap<>(this.pendingSnapshots);
+	}
+
+	/**
+	 * Releases the written bodies from memory, unless they were changed again in the meantime.
+	 *
+	 * @param writtenBodies the written text bodies and document snapshots
+	 * @param writtenBaseIds the ids of the {@link DocumentBase}s the written snapshots depend on
+	 */
+	synchronized void markWritten(AiCoderHistoryStore store, Path segment, Map<AiCoderHistoryBody, ?> writtenBodies, AiCoderHistoryStore.Location bodiesLocation, Collection<String> writtenBaseIds) {
+		writtenBodies.forEach((body, value) -> {
+			if (this.pendingBodies.get(body) == value) {
+				this.pendingBodies.remove(body);
+			}
+			if (this.pendingSnapshots.get(body) == value) {
+				this.pendingSnapshots.remove(body);
+			}
+			this.bodyLocations.put(body, bodiesLocation);
+		});
+		this.baseIds.addAll(writtenBaseIds);
+		this.store = store;
+		this.lastSegment = segment;
+	}
+
+	/**
+	 * Takes over the body locations of an older record of the same entry (while the log is read).
+	 */
+	synchronized void inheritBodyLocations(AiCoderHistoryEntry olderEntry) {
+		synchronized (olderEntry) {
+			olderEntry.bodyLocations.forEach(this.bodyLocations::putIfAbsent);
+			this.baseIds.addAll(olderEntry.baseIds);
+		}
+	}
+
+	/**
+	 * @return the ids of the {@link DocumentBase}s the written snapshots of this entry depend on
+	 */
+	synchronized Set<String> getBaseIds() {
+		return new HashSet<>(this.baseIds);
+	}
+
+	/**
+	 * @return the segments, which hold the latest record or a body of this entry
+	 */
+	synchronized Set<Path> getSegments() {
+		final Set<Path> segments = new HashSet<>();
+		if (this.lastSegment != null) {
+			segments.add(this.lastSegment);
+		}
+		this.bodyLocations.values().forEach(location -> segments.add(location.segment()));
+		return segments;
+	}
+
+	Json toSummaryJson() {
+		final Json json = Json.object()
+				.set("id", this.id)
+				.set("timestamp", this.timestamp.toString())
+				.set("file", this.file)
+				.set("mode", this.mode.name())
+				.set("status", this.status.name())
+				.set("inputCharacterCount", this.inputCharacterCount)
+				.set("inputWordCount", this.inputWordCount)
+				.set("inputLineCount", this.inputLineCount)
+				.set("outputCharacterCount", this.outputCharacterCount)
+				.set("outputWordCount", this.outputWordCount)
+				.set("outputLineCount", this.outputLineCount)
+				.set("inputTokenCount", this.inputTokenCount)
+				.set("cachedInputTokenCount", this.cachedInputTokenCount)
+				.set("outputTokenCount", this.outputTokenCount)
+				.set("durationMs", this.durationMs)
+				.set("llmDurationMs", this.llmDurationMs);
+		if (this.modelLabel != null) {
+			json.set("modelLabel", this.modelLabel);
+		}
+		if (this.hedgeOutcome != null) {
+			json.set("hedgeOutcome", this.hedgeOutcome.name());
+		}
+		return json;
+	}
+
+	static AiCoderHistoryEntry fromSummaryJson(Json json) {
+		final AiCoderHistoryEntry entry = new AiCoderHistoryEntry(
+				json.at("id").asLong(),
+				LocalDateTime.parse(json.at("timestamp").asString()),
+				CompletionMode.valueOf(json.at("mode").asString()),
+				json.at("file").asString());
+		entry.status = HistoryStatus.valueOf(json.at("status").asString());
+		entry.inputCharacterCount = json.at("inputCharacterCount", 0).asInteger();
+		entry.inputWordCount = json.at("inputWordCount", 0).asInteger();
+		entry.inputLineCount = json.at("inputLineCount", 0).asInteger();
+		entry.outputCharacterCount = json.at("outputCharacterCount", 0).asInteger();
+		entry.outputWordCount = json.at("outputWordCount", 0).asInteger();
+		entry.outputLineCount = json.at("outputLineCount", 0).asInteger();
+		entry.inputTokenCount = json.at("inputTokenCount", 0).asInteger();
+		entry.cachedInputTokenCount = json.at("cachedInputTokenCount", LlmResponse.UNKNOWN_TOKENS).asInteger();
+		entry.outputTokenCount = json.at("outputTokenCount", 0).asInteger();
+		entry.durationMs = json.at("durationMs", 0).asLong();
+		entry.llmDurationMs = json.at("llmDurationMs", 0).asLong();
+		entry.modelLabel = json.has("modelLabel") ? json.at("modelLabel").asString() : null;
+		entry.hedgeOutcome = json.has("hedgeOutcome") ? LlmHedgeOutcome.valueOf(json.at("hedgeOutcome").asString()) : null;
+		return entry;
+	}
+
 	private static String formattedDuration(long milliseconds) {
 		if (milliseconds < 1000) {
 			return milliseconds + "ms";
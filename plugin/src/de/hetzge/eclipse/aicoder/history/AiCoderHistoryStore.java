@@ -0,0 +1,429 @@
+package de.hetzge.eclipse.aicoder.history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import mjson.Json;
+
+/**
+ * Append-only log of the {@link AiCoderHistoryEntry}s in the plugin state location. Every save appends a summary line and, if bodies changed, a line with the changed bodies to the
+ * current segment. Only the summaries are kept in memory, the bodies are read from their line when they are requested. The log is rotated into segments of limited size and old
+ * segments are deleted as soon as no retained entry references them any more.
+ * <p>
+ * Document snapshots are not written as full text. The content of their {@link DocumentBase} is written once as a separate base record and the snapshots only store the id of the
+ * base and their edits. The content is reconstructed when it is requested.
+ */
+public final class AiCoderHistoryStore {
+
+	private static final String FOLDER_NAME = "history";
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".ndjson";
+	private static final long MAX_SEGMENT_SIZE_BYTES = 8 * 1024 * 1024;
+	private static final long WRITE_DELAY_MS = 500;
+
+	private final Path folder;
+	private final LinkedList<Path> segments; // oldest first
+	private final List<AiCoderHistoryEntry> entries; // newest first
+	private final Set<AiCoderHistoryEntry> dirtyEntries;
+	private final Map<String, Location> baseLocations; // base id -> content line
+	private final Object writeLock;
+	private final Job writeJob;
+	private long nextId;
+	private int nextSegmentNumber;
+	private Path currentSegment;
+	private FileChannel currentChannel;
+
+	record Location(Path segment, long offset, int length) {
+	}
+
+	private AiCoderHistoryStore(Path folder, List<Path> segments, int nextSegmentNumber) {
+		this.folder = folder;
+		this.segments = new LinkedList<>(segments);
+		this.entries = new ArrayList<>();
+		this.dirtyEntries = new LinkedHashSet<>();
+		this.baseLocations = new ConcurrentHashMap<>();
+		this.writeLock = new Object();
+		this.nextId = 0;
+		this.nextSegmentNumber = nextSegmentNumber;
+		this.currentSegment = null;
+		this.currentChannel = null;
+		this.writeJob = new Job("Write AI Coder history") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				flush();
+				return Status.OK_STATUS;
+			}
+		};
+		this.writeJob.setSystem(true);
+	}
+
+	/**
+	 * Adds the entry to the history (if new) and writes its changes in the background.
+	 */
+	public void save(AiCoderHistoryEntry entry) {
+		synchronized (this) {
+			if (entry.getId() < 0) {
+				entry.setId(this.nextId++);
+				this.entries.add(0, entry);
+			} else if (!this.entries.contains(entry)) {
+				return; // removed by the retention
+			}
+			this.dirtyEntries.add(entry);
+		}
+		this.writeJob.schedule(WRITE_DELAY_MS);
+	}
+
+	/**
+	 * @return the retained entries, newest first
+	 */
+	public synchronized List<AiCoderHistoryEntry> getEntries() {
+		return new ArrayList<>(this.entries);
+	}
+
+	/**
+	 * Removes the entries (and deletes the segments) that exceed the count, age or size limit of the preferences.
+	 */
+	public void applyRetention() {
+		synchronized (this.writeLock) {
+			synchronized (this) {
+				final int maxEntries = AiCoderPreferences.getHistoryMaxEntries();
+				while (this.entries.size() > maxEntries) {
+					this.dirtyEntries.remove(this.entries.removeLast());
+				}
+				final int maxAgeDays = AiCoderPreferences.getHistoryMaxAgeDays();
+				if (maxAgeDays > 0) {
+					final LocalDateTime minTimestamp = LocalDateTime.now().minusDays(maxAgeDays);
+					removeEntries(entry -> entry.getTimestamp().isBefore(minTimestamp));
+				}
+				final long maxSizeBytes = AiCoderPreferences.getHistoryMaxSizeBytes();
+				long sizeBytes = this.segments.stream().mapToLong(AiCoderHistoryStore::getSize).sum();
+				while (sizeBytes > maxSizeBytes && this.segments.size() > 1 && !this.segments.getFirst().equals(this.currentSegment)) {
+					final Path oldestSegment = this.segments.getFirst();
+					sizeBytes -= getSize(oldestSegment);
+					removeEntries(entry -> getReferencedSegments(entry).contains(oldestSegment));
+					deleteSegment(oldestSegment);
+				}
+				final Set<Path> referencedSegments = new HashSet<>();
+				this.entries.forEach(entry -> referencedSegments.addAll(getReferencedSegments(entry)));
+				for (final Path segment : new ArrayList<>(this.segments)) {
+					if (!segment.equals(this.currentSegment) && !referencedSegments.contains(segment)) {
+						deleteSegment(segment);
+					}
+				}
+				this.baseLocations.values().removeIf(location -> !this.segments.contains(location.segment()));
+			}
+		}
+	}
+
+	/**
+	 * Writes the pending changes and closes the current segment.
+	 */
+	public void close() {
+		this.writeJob.cancel();
+		flush();
+		synchronized (this.writeLock) {
+			closeCurrentSegment();
+		}
+	}
+
+	private void flush() {
+		final List<AiCoderHistoryEntry> entriesToWrite;
+		synchronized (this) {
+			entriesToWrite = new ArrayList<>(this.dirtyEntries);
+			this.dirtyEntries.clear();
+		}
+		if (entriesToWrite.isEmpty()) {
+			return;
+		}
+		synchronized (this.writeLock) {
+			try {
+				for (final AiCoderHistoryEntry entry : entriesToWrite) {
+					write(entry);
+				}
+			} catch (final IOException exception) {
+				AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to write AI Coder history", exception));
+				closeCurrentSegment();
+			}
+		}
+		applyRetention();
+	}
+
+	private void write(AiCoderHistoryEntry entry) throws IOException {
+		final Map<AiCoderHistoryBody, Object> bodies = new EnumMap<>(AiCoderHistoryBody.class);
+		bodies.putAll(entry.getPendingBodies());
+		bodies.putAll(entry.getPendingSnapshots());
+		final Map<String, DocumentBase> bases = new LinkedHashMap<>();
+		final Json bodyKeys = Json.array();
+		final Json bodiesJson = Json.object();
+		bodies.forEach((body, value) -> {
+			bodyKeys.add(body.getJsonKey());
+			if (value instanceof final DocumentSnapshot snapshot) {
+				final Json editsJson = Json.array();
+				snapshot.getEdits().forEach(edit -> editsJson.add(edit.toJson()));
+				bodiesJson.set(body.getJsonKey(), Json.object().set("base", snapshot.getBase().getId()).set("edits", editsJson));
+				bases.put(snapshot.getBase().getId(), snapshot.getBase());
+			} else {
+				bodiesJson.set(body.getJsonKey(), value);
+			}
+		});
+		// the bases that are not written yet precede the entry in the same record
+		final ByteArrayOutputStream record = new ByteArrayOutputStream();
+		final Map<String, Location> newBaseLocations = new LinkedHashMap<>(); // relative to the record
+		for (final DocumentBase base : bases.values()) {
+			if (!this.baseLocations.containsKey(base.getId())) {
+				record.write((Json.object().set("base", base.getId()) + "\n").getBytes(StandardCharsets.UTF_8));
+				final byte[] contentLine = (Json.object().set("content", base.getContent()) + "\n").getBytes(StandardCharsets.UTF_8);
+				newBaseLocations.put(base.getId(), new Location(null, record.size(), contentLine.length - 1));
+				record.write(contentLine);
+			}
+		}
+		final byte[] summaryLine = (entry.toSummaryJson().set("bodies", bodyKeys).set("bases", Json.make(bases.keySet())) + "\n").getBytes(StandardCharsets.UTF_8);
+		final byte[] bodiesLine = bodies.isEmpty() ? new byte[0] : (bodiesJson + "\n").getBytes(StandardCharsets.UTF_8);
+		final int bodiesOffset = record.size() + summaryLine.length;
+		record.write(summaryLine);
+		record.write(bodiesLine);
+		final FileChannel channel = getChannel(record.size());
+		final long offset = channel.size();
+		// one write, so that a crash can only tear the last record
+		final ByteBuffer buffer = ByteBuffer.wrap(record.toByteArray());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		newBaseLocations.forEach((baseId, location) -> this.baseLocations.put(baseId, new Location(this.currentSegment, offset + location.offset(), location.length())));
+		final Location bodiesLocation = bodies.isEmpty() ? null : new Location(this.currentSegment, offset + bodiesOffset, bodiesLine.length - 1);
+		entry.markWritten(this, this.currentSegment, bodies, bodiesLocation, bases.keySet());
+	}
+
+	/**
+	 * @return the segments with the records of the entry and the bases of its snapshots
+	 */
+	private Set<Path> getReferencedSegments(AiCoderHistoryEntry entry) {
+		final Set<Path> referencedSegments = new HashSet<>(entry.getSegments());
+		for (final String baseId : entry.getBaseIds()) {
+			final Location baseLocation = this.baseLocations.get(baseId);
+			if (baseLocation != null) {
+				referencedSegments.add(baseLocation.segment());
+			}
+		}
+		return referencedSegments;
+	}
+
+	/**
+	 * @return the channel of the current segment, which is rotated if the record would exceed the segment size
+	 */
+	private FileChannel getChannel(int recordLength) throws IOException {
+		if (this.currentChannel != null && this.currentChannel.size() > 0 && this.currentChannel.size() + recordLength > getMaxSegmentSizeBytes()) {
+			closeCurrentSegment();
+		}
+		if (this.currentChannel == null) {
+			Files.createDirectories(this.folder);
+			final Path segment = this.folder.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, this.nextSegmentNumber++, SEGMENT_SUFFIX));
+			this.currentChannel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			this.currentSegment = segment;
+			this.segments.add(segment);
+		}
+		return this.currentChannel;
+	}
+
+	private void closeCurrentSegment() {
+		if (this.currentChannel == null) {
+			return;
+		}
+		try {
+			this.currentChannel.close();
+		} catch (final IOException exception) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to close history segment", exception));
+		}
+		this.currentChannel = null;
+		this.currentSegment = null;
+	}
+
+	private void removeEntries(Predicate<AiCoderHistoryEntry> predicate) {
+		this.entries.removeIf(entry -> {
+			if (predicate.test(entry)) {
+				this.dirtyEntries.remove(entry);
+				return true;
+			}
+			return false;
+		});
+	}
+
+	private void deleteSegment(Path segment) {
+		this.segments.remove(segment);
+		try {
+			Files.deleteIfExists(segment);
+		} catch (final IOException exception) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to delete history segment " + segment, exception));
+		}
+	}
+
+	private static long getMaxSegmentSizeBytes() {
+		return Math.max(64 * 1024, Math.min(MAX_SEGMENT_SIZE_BYTES, AiCoderPreferences.getHistoryMaxSizeBytes() / 4));
+	}
+
+	private static long getSize(Path segment) {
+		try {
+			return Files.size(segment);
+		} catch (final IOException exception) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the body (document snapshots are reconstructed from their base) or null if the segment was deleted in the meantime or can't be read
+	 */
+	String readBody(Location location, AiCoderHistoryBody body) {
+		try {
+			final Json bodiesJson = readLine(location);
+			if (!bodiesJson.has(body.getJsonKey())) {
+				return null;
+			}
+			final Json bodyJson = bodiesJson.at(body.getJsonKey());
+			if (bodyJson.isString()) {
+				return bodyJson.asString();
+			}
+			final Location baseLocation = this.baseLocations.get(bodyJson.at("base").asString());
+			if (baseLocation == null) {
+				return null;
+			}
+			final List<DocumentBase.Edit> edits = bodyJson.at("edits").asJsonList().stream().map(DocumentBase.Edit::fromJson).toList();
+			return DocumentBase.apply(readLine(baseLocation).at("content").asString(), edits);
+		} catch (final IOException | RuntimeException exception) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to read history entry from " + location.segment(), exception));
+			return null;
+		}
+	}
+
+	private static Json readLine(Location location) throws IOException {
+		try (FileChannel channel = FileChannel.open(location.segment(), StandardOpenOption.READ)) {
+			final ByteBuffer buffer = ByteBuffer.allocate(location.length());
+			while (buffer.hasRemaining() && channel.read(buffer, location.offset() + buffer.position()) >= 0) {
+				// read until the buffer is full
+			}
+			return Json.read(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+		}
+	}
+
+	public static AiCoderHistoryStore load(IPath stateLocation) throws IOException {
+		final Path folder = stateLocation.append(FOLDER_NAME).toFile().toPath();
+		final List<Path> segments;
+		if (Files.isDirectory(folder)) {
+			try (Stream<Path> stream = Files.list(folder)) {
+				segments = stream
+						.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX) && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+						.sorted()
+						.toList();
+			}
+		} else {
+			segments = List.of();
+		}
+		final int nextSegmentNumber = segments.isEmpty() ? 0 : getSegmentNumber(segments.get(segments.size() - 1)) + 1;
+		final AiCoderHistoryStore store = new AiCoderHistoryStore(folder, segments, nextSegmentNumber);
+		final Map<Long, AiCoderHistoryEntry> entryById = new LinkedHashMap<>();
+		for (final Path segment : segments) {
+			store.readSegment(segment, entryById);
+		}
+		store.entries.addAll(entryById.values());
+		store.entries.sort((entryA, entryB) -> Long.compare(entryB.getId(), entryA.getId()));
+		store.nextId = store.entries.isEmpty() ? 0 : store.entries.get(0).getId() + 1;
+		store.applyRetention();
+		return store;
+	}
+
+	/**
+	 * Reads the summaries of a segment. The body and base content lines are only skipped, they are parsed when a body is requested.
+	 */
+	private void readSegment(Path segment, Map<Long, AiCoderHistoryEntry> entryById) throws IOException {
+		final byte[] bytes = Files.readAllBytes(segment);
+		int start = 0;
+		while (start < bytes.length) {
+			final int summaryEnd = indexOfLineEnd(bytes, start);
+			if (summaryEnd < 0) {
+				break; // torn record at the end of the segment
+			}
+			final Json summaryJson;
+			try {
+				summaryJson = Json.read(new String(bytes, start, summaryEnd - start, StandardCharsets.UTF_8));
+			} catch (final RuntimeException exception) {
+				AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Skip corrupt history record in " + segment, exception));
+				start = summaryEnd + 1;
+				continue;
+			}
+			if (summaryJson.has("base")) {
+				final int contentEnd = indexOfLineEnd(bytes, summaryEnd + 1);
+				if (contentEnd < 0) {
+					break;
+				}
+				this.baseLocations.put(summaryJson.at("base").asString(), new Location(segment, summaryEnd + 1, contentEnd - summaryEnd - 1));
+				start = contentEnd + 1;
+				continue;
+			}
+			final Map<AiCoderHistoryBody, String> bodies = new EnumMap<>(AiCoderHistoryBody.class);
+			summaryJson.at("bodies", Json.array()).asJsonList().forEach(key -> AiCoderHistoryBody.fromJsonKey(key.asString()).ifPresent(body -> bodies.put(body, null)));
+			int next = summaryEnd + 1;
+			Location bodiesLocation = null;
+			if (!bodies.isEmpty()) {
+				final int bodiesEnd = indexOfLineEnd(bytes, next);
+				if (bodiesEnd < 0) {
+					break;
+				}
+				bodiesLocation = new Location(segment, next, bodiesEnd - next);
+				next = bodiesEnd + 1;
+			}
+			final AiCoderHistoryEntry entry = AiCoderHistoryEntry.fromSummaryJson(summaryJson);
+			final AiCoderHistoryEntry olderEntry = entryById.get(entry.getId());
+			if (olderEntry != null) {
+				entry.inheritBodyLocations(olderEntry);
+			}
+			final List<String> baseIds = summaryJson.at("bases", Json.array()).asJsonList().stream().map(Json::asString).toList();
+			entry.markWritten(this, segment, bodies, bodiesLocation, baseIds);
+			entryById.put(entry.getId(), entry);
+			start = next;
+		}
+	}
+
+	private static int indexOfLineEnd(byte[] bytes, int start) {
+		for (int i = start; i < bytes.length; i++) {
+			if (bytes[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int getSegmentNumber(Path segment) {
+		final String fileName = segment.getFileName().toString();
+		try {
+			return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+		} catch (final NumberFormatException exception) {
+			return 0;
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package de.hetzge.eclipse.aicoder.history;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +23,7 @@ import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.ViewPart;
 
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
 import de.hetzge.eclipse.aicoder.ContentPreviewDialog;
 import de.hetzge.eclipse.aicoder.util.DiffUtils;
 
@@ -32,10 +32,10 @@ public class AiCoderHistoryView extends ViewPart {
 	public static final String ID = "de.hetzge.eclipse.aicoder.AiCoderHistoryView";
 
 	private TableViewer viewer;
-	private final List<AiCoderHistoryEntry> historyEntries;
+	private List<AiCoderHistoryEntry> historyEntries;
 
 	public AiCoderHistoryView() {
-		this.historyEntries = new ArrayList<>();
+		this.historyEntries = List.of();
 	}
 
 	@Override
@@ -56,7 +56,7 @@ public class AiCoderHistoryView extends ViewPart {
 		this.viewer.getControl().setLayoutData(gridData);
 
 		// Set initial data
-		this.viewer.setInput(this.historyEntries);
+		refresh();
 	}
 
 	private void createViewer(Composite parent) {
@@ -105,7 +105,7 @@ public class AiCoderHistoryView extends ViewPart {
 					DiffUtils.openDiff(entry.getContent(), entry.getPreviousContent());
 				}
 			};
-			diffAction.setEnabled(entry.getContent() != null && entry.getPreviousContent() != null);
+			diffAction.setEnabled(entry.hasContent() && entry.hasPreviousContent());
 			manager.add(diffAction);
 		});
 		final Menu menu = menuManager.createContextMenu(this.viewer.getControl());
@@ -137,12 +137,8 @@ public class AiCoderHistoryView extends ViewPart {
 				.open();
 	}
 
-	public void addHistoryEntry(AiCoderHistoryEntry entry) {
+	public void updateHistoryEntry(AiCoderHistoryEntry entry) {
 		if (!this.historyEntries.contains(entry)) {
-			this.historyEntries.add(0, entry); // Add to the beginning of the list
-			if (this.historyEntries.size() > 100) { // TODO max preference
-				this.historyEntries.removeLast();
-			}
 			refresh();
 		} else {
 			this.viewer.update(entry, null);
@@ -150,7 +146,8 @@ public class AiCoderHistoryView extends ViewPart {
 	}
 
 	public void refresh() {
-		this.viewer.refresh();
+		this.historyEntries = AiCoderActivator.getDefault().getHistoryStore().getEntries();
+		this.viewer.setInput(this.historyEntries);
 	}
 
 	private void createColumns() {
@@ -264,6 +261,16 @@ public class AiCoderHistoryView extends ViewPart {
 			}
 		});
 
+		// Cached input token count column
+		column = createTableViewerColumn("Cached Tokens", 90);
+		column.setLabelProvider(new ColumnLabelProvider() {
+			@Override
+			public String getText(Object element) {
+				final AiCoderHistoryEntry entry = (AiCoderHistoryEntry) element;
+				return entry.getFormattedCachedInputTokenCount();
+			}
+		});
+
 		// Output token count column
 		column = createTableViewerColumn("Output Tokens", 70);
 		column.setLabelProvider(new ColumnLabelProvider() {
@@ -304,6 +311,16 @@ public class AiCoderHistoryView extends ViewPart {
 			}
 		});
 
+		// Hedge outcome
+		column = createTableViewerColumn("Hedge", 90);
+		column.setLabelProvider(new ColumnLabelProvider() {
+			@Override
+			public String getText(Object element) {
+				final AiCoderHistoryEntry entry = (AiCoderHistoryEntry) element;
+				return entry.getHedgeOutcome() != null ? entry.getHedgeOutcome().name() : "";
+			}
+		});
+
 		// Status
 		column = createTableViewerColumn("Status", 100);
 		column.setLabelProvider(new ColumnLabelProvider() {
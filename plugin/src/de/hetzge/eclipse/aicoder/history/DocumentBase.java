@@ -0,0 +1,76 @@
+package de.hetzge.eclipse.aicoder.history;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import mjson.Json;
+
+/**
+ * A full copy of a document and the edits that were applied to it afterwards (see {@link DocumentJournal}).
+ */
+final class DocumentBase {
+
+	private final String id;
+	private final String content;
+	private final List<Edit> edits;
+	private int editCharacterCount;
+
+	record Edit(int offset, int length, String text) {
+
+		Json toJson() {
+			return Json.array(this.offset, this.length, this.text);
+		}
+
+		static Edit fromJson(Json json) {
+			return new Edit(json.at(0).asInteger(), json.at(1).asInteger(), json.at(2).asString());
+		}
+	}
+
+	DocumentBase(String content) {
+		this(UUID.randomUUID().toString(), content);
+	}
+
+	DocumentBase(String id, String content) {
+		this.id = id;
+		this.content = content;
+		this.edits = new ArrayList<>();
+		this.editCharacterCount = 0;
+	}
+
+	String getId() {
+		return this.id;
+	}
+
+	String getContent() {
+		return this.content;
+	}
+
+	synchronized void addEdit(Edit edit) {
+		this.edits.add(edit);
+		this.editCharacterCount += edit.text().length();
+	}
+
+	synchronized int getEditCount() {
+		return this.edits.size();
+	}
+
+	synchronized int getEditCharacterCount() {
+		return this.editCharacterCount;
+	}
+
+	synchronized List<Edit> getEdits(int editCount) {
+		return new ArrayList<>(this.edits.subList(0, editCount));
+	}
+
+	static String apply(String content, List<Edit> edits) {
+		if (edits.isEmpty()) {
+			return content;
+		}
+		final StringBuilder builder = new StringBuilder(content);
+		for (final Edit edit : edits) {
+			builder.replace(edit.offset(), edit.offset() + edit.length(), edit.text());
+		}
+		return builder.toString();
+	}
+}
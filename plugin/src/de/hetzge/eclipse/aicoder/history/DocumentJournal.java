@@ -0,0 +1,42 @@
+package de.hetzge.eclipse.aicoder.history;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Records the edits of a document, so that snapshots for the history can be taken without copying the document. The content is only copied once per {@link DocumentBase}, the
+ * snapshots reference the base and the number of edits since then. A new base is started when the edits since the last one become too many or too large.
+ */
+public final class DocumentJournal {
+
+	private static final int MAX_EDIT_COUNT = 500;
+	private static final int MAX_EDIT_CHARACTER_COUNT = 64 * 1024;
+
+	private final IDocument document;
+	private DocumentBase base;
+
+	public DocumentJournal(IDocument document) {
+		this.document = document;
+		this.base = null;
+	}
+
+	/**
+	 * Has to be called for every change of the document (after the change).
+	 */
+	public synchronized void record(DocumentEvent event) {
+		if (this.base == null) {
+			return;
+		}
+		this.base.addEdit(new DocumentBase.Edit(event.getOffset(), event.getLength(), event.getText() != null ? event.getText() : ""));
+		if (this.base.getEditCount() >= MAX_EDIT_COUNT || this.base.getEditCharacterCount() >= MAX_EDIT_CHARACTER_COUNT) {
+			this.base = null;
+		}
+	}
+
+	public synchronized DocumentSnapshot snapshot() {
+		if (this.base == null) {
+			this.base = new DocumentBase(this.document.get());
+		}
+		return new DocumentSnapshot(this.base, this.base.getEditCount());
+	}
+}
@@ -0,0 +1,37 @@
+package de.hetzge.eclipse.aicoder.history;
+
+import java.util.List;
+
+/**
+ * The content of a document at some point in time, represented as {@link DocumentBase} and the number of edits that were applied to it. The content is only reconstructed on
+ * request.
+ */
+public final class DocumentSnapshot {
+
+	private final DocumentBase base;
+	private final int editCount;
+
+	DocumentSnapshot(DocumentBase base, int editCount) {
+		this.base = base;
+		this.editCount = editCount;
+	}
+
+	/**
+	 * @return a snapshot of a fixed content (without a {@link DocumentJournal})
+	 */
+	public static DocumentSnapshot of(String content) {
+		return new DocumentSnapshot(new DocumentBase(content), 0);
+	}
+
+	DocumentBase getBase() {
+		return this.base;
+	}
+
+	List<DocumentBase.Edit> getEdits() {
+		return this.base.getEdits(this.editCount);
+	}
+
+	public String getContent() {
+		return DocumentBase.apply(this.base.getContent(), getEdits());
+	}
+}
@@ -0,0 +1,79 @@
+package de.hetzge.eclipse.aicoder.inline;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import de.hetzge.eclipse.aicoder.llm.LlmLatencyStatistics;
+import de.hetzge.eclipse.aicoder.llm.LlmOption;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+
+/**
+ * Debounce delay that adapts to the typing cadence and the latency of the fill in the middle LLM.
+ *
+ * The expected typing pause is estimated like a TCP retransmission timeout (smoothed mean + 4 * mean deviation of the inter-keystroke intervals). If requests get aborted by further typing, the delay
+ * is stretched by a share of the backend latency, because a wasted request on a slow backend costs more than waiting a bit longer. The configured debounce is used until enough keystrokes were
+ * seen and bounds the adaptive delay to twice its value.
+ */
+final class AdaptiveTriggerDelay implements Supplier<Duration> {
+
+	private static final double ALPHA = 0.125;
+	private static final double BETA = 0.25;
+	private static final double WASTE_ALPHA = 0.2;
+	private static final int MIN_SAMPLE_COUNT = 5;
+	private static final long MAX_KEYSTROKE_INTERVAL_MS = 2000; // longer gaps are pauses, not typing cadence
+	private static final long MIN_DELAY_MS = 50;
+	private static final long MAX_LATENCY_PENALTY_MS = 1000;
+
+	private long lastKeystrokeTimestamp;
+	private double intervalMeanMs;
+	private double intervalDeviationMs;
+	private int sampleCount;
+	private double wasteRatio;
+
+	AdaptiveTriggerDelay() {
+		this.lastKeystrokeTimestamp = 0;
+		this.intervalMeanMs = 0;
+		this.intervalDeviationMs = 0;
+		this.sampleCount = 0;
+		this.wasteRatio = 0;
+	}
+
+	synchronized void recordKeystroke() {
+		final long timestamp = System.currentTimeMillis();
+		final long intervalMs = timestamp - this.lastKeystrokeTimestamp;
+		this.lastKeystrokeTimestamp = timestamp;
+		if (intervalMs > MAX_KEYSTROKE_INTERVAL_MS) {
+			return;
+		}
+		if (this.sampleCount == 0) {
+			this.intervalMeanMs = intervalMs;
+			this.intervalDeviationMs = intervalMs / 2.0;
+		} else {
+			this.intervalDeviationMs += BETA * (Math.abs(intervalMs - this.intervalMeanMs) - this.intervalDeviationMs);
+			this.intervalMeanMs += ALPHA * (intervalMs - this.intervalMeanMs);
+		}
+		this.sampleCount++;
+	}
+
+	/**
+	 * @param wasted true if the request was aborted (or its result outdated) because the user continued typing
+	 */
+	synchronized void recordRequest(boolean wasted) {
+		this.wasteRatio += WASTE_ALPHA * ((wasted ? 1.0 : 0.0) - this.wasteRatio);
+	}
+
+	@Override
+	public synchronized Duration get() {
+		final Duration configuredDelay = AiCoderPreferences.getDebounceDuration();
+		if (!AiCoderPreferences.isAdaptiveDebounceEnabled() || this.sampleCount < MIN_SAMPLE_COUNT) {
+			return configuredDelay;
+		}
+		final long latencyMs = LlmLatencyStatistics.INSTANCE.getAverageLatency(LlmOption.createFillInMiddleModelOptionFromPreferences()).map(Duration::toMillis).orElse(0L);
+		final double pauseMs = this.intervalMeanMs + 4 * this.intervalDeviationMs;
+		final double latencyPenaltyMs = Math.min(latencyMs, MAX_LATENCY_PENALTY_MS) * this.wasteRatio;
+		// the floor never exceeds the configured debounce, so a disabled debounce (0) stays disabled
+		final long minDelayMs = Math.min(MIN_DELAY_MS, configuredDelay.toMillis());
+		final long maxDelayMs = Math.max(minDelayMs, configuredDelay.toMillis() * 2);
+		return Duration.ofMillis(Math.max(minDelayMs, Math.min(maxDelayMs, Math.round(pauseMs + latencyPenaltyMs))));
+	}
+}
@@ -0,0 +1,83 @@
+package de.hetzge.eclipse.aicoder.inline;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The alternative contents of an inline completion. The first candidate is the primary (deterministic) completion, the alternatives are deduplicated and ranked with cheap local
+ * heuristics: balanced brackets, no repetition of the suffix and (up to a limit) more content.
+ */
+final class CompletionCandidates {
+
+	private static final int MAX_LENGTH_BONUS_CHARACTERS = 200;
+	private static final int SUFFIX_LINES_TO_COMPARE = 5;
+
+	private final int modelOffset;
+	private final List<String> contents;
+	private int index;
+
+	private CompletionCandidates(int modelOffset, List<String> contents) {
+		this.modelOffset = modelOffset;
+		this.contents = contents;
+		this.index = 0;
+	}
+
+	public int getModelOffset() {
+		return this.modelOffset;
+	}
+
+	public int size() {
+		return this.contents.size();
+	}
+
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * @return the content of the next (direction 1) or previous (direction -1) candidate, wrapping around at the ends
+	 */
+	public String cycle(int direction) {
+		this.index = Math.floorMod(this.index + direction, this.contents.size());
+		return this.contents.get(this.index);
+	}
+
+	public static CompletionCandidates create(int modelOffset, String primaryContent, List<String> alternativeContents, String suffix, String fileExtension) {
+		final Set<String> normalizedContents = new HashSet<>();
+		normalizedContents.add(normalize(primaryContent));
+		final List<String> alternatives = new ArrayList<>();
+		for (final String content : alternativeContents) {
+			if (!content.isBlank() && normalizedContents.add(normalize(content))) {
+				alternatives.add(content);
+			}
+		}
+		alternatives.sort(Comparator.comparingDouble((String content) -> score(content, suffix, fileExtension)).reversed());
+		final List<String> contents = new ArrayList<>();
+		contents.add(primaryContent);
+		contents.addAll(alternatives);
+		return new CompletionCandidates(modelOffset, contents);
+	}
+
+	static double score(String content, String suffix, String fileExtension) {
+		double score = 0;
+		score -= 2 * SyntacticBoundaryTerminator.countMismatchedBrackets(fileExtension, content);
+		score -= countSuffixLineRepetitions(content, suffix);
+		score += Math.min(content.strip().length(), MAX_LENGTH_BONUS_CHARACTERS) / (double) MAX_LENGTH_BONUS_CHARACTERS;
+		return score;
+	}
+
+	/**
+	 * @return the number of (non trivial) content lines that already exist at the beginning of the suffix
+	 */
+	private static int countSuffixLineRepetitions(String content, String suffix) {
+		final Set<String> suffixLines = new HashSet<>(suffix.lines().map(String::trim).filter(line -> !line.isEmpty()).limit(SUFFIX_LINES_TO_COMPARE).toList());
+		return (int) content.lines().map(String::trim).filter(line -> line.length() > 3 && suffixLines.contains(line)).count();
+	}
+
+	private static String normalize(String content) {
+		return content.replaceAll("\\s+", " ").trim();
+	}
+}
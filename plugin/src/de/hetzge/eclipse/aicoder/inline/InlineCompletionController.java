@@ -6,9 +6,12 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
@@ -46,6 +49,8 @@ import org.eclipse.swt.graphics.GlyphMetrics;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IPropertyListener;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.contexts.IContextActivation;
@@ -55,16 +60,24 @@ import de.hetzge.eclipse.aicoder.AiCoderActivator;
 import de.hetzge.eclipse.aicoder.CompletionMode;
 import de.hetzge.eclipse.aicoder.ContextView;
 import de.hetzge.eclipse.aicoder.Debouncer;
+import de.hetzge.eclipse.aicoder.context.Context;
 import de.hetzge.eclipse.aicoder.context.ContextContext;
 import de.hetzge.eclipse.aicoder.context.ContextEntry;
+import de.hetzge.eclipse.aicoder.context.ContextPrecomputer;
 import de.hetzge.eclipse.aicoder.context.FillInMiddleContextEntry;
 import de.hetzge.eclipse.aicoder.context.RootContextEntry;
 import de.hetzge.eclipse.aicoder.history.AiCoderHistoryEntry;
 import de.hetzge.eclipse.aicoder.history.AiCoderHistoryView;
+import de.hetzge.eclipse.aicoder.history.DocumentJournal;
 import de.hetzge.eclipse.aicoder.history.HistoryStatus;
+import de.hetzge.eclipse.aicoder.llm.LlmOption;
 import de.hetzge.eclipse.aicoder.llm.LlmPromptTemplates;
 import de.hetzge.eclipse.aicoder.llm.LlmResponse;
+import de.hetzge.eclipse.aicoder.llm.LlmStreamTerminator;
+import de.hetzge.eclipse.aicoder.llm.LlmTokenizers;
 import de.hetzge.eclipse.aicoder.llm.LlmUtils;
+import de.hetzge.eclipse.aicoder.metrics.LatencyMetrics;
+import de.hetzge.eclipse.aicoder.metrics.LatencyStage;
 import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
 import de.hetzge.eclipse.aicoder.util.EclipseUtils;
 import de.hetzge.eclipse.aicoder.util.LambdaExceptionUtils.Runnable_WithExceptions;
@@ -77,6 +90,7 @@ import de.hetzge.eclipse.aicoder.util.Utils;
 
 public final class InlineCompletionController {
 
+	private static final long CARET_REST_DELAY_MS = 1000;
 	private static final ISchedulingRule COMPLETION_JOB_RULE = new ISchedulingRule() {
 		@Override
 		public boolean contains(ISchedulingRule other) {
@@ -104,6 +118,7 @@ public final class InlineCompletionController {
 				textViewer.getTextWidget().setLineSpacingProvider(controller.spacingProvider);
 				textViewer.getSelectionProvider().addSelectionChangedListener(controller.selectionListener);
 				textViewer.getTextWidget().addCaretListener(controller.caretListener);
+				textEditor.addPropertyListener(controller.propertyListener);
 				textEditor.getDocumentProvider().getDocument(textEditor.getEditorInput()).addDocumentListener(controller.documentListener);
 			});
 			return controller;
@@ -115,20 +130,28 @@ public final class InlineCompletionController {
 	private final StyledText widget;
 	private final StyledTextLineSpacingProviderImplementation spacingProvider;
 	private final DocumentListenerImplementation documentListener;
+	private final DocumentJournal documentJournal;
 	private final PaintListenerImplementation paintListener;
 	private final PainterImplementation painter;
 	private final ISelectionChangedListener selectionListener;
 	private final CaretListener caretListener;
+	private final IPropertyListener propertyListener;
+	private final ContextPrecomputer contextPrecomputer;
 	private InlineCompletion completion;
 	private IContextActivation context;
 	private Job job;
-	private long changeCounter;
+	private volatile long changeCounter;
 	private long lastChangeCounter;
+	private final AdaptiveTriggerDelay triggerDelay;
 	private final Debouncer debouncer;
 	private boolean abortDisabled;
 	private SuggestionPopupDialog suggestionPopupDialog;
 	private Suggestion suggestion;
 	private Future<LlmResponse> llmResponseFuture;
+	private final AtomicReference<SpeculativeRequest> speculativeRequest;
+	private final AtomicLong speculationCounter;
+	private CompletableFuture<List<String>> candidateContentsFuture;
+	private CompletionCandidates candidates;
 
 	private InlineCompletionController(ITextViewer textViewer, ITextEditor textEditor) {
 		this.textViewer = textViewer;
@@ -136,20 +159,28 @@ public final class InlineCompletionController {
 		this.widget = textViewer.getTextWidget();
 		this.spacingProvider = new StyledTextLineSpacingProviderImplementation();
 		this.documentListener = new DocumentListenerImplementation();
+		this.documentJournal = new DocumentJournal(textViewer.getDocument());
 		this.paintListener = new PaintListenerImplementation();
 		this.painter = new PainterImplementation();
 		this.selectionListener = new SelectionListenerImplementation();
 		this.caretListener = new CaretListenerImplementation();
+		this.propertyListener = new PropertyListenerImplementation();
+		this.contextPrecomputer = new ContextPrecomputer();
 		this.completion = null;
 		this.context = null;
 		this.job = null;
 		this.changeCounter = 0;
 		this.lastChangeCounter = 0;
-		this.debouncer = new Debouncer(Display.getDefault(), AiCoderPreferences::getDebounceDuration);
+		this.triggerDelay = new AdaptiveTriggerDelay();
+		this.debouncer = new Debouncer(Display.getDefault(), this.triggerDelay);
 		this.abortDisabled = false;
 		this.suggestionPopupDialog = null;
 		this.suggestion = null;
 		this.llmResponseFuture = null;
+		this.speculativeRequest = new AtomicReference<>();
+		this.speculationCounter = new AtomicLong();
+		this.candidateContentsFuture = null;
+		this.candidates = null;
 	}
 
 	private void triggerAutocomplete() {
@@ -161,21 +192,40 @@ public final class InlineCompletionController {
 		if (AiCoderPreferences.isOnlyOnChangeAutocompleteEnabled() && !isDocumentChanged) {
 			return;
 		}
-		final boolean isActiveEditor = Display.getDefault().syncCall(() -> {
-			final IWorkbenchPage activePage = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage();
-			return activePage != null && activePage.getActiveEditor() == InlineCompletionController.this.textEditor;
-		});
-		if (!isActiveEditor) {
-			AiCoderActivator.log().info("Not active editor");
-			return;
-		}
+		// the caret listener calls this on every caret move, so the more expensive checks are only done once the debounce delay passed (on the UI thread)
+		final long beforeDebounceNanos = System.nanoTime();
 		this.debouncer.debounce(() -> {
-			if (!EclipseUtils.hasSelection(this.textViewer)) {
+			LatencyMetrics.INSTANCE.record(LatencyStage.DEBOUNCE, getLlmOption(CompletionMode.INLINE).getLabel(), System.nanoTime() - beforeDebounceNanos);
+			if (!isActiveEditor()) {
+				AiCoderActivator.log().info("Not active editor");
+				return;
+			}
+			if (!EclipseUtils.hasSelection(this.textViewer) && !isCompletionAtCaret()) {
 				trigger(null);
 			}
 		});
 	}
 
+	/**
+	 * Recreates the cursor independent context entries in the background (when the editor is activated or saved).
+	 */
+	public void precomputeContext() {
+		this.contextPrecomputer.schedule(this.textEditor.getEditorInput(), EclipseUtils.getCurrentOffsetInDocument(this.textEditor), 0);
+	}
+
+	private boolean isActiveEditor() {
+		final IWorkbenchPage activePage = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage();
+		return activePage != null && activePage.getActiveEditor() == this.textEditor;
+	}
+
+	/**
+	 * @return true if the visible completion is still located at the caret (for example after typing through it)
+	 */
+	private boolean isCompletionAtCaret() {
+		final InlineCompletion completion = this.completion;
+		return completion != null && completion.modelRegion().getOffset() == EclipseUtils.getCurrentOffsetInDocument(this.textEditor);
+	}
+
 	public void trigger(String instruction) {
 		AiCoderActivator.log().info("Trigger");
 		final long startTime = System.currentTimeMillis();
@@ -200,7 +250,7 @@ public final class InlineCompletionController {
 				mode = CompletionMode.GENERATE;
 			}
 		}
-		final AiCoderHistoryEntry historyEntry = new AiCoderHistoryEntry(mode, filePath, this.textViewer.getDocument().get());
+		final AiCoderHistoryEntry historyEntry = new AiCoderHistoryEntry(mode, filePath, this.documentJournal.snapshot());
 		this.job = new Job("AI completion") {
 
 			ITextViewer textViewer = InlineCompletionController.this.textViewer;
@@ -210,6 +260,7 @@ public final class InlineCompletionController {
 			protected IStatus run(IProgressMonitor monitor) {
 				String prompt = "";
 				LlmResponse llmResponse = null;
+				LlmStreamTerminator terminator = null;
 				try {
 					updateHistoryEntry(historyEntry);
 					final int modelOffset = EclipseUtils.getCurrentOffsetInDocument(InlineCompletionController.this.textEditor);
@@ -220,8 +271,13 @@ public final class InlineCompletionController {
 						return Status.CANCEL_STATUS;
 					}
 					AiCoderActivator.log().info("Calculate context");
-					final RootContextEntry rootContextEntry = RootContextEntry.create(document, this.textEditor.getEditorInput(), modelOffset);
-					final String contextString = ContextEntry.apply(rootContextEntry, new ContextContext());
+					final String modelLabel = getLlmOption(mode).getLabel();
+					final IEditorInput editorInput = this.textEditor.getEditorInput();
+					final RootContextEntry rootContextEntry = RootContextEntry.create(document, editorInput, modelOffset, InlineCompletionController.this.contextPrecomputer.get(editorInput));
+					recordContextLatencies(rootContextEntry, modelLabel);
+					final long beforeRenderNanos = System.nanoTime();
+					final String contextString = ContextEntry.apply(rootContextEntry, new ContextContext(getContextTokenBudget(mode), LlmTokenizers.INSTANCE.get(getLlmOption(mode))));
+					LatencyMetrics.INSTANCE.record(LatencyStage.RENDER, modelLabel, System.nanoTime() - beforeRenderNanos);
 					// IMPORTANT: DO this after ContextEntry.apply(...)
 					updateContextView(rootContextEntry);
 					if (monitor.isCanceled()) {
@@ -229,9 +285,8 @@ public final class InlineCompletionController {
 						updateHistoryEntry(historyEntry);
 						return Status.CANCEL_STATUS;
 					}
-					final String[] contextParts = contextString.split(FillInMiddleContextEntry.FILL_HERE_PLACEHOLDER);
-					final String prefix = contextParts[0];
-					final String suffix = contextParts.length > 1 ? contextParts[1] : "";
+					final String prefix = getPrefix(contextString);
+					final String suffix = getSuffix(contextString);
 					final String selectionText = EclipseUtils.getSelectionText(this.textViewer);
 					if (mode == CompletionMode.EDIT || mode == CompletionMode.GENERATE || mode == CompletionMode.QUICK_FIX) {
 						final String fileType = EclipseUtils.getFileExtension(this.textEditor.getEditorInput());
@@ -251,7 +306,21 @@ public final class InlineCompletionController {
 						}
 					} else if (mode == CompletionMode.INLINE) {
 						prompt = prefix + "<|cursor|>" + suffix;
-						InlineCompletionController.this.llmResponseFuture = LlmUtils.executeFillInTheMiddle(prefix, suffix);
+						terminator = AiCoderPreferences.isMultilineEnabled() ? SyntacticBoundaryTerminator.create(EclipseUtils.getFileExtension(this.textEditor.getEditorInput()), suffix) : null;
+						final Optional<CompletableFuture<LlmResponse>> speculativeResponseFutureOptional = takeSpeculativeResponseFuture(prefix, suffix, modelOffset);
+						if (speculativeResponseFutureOptional.isPresent()) {
+							AiCoderActivator.log().info("Use speculative prefetched completion");
+							InlineCompletionController.this.llmResponseFuture = speculativeResponseFutureOptional.get();
+						} else {
+							InlineCompletionController.this.llmResponseFuture = LlmUtils.executeFillInTheMiddle(prefix, suffix, partialContent -> {
+								showPartialCompletion(monitor, historyEntry, document, modelOffset, partialContent, lineHeight, defaultLineSpacing);
+							}, terminator);
+						}
+						final int candidateCount = AiCoderPreferences.getCandidateCount();
+						// the alternatives of a cached or prefetched completion would cost more than the completion itself
+						if (candidateCount > 1 && speculativeResponseFutureOptional.isEmpty() && !isCachedResponse(InlineCompletionController.this.llmResponseFuture)) {
+							InlineCompletionController.this.candidateContentsFuture = LlmUtils.executeFillInTheMiddleCandidates(prefix, suffix, candidateCount - 1);
+						}
 					} else {
 						throw new IllegalStateException("Unknown completion mode: " + mode);
 					}
@@ -270,12 +339,14 @@ public final class InlineCompletionController {
 						historyEntry.setStatus(HistoryStatus.ERROR);
 						historyEntry.setPlainLlmResponse(llmResponse.getPlainResponse());
 						historyEntry.setModelLabel(llmResponse.getLlmModelOption().getLabel());
+						historyEntry.setHedgeOutcome(llmResponse.getHedgeOutcome());
 						historyEntry.setInput(prompt);
 						historyEntry.setOutput(llmResponse.getContent());
 						updateHistoryEntry(historyEntry);
 						return Status.OK_STATUS;
 					}
-					final String content = Utils.stripCodeMarkdownTags(llmResponse.getContent());
+					final long beforePostProcessingNanos = System.nanoTime();
+					final String content = truncate(Utils.stripCodeMarkdownTags(llmResponse.getContent()), terminator);
 					final int currentModelOffset = EclipseUtils.getCurrentOffsetInDocument(InlineCompletionController.this.textEditor);
 					final boolean isMultilineContent = content.contains("\n");
 					final boolean isBlank = content.isBlank();
@@ -292,6 +363,8 @@ public final class InlineCompletionController {
 						if (mode == CompletionMode.EDIT || mode == CompletionMode.QUICK_FIX) {
 							final int newLineCount = (int) content.lines().count();
 							final int oldLineCount = (int) selectionText.lines().count();
+							LatencyMetrics.INSTANCE.record(LatencyStage.POST_PROCESSING, llmResponse.getLlmModelOption().getLabel(), System.nanoTime() - beforePostProcessingNanos);
+							final long beforePaintNanos = System.nanoTime();
 							setup(new Suggestion(
 									historyEntry,
 									content,
@@ -301,8 +374,9 @@ public final class InlineCompletionController {
 									newLineCount,
 									oldLineCount,
 									Math.max(newLineCount - oldLineCount, 0)));
+							LatencyMetrics.INSTANCE.record(LatencyStage.PAINT, llmResponse.getLlmModelOption().getLabel(), System.nanoTime() - beforePaintNanos);
 						} else if (mode == CompletionMode.INLINE || mode == CompletionMode.GENERATE) {
-							setup(InlineCompletion.create(
+							final InlineCompletion inlineCompletion = InlineCompletion.create(
 									historyEntry,
 									document,
 									modelOffset,
@@ -310,10 +384,22 @@ public final class InlineCompletionController {
 									EclipseUtils.getWidgetLine(this.textViewer, modelOffset),
 									content,
 									lineHeight,
-									defaultLineSpacing));
+									defaultLineSpacing);
+							LatencyMetrics.INSTANCE.record(LatencyStage.POST_PROCESSING, llmResponse.getLlmModelOption().getLabel(), System.nanoTime() - beforePostProcessingNanos);
+							final long beforePaintNanos = System.nanoTime();
+							setup(inlineCompletion);
+							LatencyMetrics.INSTANCE.record(LatencyStage.PAINT, llmResponse.getLlmModelOption().getLabel(), System.nanoTime() - beforePaintNanos);
+							if (mode == CompletionMode.INLINE) {
+								collectCandidates(inlineCompletion, content, suffix, terminator);
+							}
 						} else {
 							throw new IllegalStateException("Unknown completion mode: " + mode);
 						}
+					} else if (mode == CompletionMode.INLINE) {
+						unsetPartialCompletion(historyEntry);
+					}
+					if (mode == CompletionMode.INLINE) {
+						InlineCompletionController.this.triggerDelay.recordRequest(isMoved);
 					}
 					final long duration = System.currentTimeMillis() - startTime;
 					historyEntry.setStatus(calculateStatus(isBlank, isMoved, isSame));
@@ -321,7 +407,9 @@ public final class InlineCompletionController {
 					historyEntry.setLlmDurationMs(llmResponse.getDuration().toMillis());
 					historyEntry.setPlainLlmResponse(llmResponse.getPlainResponse());
 					historyEntry.setModelLabel(llmResponse.getLlmModelOption().getLabel());
+					historyEntry.setHedgeOutcome(llmResponse.getHedgeOutcome());
 					historyEntry.setInputTokenCount(llmResponse.getInputTokens());
+					historyEntry.setCachedInputTokenCount(llmResponse.getCachedInputTokens());
 					historyEntry.setOutputTokenCount(llmResponse.getOutputTokens());
 					historyEntry.setInput(prompt);
 					historyEntry.setOutput(content);
@@ -329,6 +417,7 @@ public final class InlineCompletionController {
 					return Status.OK_STATUS;
 				} catch (final Exception exception) {
 					AiCoderActivator.log().error("AI Coder completion failed", exception);
+					unsetPartialCompletion(historyEntry);
 					final long duration = System.currentTimeMillis() - startTime;
 					final String stacktrace = Utils.getStacktraceString(exception);
 					historyEntry.setStatus(HistoryStatus.ERROR);
@@ -364,6 +453,220 @@ public final class InlineCompletionController {
 //		this.llmResponseFuture = LlmUtils.executeNextEdit(request);
 	}
 
+	/**
+	 * Speculatively requests the follow-up completion for the current caret position (after a completion was accepted). The result is kept in a single slot that is used by the next trigger with the same prompt.
+	 * The request is dropped if the document or the caret changed or a trigger ran before it was sent.
+	 */
+	private void prefetch() {
+		final IEditorInput editorInput = this.textEditor.getEditorInput();
+		final IDocument document = this.textViewer.getDocument();
+		final int modelOffset = EclipseUtils.getCurrentOffsetInDocument(this.textEditor);
+		final long prefetchChangeCounter = this.changeCounter;
+		final long prefetchSpeculationCounter = this.speculationCounter.incrementAndGet();
+		final Job prefetchJob = new Job("AI completion prefetch") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					final RootContextEntry rootContextEntry = RootContextEntry.create(document, editorInput, modelOffset, InlineCompletionController.this.contextPrecomputer.get(editorInput));
+					final String contextString = ContextEntry.apply(rootContextEntry, new ContextContext(getContextTokenBudget(CompletionMode.INLINE), LlmTokenizers.INSTANCE.get(getLlmOption(CompletionMode.INLINE))));
+					if (monitor.isCanceled() || InlineCompletionController.this.speculationCounter.get() != prefetchSpeculationCounter || isStale(prefetchChangeCounter, modelOffset)) {
+						AiCoderActivator.log().info("Drop stale speculative completion");
+						return Status.CANCEL_STATUS;
+					}
+					final String prefix = getPrefix(contextString);
+					final String suffix = getSuffix(contextString);
+					AiCoderActivator.log().info("Prefetch speculative completion");
+					final SpeculativeRequest request = new SpeculativeRequest(prefetchChangeCounter, modelOffset, prefix, suffix, LlmUtils.executeFillInTheMiddle(prefix, suffix));
+					cancelSpeculativeRequest(InlineCompletionController.this.speculativeRequest.getAndSet(request));
+					// a trigger that ran meanwhile didn't use the request
+					if (InlineCompletionController.this.speculationCounter.get() != prefetchSpeculationCounter && InlineCompletionController.this.speculativeRequest.compareAndSet(request, null)) {
+						cancelSpeculativeRequest(request);
+					}
+					return Status.OK_STATUS;
+				} catch (final Exception exception) {
+					AiCoderActivator.log().error("AI Coder prefetch failed", exception);
+					return Status.OK_STATUS;
+				}
+			}
+		};
+		prefetchJob.setSystem(true);
+		prefetchJob.schedule();
+	}
+
+	private Optional<CompletableFuture<LlmResponse>> takeSpeculativeResponseFuture(String prefix, String suffix, int modelOffset) {
+		this.speculationCounter.incrementAndGet();
+		final SpeculativeRequest speculativeRequest = this.speculativeRequest.getAndSet(null);
+		if (speculativeRequest == null) {
+			return Optional.empty();
+		}
+		if (speculativeRequest.changeCounter() != this.changeCounter || speculativeRequest.modelOffset() != modelOffset || !speculativeRequest.prefix().equals(prefix) || !speculativeRequest.suffix().equals(suffix)) {
+			cancelSpeculativeRequest(speculativeRequest);
+			return Optional.empty();
+		}
+		return Optional.of(speculativeRequest.responseFuture());
+	}
+
+	private boolean isStale(long changeCounter, int modelOffset) {
+		return this.changeCounter != changeCounter || EclipseUtils.getCurrentOffsetInDocument(this.textEditor) != modelOffset;
+	}
+
+	private static void cancelSpeculativeRequest(SpeculativeRequest speculativeRequest) {
+		if (speculativeRequest != null) {
+			speculativeRequest.responseFuture().cancel(true);
+		}
+	}
+
+	/**
+	 * @return the context window of the LLM of the mode without the tokens reserved for the response or 0 if unlimited
+	 */
+	private static int getContextTokenBudget(CompletionMode mode) {
+		final int contextWindow = switch (mode) {
+		case INLINE -> AiCoderPreferences.getFillInMiddleContextWindow();
+		case QUICK_FIX -> AiCoderPreferences.getQuickFixContextWindow();
+		case GENERATE -> AiCoderPreferences.getGenerateContextWindow();
+		case EDIT -> AiCoderPreferences.getEditContextWindow();
+		};
+		return contextWindow > 0 ? Math.max(1, contextWindow - AiCoderPreferences.getMaxTokens()) : 0;
+	}
+
+	/**
+	 * The factories run in parallel, so each one is recorded with its own creation duration.
+	 */
+	private static void recordContextLatencies(RootContextEntry rootContextEntry, String modelLabel) {
+		for (final ContextEntry entry : rootContextEntry.getChildContextEntries()) {
+			final String prefix = entry.getKey().prefix();
+			final String contextTypeName = Context.CONTEXT_TYPE_NAME_BY_CONTEXT_PREFIX.getOrDefault(prefix, prefix);
+			LatencyMetrics.INSTANCE.record(LatencyStage.CONTEXT, contextTypeName, modelLabel, entry.getCreationDuration().toNanos());
+		}
+		LatencyMetrics.INSTANCE.record(LatencyStage.CONTEXT, "Total", modelLabel, rootContextEntry.getCreationDuration().toNanos());
+	}
+
+	private static LlmOption getLlmOption(CompletionMode mode) {
+		return switch (mode) {
+		case INLINE -> LlmOption.createFillInMiddleModelOptionFromPreferences();
+		case QUICK_FIX -> LlmOption.createQuickFixModelOptionFromPreferences();
+		case GENERATE, EDIT -> LlmOption.createEditModelOptionFromPreferences();
+		};
+	}
+
+	private static String getPrefix(String contextString) {
+		return contextString.split(FillInMiddleContextEntry.FILL_HERE_PLACEHOLDER)[0];
+	}
+
+	private static String getSuffix(String contextString) {
+		final String[] contextParts = contextString.split(FillInMiddleContextEntry.FILL_HERE_PLACEHOLDER);
+		return contextParts.length > 1 ? contextParts[1] : "";
+	}
+
+	/**
+	 * Applies the terminator also to responses that were not streamed (or stopped by the model itself).
+	 */
+	private static String truncate(String content, LlmStreamTerminator terminator) {
+		if (terminator == null) {
+			return content;
+		}
+		final int end = terminator.findEnd(content);
+		return end >= 0 ? content.substring(0, end) : content;
+	}
+
+	/**
+	 * @return true if the response was answered from the response cache, which happens before the request would be sent
+	 */
+	private static boolean isCachedResponse(CompletableFuture<LlmResponse> responseFuture) {
+		return responseFuture.isDone() && !responseFuture.isCompletedExceptionally() && responseFuture.join().isCached();
+	}
+
+	/**
+	 * Offers the alternative completions (requested in parallel to the visible one) for cycling as soon as they arrived.
+	 */
+	private void collectCandidates(InlineCompletion completion, String primaryContent, String suffix, LlmStreamTerminator terminator) {
+		final CompletableFuture<List<String>> candidateContentsFuture = this.candidateContentsFuture;
+		if (candidateContentsFuture == null) {
+			return;
+		}
+		final String fileExtension = EclipseUtils.getFileExtension(this.textEditor.getEditorInput());
+		candidateContentsFuture.thenAccept(contents -> {
+			final List<String> alternativeContents = contents.stream()
+					.map(content -> truncate(Utils.stripCodeMarkdownTags(content), terminator))
+					.toList();
+			final CompletionCandidates candidates = CompletionCandidates.create(completion.modelRegion().getOffset(), primaryContent, alternativeContents, suffix, fileExtension);
+			Display.getDefault().asyncExec(() -> {
+				if (this.completion == completion) {
+					AiCoderActivator.log().info(String.format("%d completion candidates available", candidates.size()));
+					this.candidates = candidates;
+				}
+			});
+		});
+	}
+
+	/**
+	 * Replaces the visible inline completion with the next (direction 1) or previous (direction -1) candidate.
+	 */
+	public void cycleCandidate(int direction) {
+		final InlineCompletion completion = this.completion;
+		final CompletionCandidates candidates = this.candidates;
+		if (completion == null || candidates == null || candidates.size() < 2 || completion.modelRegion().getOffset() != candidates.getModelOffset()) {
+			return;
+		}
+		final String content = candidates.cycle(direction);
+		AiCoderActivator.log().info(String.format("Show completion candidate %d/%d", candidates.getIndex() + 1, candidates.size()));
+		final int modelOffset = candidates.getModelOffset();
+		try {
+			this.paintListener.resetMetrics();
+			this.completion = InlineCompletion.create(
+					completion.historyEntry(),
+					this.textViewer.getDocument(),
+					modelOffset,
+					EclipseUtils.getWidgetOffset(this.textViewer, modelOffset),
+					EclipseUtils.getWidgetLine(this.textViewer, modelOffset),
+					content,
+					completion.lineHeight(),
+					this.widget.getLineSpacing());
+			completion.historyEntry().setOutput(content);
+			updateHistoryEntry(completion.historyEntry());
+			redraw();
+		} catch (final BadLocationException exception) {
+			AiCoderActivator.log().error("Failed to show completion candidate", exception);
+			abort("Cycle candidate failed");
+		}
+	}
+
+	private void showPartialCompletion(IProgressMonitor monitor, AiCoderHistoryEntry historyEntry, IDocument document, int modelOffset, String partialContent, int lineHeight, int defaultLineSpacing) {
+		final String content = Utils.stripCodeMarkdownTags(partialContent);
+		if (monitor.isCanceled() || content.isBlank()) {
+			return;
+		}
+		Display.getDefault().syncExec(() -> {
+			// check on the ui thread to not race with abort(...)
+			if (monitor.isCanceled() || EclipseUtils.getCurrentOffsetInDocument(this.textEditor) != modelOffset) {
+				return;
+			}
+			try {
+				this.completion = InlineCompletion.create(
+						historyEntry,
+						document,
+						modelOffset,
+						EclipseUtils.getWidgetOffset(this.textViewer, modelOffset),
+						EclipseUtils.getWidgetLine(this.textViewer, modelOffset),
+						content,
+						lineHeight,
+						defaultLineSpacing);
+				setupContext();
+				redraw();
+			} catch (final BadLocationException exception) {
+				AiCoderActivator.log().error("Failed to show partial completion", exception);
+			}
+		});
+	}
+
+	private void unsetPartialCompletion(AiCoderHistoryEntry historyEntry) {
+		Display.getDefault().syncExec(() -> {
+			if (this.completion != null && this.completion.historyEntry() == historyEntry) {
+				abort("Discard partial completion");
+			}
+		});
+	}
+
 	private void cancelHttpRequest() {
 		AiCoderActivator.log().info("Canceling");
 		if (this.llmResponseFuture != null) {
@@ -432,7 +735,9 @@ public final class InlineCompletionController {
 
 	private void setupContext() {
 		Display.getDefault().syncExec(() -> {
-			this.context = EclipseUtils.getContextService(this.textEditor).activateContext("de.hetzge.eclipse.codestral.inlineCompletionVisible");
+			if (this.context == null) { // already active while a completion is streamed
+				this.context = EclipseUtils.getContextService(this.textEditor).activateContext("de.hetzge.eclipse.codestral.inlineCompletionVisible");
+			}
 		});
 	}
 
@@ -442,9 +747,17 @@ public final class InlineCompletionController {
 		}
 		if (this.llmResponseFuture != null) {
 			AiCoderActivator.log().info(String.format("Cancel LLM response future (reason: '%s')", reason));
+			if (!this.llmResponseFuture.isDone()) {
+				this.triggerDelay.recordRequest(true);
+			}
 			this.llmResponseFuture.cancel(true);
 			this.llmResponseFuture = null;
 		}
+		if (this.candidateContentsFuture != null) {
+			this.candidateContentsFuture.cancel(true);
+			this.candidateContentsFuture = null;
+		}
+		this.candidates = null;
 		if (this.suggestionPopupDialog != null) {
 			AiCoderActivator.log().info(String.format("Close suggestion popup dialog (reason: '%s')", reason));
 			this.suggestionPopupDialog.close();
@@ -463,24 +776,75 @@ public final class InlineCompletionController {
 		}
 		if (this.suggestion != null) {
 			AiCoderActivator.log().info(String.format("Unset suggestion (reason: '%s')", reason));
-			if (this.suggestion.historyEntry().getStatus() == HistoryStatus.GENERATED) {
-				this.suggestion.historyEntry().setStatus(HistoryStatus.REJECTED);
+			final AiCoderHistoryEntry historyEntry = this.suggestion.historyEntry();
+			if (historyEntry.getStatus() == HistoryStatus.GENERATED) {
+				historyEntry.setStatus(HistoryStatus.REJECTED);
 			}
 			this.suggestion = null;
-			AiCoderHistoryView.get().ifPresent(AiCoderHistoryView::refresh);
+			updateHistoryEntry(historyEntry);
 			this.paintListener.resetMetrics();
 		}
 		if (this.completion != null) {
 			AiCoderActivator.log().info(String.format("Unset completions (reason: '%s')", reason));
-			if (this.completion.historyEntry().getStatus() == HistoryStatus.GENERATED) {
-				this.completion.historyEntry().setStatus(HistoryStatus.REJECTED);
+			final AiCoderHistoryEntry historyEntry = this.completion.historyEntry();
+			if (historyEntry.getStatus() == HistoryStatus.GENERATED) {
+				historyEntry.setStatus(HistoryStatus.REJECTED);
 			}
 			this.completion = null;
-			AiCoderHistoryView.get().ifPresent(AiCoderHistoryView::refresh);
+			updateHistoryEntry(historyEntry);
 			this.paintListener.resetMetrics();
 		}
 	}
 
+	/**
+	 * If the user types the beginning of the visible inline completion, keep the completion (without the typed text) instead of requesting a new one.
+	 *
+	 * @return true if the completion was kept
+	 */
+	private boolean typeThrough(DocumentEvent event) {
+		final InlineCompletion completion = this.completion;
+		if (completion == null || this.abortDisabled) {
+			return false;
+		}
+		if (this.llmResponseFuture != null && !this.llmResponseFuture.isDone()) {
+			return false; // still streaming
+		}
+		final String text = event.getText();
+		if (event.getLength() != 0 || text == null || text.isEmpty()) {
+			return false;
+		}
+		if (event.getOffset() != completion.modelRegion().getOffset() || !completion.content().startsWith(text) || completion.content().length() == text.length()) {
+			return false;
+		}
+		AiCoderActivator.log().info(String.format("Type through completion (%d characters)", text.length()));
+		final IDocument document = event.getDocument();
+		final int modelOffset = event.getOffset() + text.length();
+		final String remainingContent = completion.content().substring(text.length());
+		// the widget is not necessarily updated yet, so calculate the new widget position afterwards
+		Display.getDefault().asyncExec(() -> {
+			if (this.completion != completion) {
+				return;
+			}
+			try {
+				this.paintListener.resetMetrics();
+				this.completion = InlineCompletion.create(
+						completion.historyEntry(),
+						document,
+						modelOffset,
+						EclipseUtils.getWidgetOffset(this.textViewer, modelOffset),
+						EclipseUtils.getWidgetLine(this.textViewer, modelOffset),
+						remainingContent,
+						completion.lineHeight(),
+						this.widget.getLineSpacing());
+				redraw();
+			} catch (final BadLocationException exception) {
+				AiCoderActivator.log().error("Failed to type through completion", exception);
+				abort("Type through failed");
+			}
+		});
+		return true;
+	}
+
 	private void redraw() {
 		Display.getDefault().syncExec(() -> {
 			// windows needs this ?! (TODO investigate if this is still needed, or if possible to only redraw affected lines)
@@ -526,12 +890,15 @@ public final class InlineCompletionController {
 				this.completion.applyTo(this.textViewer.getDocument());
 				this.textViewer.setSelectedRange(this.completion.modelRegion().getOffset() + this.completion.content().length(), 0);
 				this.completion.historyEntry().setStatus(HistoryStatus.ACCEPTED);
-				this.completion.historyEntry().setContent(this.textViewer.getDocument().get());
-				AiCoderHistoryView.get().ifPresent(AiCoderHistoryView::refresh);
+				this.completion.historyEntry().setContent(this.documentJournal.snapshot());
+				updateHistoryEntry(this.completion.historyEntry());
 			}, "Accepted");
 		} catch (final BadLocationException exception) {
 			throw new RuntimeException("Failed to accept inline completion", exception);
 		}
+		if (AiCoderPreferences.isSpeculativePrefetchEnabled()) {
+			prefetch();
+		}
 	}
 
 	private void acceptSuggestion() {
@@ -540,8 +907,8 @@ public final class InlineCompletionController {
 				this.suggestion.applyTo(this.textViewer.getDocument());
 				this.textViewer.setSelectedRange(this.suggestion.modelOffset() + this.suggestion.content().length(), 0);
 				this.suggestion.historyEntry().setStatus(HistoryStatus.ACCEPTED);
-				this.suggestion.historyEntry().setContent(this.textViewer.getDocument().get());
-				AiCoderHistoryView.get().ifPresent(AiCoderHistoryView::refresh);
+				this.suggestion.historyEntry().setContent(this.documentJournal.snapshot());
+				updateHistoryEntry(this.suggestion.historyEntry());
 			}, "Accepted");
 		} catch (final BadLocationException exception) {
 			throw new RuntimeException("Failed to accept suggestion", exception);
@@ -549,9 +916,10 @@ public final class InlineCompletionController {
 	}
 
 	private void updateHistoryEntry(AiCoderHistoryEntry historyEntry) {
+		AiCoderActivator.getDefault().getHistoryStore().save(historyEntry);
 		AiCoderHistoryView.get().ifPresent(view -> {
 			Display.getDefault().asyncExec(() -> {
-				view.addHistoryEntry(historyEntry);
+				view.updateHistoryEntry(historyEntry);
 			});
 		});
 	}
@@ -560,6 +928,16 @@ public final class InlineCompletionController {
 		@Override
 		public void caretMoved(CaretEvent event) {
 			triggerAutocomplete();
+			InlineCompletionController.this.contextPrecomputer.schedule(InlineCompletionController.this.textEditor.getEditorInput(), EclipseUtils.getCurrentOffsetInDocument(InlineCompletionController.this.textEditor), CARET_REST_DELAY_MS);
+		}
+	}
+
+	private class PropertyListenerImplementation implements IPropertyListener {
+		@Override
+		public void propertyChanged(Object source, int propertyId) {
+			if (propertyId == IEditorPart.PROP_DIRTY && !InlineCompletionController.this.textEditor.isDirty()) {
+				precomputeContext(); // saved (or reverted)
+			}
 		}
 	}
 
@@ -570,7 +948,12 @@ public final class InlineCompletionController {
 
 		@Override
 		public void documentChanged(DocumentEvent event) {
+			InlineCompletionController.this.documentJournal.record(event);
 			InlineCompletionController.this.changeCounter++;
+			InlineCompletionController.this.triggerDelay.recordKeystroke();
+			if (typeThrough(event)) {
+				return;
+			}
 			abort("Document changed");
 		}
 	}
@@ -678,6 +1061,9 @@ public final class InlineCompletionController {
 		@Override
 		public void dispose() {
 			CONTROLLER_BY_VIEWER.remove(InlineCompletionController.this.textViewer);
+			InlineCompletionController.this.contextPrecomputer.dispose();
+			InlineCompletionController.this.speculationCounter.incrementAndGet();
+			cancelSpeculativeRequest(InlineCompletionController.this.speculativeRequest.getAndSet(null));
 		}
 
 		@Override
@@ -692,4 +1078,10 @@ public final class InlineCompletionController {
 		public void setPositionManager(IPaintPositionManager manager) {
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @param changeCounter the document change counter when the request was prepared
+	 */
+	private record SpeculativeRequest(long changeCounter, int modelOffset, String prefix, String suffix, CompletableFuture<LlmResponse> responseFuture) {
+	}
+}
@@ -0,0 +1,211 @@
+package de.hetzge.eclipse.aicoder.inline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.compiler.IScanner;
+import org.eclipse.jdt.core.compiler.ITerminalSymbols;
+import org.eclipse.jdt.core.compiler.InvalidInputException;
+
+import de.hetzge.eclipse.aicoder.llm.LlmStreamTerminator;
+
+/**
+ * Ends a multiline completion at a syntactic boundary: after the line that closes the block the completion opened, before the line of a closing brace of a block that was opened in the prefix or before
+ * a line that repeats the first non blank line of the suffix. Brackets are found with the JDT scanner for Java and with a generic bracket tracker (which skips strings and comments) otherwise.
+ */
+public final class SyntacticBoundaryTerminator implements LlmStreamTerminator {
+
+	private record Bracket(char character, int offset) {
+	}
+
+	private final boolean java;
+	private final String firstSuffixLine;
+
+	private SyntacticBoundaryTerminator(boolean java, String firstSuffixLine) {
+		this.java = java;
+		this.firstSuffixLine = firstSuffixLine;
+	}
+
+	public static SyntacticBoundaryTerminator create(String fileExtension, String suffix) {
+		final String firstSuffixLine = suffix.lines().map(String::trim).filter(line -> !line.isEmpty()).findFirst().orElse("");
+		// closing brackets are handled by the bracket balance (a completion may close its own block with the same line)
+		final boolean isClosingLine = firstSuffixLine.matches("[)}\\];,]*");
+		return new SyntacticBoundaryTerminator("java".equalsIgnoreCase(fileExtension), isClosingLine ? "" : firstSuffixLine);
+	}
+
+	@Override
+	public int findEnd(String content) {
+		final int suffixLineStart = findSuffixLineStart(content);
+		final String scannedContent = suffixLineStart >= 0 ? content.substring(0, suffixLineStart) : content;
+		final int blockEnd = findBlockEnd(this.java ? scanJavaBrackets(scannedContent) : scanBrackets(scannedContent), scannedContent);
+		if (blockEnd >= 0) {
+			return blockEnd;
+		}
+		if (suffixLineStart >= 0) {
+			return suffixLineStart > 0 && content.charAt(suffixLineStart - 1) == '\n' ? trimLineBreak(content, suffixLineStart - 1) : suffixLineStart;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of brackets in the content that are closed by a different bracket type or never closed (closing brackets of blocks opened in the prefix are not counted)
+	 */
+	static int countMismatchedBrackets(String fileExtension, String content) {
+		final List<Bracket> brackets = "java".equalsIgnoreCase(fileExtension) ? scanJavaBrackets(content) : scanBrackets(content);
+		final ArrayDeque<Character> openBrackets = new ArrayDeque<>();
+		int mismatchCount = 0;
+		for (final Bracket bracket : brackets) {
+			final char character = bracket.character();
+			if (character == '{' || character == '(' || character == '[') {
+				openBrackets.push(character);
+			} else if (!openBrackets.isEmpty()) {
+				final char openBracket = openBrackets.pop();
+				if ("{}()[]".indexOf(openBracket) + 1 != "{}()[]".indexOf(character)) {
+					mismatchCount++;
+				}
+			}
+		}
+		return mismatchCount + openBrackets.size();
+	}
+
+	private int findBlockEnd(List<Bracket> brackets, String content) {
+		int braceDepth = 0;
+		int parenthesisDepth = 0;
+		int candidateLineEnd = -1;
+		for (final Bracket bracket : brackets) {
+			if (candidateLineEnd >= 0 && bracket.offset() > candidateLineEnd) {
+				if (braceDepth == 0 && parenthesisDepth <= 0) {
+					return trimLineBreak(content, candidateLineEnd);
+				}
+				candidateLineEnd = -1;
+			}
+			switch (bracket.character()) {
+			case '{':
+				braceDepth++;
+				break;
+			case '}':
+				braceDepth--;
+				if (braceDepth < 0) {
+					// closes a block of the prefix, which is already part of the suffix -> end before the line of the brace
+					final int lineStart = content.lastIndexOf('\n', bracket.offset() - 1) + 1;
+					if (content.substring(lineStart, bracket.offset()).isBlank()) {
+						return lineStart > 0 ? trimLineBreak(content, lineStart - 1) : lineStart;
+					}
+					braceDepth = 0;
+				} else if (braceDepth == 0) {
+					// closes the block the completion opened -> end after this line
+					candidateLineEnd = content.indexOf('\n', bracket.offset());
+					if (candidateLineEnd < 0) {
+						return -1; // wait for the rest of the line
+					}
+				}
+				break;
+			case '(':
+			case '[':
+				parenthesisDepth++;
+				break;
+			case ')':
+			case ']':
+				parenthesisDepth--;
+				break;
+			default:
+				break;
+			}
+		}
+		if (candidateLineEnd >= 0 && braceDepth == 0 && parenthesisDepth <= 0) {
+			return trimLineBreak(content, candidateLineEnd);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the start offset of the first line (not the line of the cursor) that repeats the first non blank suffix line or -1
+	 */
+	private int findSuffixLineStart(String content) {
+		if (this.firstSuffixLine.isEmpty()) {
+			return -1;
+		}
+		int lineStart = content.indexOf('\n') + 1;
+		while (lineStart > 0 && lineStart < content.length()) {
+			final int lineEnd = content.indexOf('\n', lineStart);
+			final String line = content.substring(lineStart, lineEnd >= 0 ? lineEnd : content.length());
+			if (line.trim().equals(this.firstSuffixLine)) {
+				return lineStart;
+			}
+			lineStart = lineEnd + 1;
+		}
+		return -1;
+	}
+
+	private static int trimLineBreak(String content, int lineBreakOffset) {
+		return lineBreakOffset > 0 && content.charAt(lineBreakOffset - 1) == '\r' ? lineBreakOffset - 1 : lineBreakOffset;
+	}
+
+	private static List<Bracket> scanJavaBrackets(String content) {
+		final List<Bracket> brackets = new ArrayList<>();
+		final IScanner scanner = ToolFactory.createScanner(false, false, false, false);
+		scanner.setSource(content.toCharArray());
+		try {
+			int token;
+			while ((token = scanner.getNextToken()) != ITerminalSymbols.TokenNameEOF) {
+				final char character = switch (token) {
+				case ITerminalSymbols.TokenNameLBRACE -> '{';
+				case ITerminalSymbols.TokenNameRBRACE -> '}';
+				case ITerminalSymbols.TokenNameLPAREN -> '(';
+				case ITerminalSymbols.TokenNameRPAREN -> ')';
+				case ITerminalSymbols.TokenNameLBRACKET -> '[';
+				case ITerminalSymbols.TokenNameRBRACKET -> ']';
+				default -> 0;
+				};
+				if (character != 0) {
+					brackets.add(new Bracket(character, scanner.getCurrentTokenStartPosition()));
+				}
+			}
+		} catch (final InvalidInputException exception) {
+			// incomplete token at the end of the streamed content (for example an unterminated string)
+		}
+		return brackets;
+	}
+
+	private static List<Bracket> scanBrackets(String content) {
+		final List<Bracket> brackets = new ArrayList<>();
+		int index = 0;
+		while (index < content.length()) {
+			final char character = content.charAt(index);
+			if (character == '"' || character == '\'' || character == '`') {
+				index = skipString(content, index, character);
+			} else if (content.startsWith("//", index)) {
+				final int lineEnd = content.indexOf('\n', index);
+				index = lineEnd >= 0 ? lineEnd : content.length();
+			} else if (content.startsWith("/*", index)) {
+				final int commentEnd = content.indexOf("*/", index + 2);
+				index = commentEnd >= 0 ? commentEnd + 2 : content.length();
+			} else {
+				if ("{}()[]".indexOf(character) >= 0) {
+					brackets.add(new Bracket(character, index));
+				}
+				index++;
+			}
+		}
+		return brackets;
+	}
+
+	private static int skipString(String content, int start, char quote) {
+		int index = start + 1;
+		while (index < content.length()) {
+			final char character = content.charAt(index);
+			if (character == '\\') {
+				index += 2;
+			} else if (character == quote) {
+				return index + 1;
+			} else if (character == '\n' && quote != '`') {
+				return index; // unterminated string
+			} else {
+				index++;
+			}
+		}
+		return content.length();
+	}
+}
@@ -0,0 +1,96 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import mjson.Json;
+
+/**
+ * Response parsing shared by the providers with an OpenAI compatible api (OpenAI, Mistral, InceptionLabs).
+ */
+public abstract class AbstractOpenAiCompatibleLlmProviderClient implements LlmProviderClient {
+
+	/**
+	 * @return true if the response contains "text" (completions api) instead of "message"/"delta" (chat completions api)
+	 */
+	protected abstract boolean isTextCompletion(LlmRequest request);
+
+	@Override
+	public LlmResponse parseResponse(LlmRequest request, String responseBody, Duration duration) {
+		final Json responseJson = Json.read(responseBody);
+		final String content = getChoiceContent(request, responseJson.at("choices").at(0));
+		final int inputTokens = responseJson.at("usage").at("prompt_tokens").asInteger();
+		final int outputTokens = responseJson.at("usage").at("completion_tokens").asInteger();
+		final int cachedInputTokens = getCachedInputTokens(responseJson.at("usage"));
+		return new LlmResponse(request.llmModelOption(), content, responseBody, inputTokens, outputTokens, cachedInputTokens, duration, false);
+	}
+
+	@Override
+	public boolean supportsChoiceCount(LlmRequest request) {
+		return true;
+	}
+
+	@Override
+	public List<String> parseChoiceContents(LlmRequest request, String responseBody) {
+		return Json.read(responseBody).at("choices").asJsonList().stream()
+				.map(choiceJson -> getChoiceContent(request, choiceJson))
+				.toList();
+	}
+
+	private String getChoiceContent(LlmRequest request, Json choiceJson) {
+		return isTextCompletion(request)
+				? choiceJson.at("text").asString()
+				: choiceJson.at("message").at("content").asString();
+	}
+
+	/**
+	 * Server sent events. Chat completions use "delta.content", text completions use "text". Usage is only part of the last chunk (if any).
+	 */
+	@Override
+	public Optional<LlmStreamChunk> parseStreamLine(LlmRequest request, String line) {
+		if (!line.startsWith("data:")) {
+			return Optional.empty();
+		}
+		final String data = line.substring("data:".length()).trim();
+		if (data.isEmpty() || data.equals("[DONE]")) {
+			return Optional.empty();
+		}
+		final Json json = Json.read(data);
+		String content = "";
+		if (json.has("choices") && !json.at("choices").asJsonList().isEmpty()) {
+			final Json choice = json.at("choices").at(0);
+			if (choice.has("delta") && choice.at("delta").has("content") && !choice.at("delta").at("content").isNull()) {
+				content = choice.at("delta").at("content").asString();
+			} else if (choice.has("text") && !choice.at("text").isNull()) {
+				content = choice.at("text").asString();
+			}
+		}
+		int inputTokens = 0;
+		int outputTokens = 0;
+		int cachedInputTokens = LlmResponse.UNKNOWN_TOKENS;
+		if (json.has("usage") && !json.at("usage").isNull()) {
+			inputTokens = json.at("usage").at("prompt_tokens", 0).asInteger();
+			outputTokens = json.at("usage").at("completion_tokens", 0).asInteger();
+			cachedInputTokens = getCachedInputTokens(json.at("usage"));
+		}
+		return Optional.of(new LlmStreamChunk(content, inputTokens, outputTokens, cachedInputTokens));
+	}
+
+	/**
+	 * OpenAI reports prompt cache hits as "prompt_tokens_details.cached_tokens", DeepSeek compatible servers as "prompt_cache_hit_tokens".
+	 */
+	private static int getCachedInputTokens(Json usageJson) {
+		if (usageJson == null || !usageJson.isObject()) {
+			return LlmResponse.UNKNOWN_TOKENS;
+		}
+		final Json detailsJson = usageJson.at("prompt_tokens_details");
+		if (detailsJson != null && detailsJson.isObject() && detailsJson.has("cached_tokens") && detailsJson.at("cached_tokens").isNumber()) {
+			return detailsJson.at("cached_tokens").asInteger();
+		}
+		if (usageJson.has("prompt_cache_hit_tokens") && usageJson.at("prompt_cache_hit_tokens").isNumber()) {
+			return usageJson.at("prompt_cache_hit_tokens").asInteger();
+		}
+		return LlmResponse.UNKNOWN_TOKENS;
+	}
+}
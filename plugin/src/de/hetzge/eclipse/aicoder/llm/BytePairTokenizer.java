@@ -0,0 +1,252 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import mjson.Json;
+
+/**
+ * Byte level byte pair encoding (tiktoken, Llama 3, Qwen): the text is split with a regular expression, every part is UTF-8 encoded and the adjacent byte sequences whose concatenation has
+ * the lowest rank are merged until no merge is possible anymore. The parts are encoded in reused buffers, so apart from the regex matcher nothing is allocated while encoding.
+ */
+public final class BytePairTokenizer implements LlmTokenizer {
+
+	public static final String CL100K_PATTERN = "'(?i:[sdmt]|ll|ve|re)|[^\\r\\n\\p{L}\\p{N}]?+\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]++[\\r\\n]*|\\s*[\\r\\n]|\\s+(?!\\S)|\\s+";
+	public static final String O200K_PATTERN = "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+			+ "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+			+ "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+
+	private static final int NO_MERGE = Integer.MAX_VALUE;
+
+	private static final class Buffers {
+		private byte[] bytes = new byte[256];
+		private int[] boundaries = new int[257];
+		private int[] pairRanks = new int[257];
+	}
+
+	private final Pattern pattern;
+	private final ByteSequenceTable table;
+	private final ThreadLocal<Buffers> buffers;
+
+	private BytePairTokenizer(Pattern pattern, ByteSequenceTable table) {
+		this.pattern = pattern;
+		this.table = table;
+		this.buffers = ThreadLocal.withInitial(Buffers::new);
+	}
+
+	/**
+	 * Passes the id of every token to the consumer (in order).
+	 */
+	public void encode(CharSequence text, IntConsumer tokenIdConsumer) {
+		process(text, tokenIdConsumer);
+	}
+
+	@Override
+	public int countTokens(CharSequence text) {
+		return process(text, null);
+	}
+
+	private int process(CharSequence text, IntConsumer tokenIdConsumer) {
+		final Buffers buffers = this.buffers.get();
+		final Matcher matcher = this.pattern.matcher(text);
+		int count = 0;
+		while (matcher.find()) {
+			final int length = encodeUtf8(text, matcher.start(), matcher.end(), buffers);
+			count += mergePart(buffers, length, tokenIdConsumer);
+		}
+		return count;
+	}
+
+	private int mergePart(Buffers buffers, int length, IntConsumer tokenIdConsumer) {
+		final byte[] bytes = buffers.bytes;
+		final int wholeIndex = this.table.find(bytes, 0, length);
+		if (wholeIndex >= 0) {
+			if (tokenIdConsumer != null) {
+				tokenIdConsumer.accept(this.table.id(wholeIndex));
+			}
+			return 1;
+		}
+		if (buffers.boundaries.length < length + 1) {
+			buffers.boundaries = new int[length + 1];
+			buffers.pairRanks = new int[length + 1];
+		}
+		final int[] boundaries = buffers.boundaries;
+		final int[] pairRanks = buffers.pairRanks;
+		int boundaryCount = length + 1;
+		for (int i = 0; i < boundaryCount; i++) {
+			boundaries[i] = i;
+		}
+		for (int i = 0; i < boundaryCount - 2; i++) {
+			pairRanks[i] = rank(bytes, boundaries[i], boundaries[i + 2]);
+		}
+		while (boundaryCount > 2) {
+			int minIndex = -1;
+			int minRank = NO_MERGE;
+			for (int i = 0; i < boundaryCount - 2; i++) {
+				if (pairRanks[i] < minRank) {
+					minRank = pairRanks[i];
+					minIndex = i;
+				}
+			}
+			if (minIndex < 0) {
+				break;
+			}
+			// merge the parts at minIndex and minIndex + 1 by removing the boundary between them
+			System.arraycopy(boundaries, minIndex + 2, boundaries, minIndex + 1, boundaryCount - minIndex - 2);
+			System.arraycopy(pairRanks, minIndex + 2, pairRanks, minIndex + 1, Math.max(0, boundaryCount - minIndex - 4));
+			boundaryCount--;
+			pairRanks[minIndex] = minIndex + 2 < boundaryCount ? rank(bytes, boundaries[minIndex], boundaries[minIndex + 2]) : NO_MERGE;
+			if (minIndex > 0) {
+				pairRanks[minIndex - 1] = rank(bytes, boundaries[minIndex - 1], boundaries[minIndex + 1]);
+			}
+		}
+		if (tokenIdConsumer != null) {
+			for (int i = 0; i < boundaryCount - 1; i++) {
+				final int index = this.table.find(bytes, boundaries[i], boundaries[i + 1] - boundaries[i]);
+				tokenIdConsumer.accept(index >= 0 ? this.table.id(index) : -1);
+			}
+		}
+		return boundaryCount - 1;
+	}
+
+	private int rank(byte[] bytes, int start, int end) {
+		final int index = this.table.find(bytes, start, end - start);
+		return index >= 0 ? this.table.rank(index) : NO_MERGE;
+	}
+
+	private static int encodeUtf8(CharSequence text, int start, int end, Buffers buffers) {
+		if (buffers.bytes.length < (end - start) * 3) {
+			buffers.bytes = new byte[(end - start) * 3];
+		}
+		final byte[] bytes = buffers.bytes;
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			final char character = text.charAt(i);
+			if (character < 0x80) {
+				bytes[length++] = (byte) character;
+			} else if (character < 0x800) {
+				bytes[length++] = (byte) (0xC0 | character >> 6);
+				bytes[length++] = (byte) (0x80 | character & 0x3F);
+			} else if (Character.isHighSurrogate(character) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(character, text.charAt(++i));
+				bytes[length++] = (byte) (0xF0 | codePoint >> 18);
+				bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+				bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+				bytes[length++] = (byte) (0x80 | codePoint & 0x3F);
+			} else {
+				bytes[length++] = (byte) (0xE0 | character >> 12);
+				bytes[length++] = (byte) (0x80 | character >> 6 & 0x3F);
+				bytes[length++] = (byte) (0x80 | character & 0x3F);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Loads a tiktoken vocabulary (one base64 encoded token and its rank per line).
+	 */
+	public static BytePairTokenizer loadTiktoken(InputStream inputStream, String pattern) throws IOException {
+		final ByteSequenceTable table = new ByteSequenceTable(200_000);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final int separatorIndex = line.indexOf(' ');
+				if (separatorIndex <= 0) {
+					continue;
+				}
+				final int rank = Integer.parseInt(line.substring(separatorIndex + 1).trim());
+				table.put(Base64.getDecoder().decode(line.substring(0, separatorIndex)), rank, rank);
+			}
+		}
+		return new BytePairTokenizer(Pattern.compile(pattern), table);
+	}
+
+	/**
+	 * Loads a byte level BPE model of a Hugging Face tokenizer.json. The rank of a token is the position of the merge that creates it.
+	 */
+	public static BytePairTokenizer loadHuggingFace(Json tokenizerJson) {
+		final Json modelJson = tokenizerJson.at("model");
+		final Map<String, Json> vocabulary = modelJson.at("vocab").asJsonMap();
+		final ByteSequenceTable table = new ByteSequenceTable(vocabulary.size());
+		final int[] characterByByte = createCharacterByByte();
+		final int[] byteByCharacter = createByteByCharacter(characterByByte);
+		for (int value = 0; value < 256; value++) {
+			final Json idJson = vocabulary.get(String.valueOf((char) characterByByte[value]));
+			if (idJson != null) {
+				table.put(new byte[] { (byte) value }, NO_MERGE - 1, idJson.asInteger());
+			}
+		}
+		final List<Json> merges = modelJson.at("merges").asJsonList();
+		for (int rank = 0; rank < merges.size(); rank++) {
+			final Json mergeJson = merges.get(rank);
+			final String[] pair = mergeJson.isArray()
+					? new String[] { mergeJson.at(0).asString(), mergeJson.at(1).asString() }
+					: mergeJson.asString().split(" ", 2);
+			final Json idJson = vocabulary.get(pair[0] + pair[1]);
+			if (idJson != null) {
+				table.put(decodeByteLevel(pair[0] + pair[1], byteByCharacter), rank, idJson.asInteger());
+			}
+		}
+		return new BytePairTokenizer(Pattern.compile(findSplitPattern(tokenizerJson.at("pre_tokenizer")).orElse(CL100K_PATTERN)), table);
+	}
+
+	private static Optional<String> findSplitPattern(Json preTokenizerJson) {
+		if (preTokenizerJson == null || !preTokenizerJson.isObject()) {
+			return Optional.empty();
+		}
+		if ("Split".equals(preTokenizerJson.at("type", "").asString()) && preTokenizerJson.has("pattern") && preTokenizerJson.at("pattern").has("Regex")) {
+			return Optional.of(preTokenizerJson.at("pattern").at("Regex").asString());
+		}
+		if (preTokenizerJson.has("pretokenizers")) {
+			for (final Json childJson : preTokenizerJson.at("pretokenizers").asJsonList()) {
+				final Optional<String> patternOptional = findSplitPattern(childJson);
+				if (patternOptional.isPresent()) {
+					return patternOptional;
+				}
+			}
+		}
+		return Optional.empty();
+	}
+
+	private static byte[] decodeByteLevel(String token, int[] byteByCharacter) {
+		final byte[] bytes = new byte[token.length()];
+		for (int i = 0; i < token.length(); i++) {
+			final char character = token.charAt(i);
+			bytes[i] = (byte) (character < byteByCharacter.length && byteByCharacter[character] >= 0 ? byteByCharacter[character] : character);
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the printable character that represents a byte in byte level vocabularies (like GPT-2)
+	 */
+	private static int[] createCharacterByByte() {
+		final int[] characterByByte = new int[256];
+		int next = 256;
+		for (int value = 0; value < 256; value++) {
+			final boolean printable = value >= '!' && value <= '~' || value >= 0xA1 && value <= 0xAC || value >= 0xAE && value <= 0xFF;
+			characterByByte[value] = printable ? value : next++;
+		}
+		return characterByByte;
+	}
+
+	private static int[] createByteByCharacter(int[] characterByByte) {
+		final int[] byteByCharacter = new int[512];
+		Arrays.fill(byteByCharacter, -1);
+		for (int value = 0; value < 256; value++) {
+			byteByCharacter[characterByByte[value]] = value;
+		}
+		return byteByCharacter;
+	}
+}
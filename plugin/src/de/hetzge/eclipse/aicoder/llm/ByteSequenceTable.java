@@ -0,0 +1,110 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table from byte sequences to (rank, id). Lookups work on a region of any byte array, so no key objects have to be created while encoding.
+ */
+final class ByteSequenceTable {
+
+	private byte[] data;
+	private int dataLength;
+	private int[] offsets;
+	private int[] lengths;
+	private int[] ranks;
+	private int[] ids;
+	private int size;
+	private int[] slots; // entry index + 1 (0 = empty)
+
+	ByteSequenceTable(int expectedSize) {
+		final int capacity = Math.max(16, expectedSize);
+		this.data = new byte[capacity * 4];
+		this.dataLength = 0;
+		this.offsets = new int[capacity];
+		this.lengths = new int[capacity];
+		this.ranks = new int[capacity];
+		this.ids = new int[capacity];
+		this.size = 0;
+		this.slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+	}
+
+	void put(byte[] bytes, int rank, int id) {
+		if (find(bytes, 0, bytes.length) >= 0) {
+			return;
+		}
+		if (this.size == this.offsets.length) {
+			final int capacity = this.size * 2;
+			this.offsets = Arrays.copyOf(this.offsets, capacity);
+			this.lengths = Arrays.copyOf(this.lengths, capacity);
+			this.ranks = Arrays.copyOf(this.ranks, capacity);
+			this.ids = Arrays.copyOf(this.ids, capacity);
+		}
+		if (this.dataLength + bytes.length > this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.dataLength + bytes.length));
+		}
+		System.arraycopy(bytes, 0, this.data, this.dataLength, bytes.length);
+		this.offsets[this.size] = this.dataLength;
+		this.lengths[this.size] = bytes.length;
+		this.ranks[this.size] = rank;
+		this.ids[this.size] = id;
+		this.dataLength += bytes.length;
+		this.size++;
+		if (this.size * 2 > this.slots.length) {
+			rehash(this.slots.length * 2);
+		} else {
+			insert(this.size - 1);
+		}
+	}
+
+	/**
+	 * @return the index of the entry or -1 if the byte sequence is unknown
+	 */
+	int find(byte[] buffer, int offset, int length) {
+		final int mask = this.slots.length - 1;
+		int slot = hash(buffer, offset, length) & mask;
+		while (this.slots[slot] != 0) {
+			final int index = this.slots[slot] - 1;
+			if (this.lengths[index] == length && Arrays.equals(this.data, this.offsets[index], this.offsets[index] + length, buffer, offset, offset + length)) {
+				return index;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	int rank(int index) {
+		return this.ranks[index];
+	}
+
+	int id(int index) {
+		return this.ids[index];
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	private void rehash(int capacity) {
+		this.slots = new int[capacity];
+		for (int index = 0; index < this.size; index++) {
+			insert(index);
+		}
+	}
+
+	private void insert(int index) {
+		final int mask = this.slots.length - 1;
+		int slot = hash(this.data, this.offsets[index], this.lengths[index]) & mask;
+		while (this.slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		this.slots[slot] = index + 1;
+	}
+
+	private static int hash(byte[] buffer, int offset, int length) {
+		int hash = 0x811c9dc5;
+		for (int i = offset; i < offset + length; i++) {
+			hash = (hash ^ buffer[i]) * 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+}
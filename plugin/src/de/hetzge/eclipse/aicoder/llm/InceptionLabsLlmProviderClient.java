@@ -0,0 +1,86 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+
+import de.hetzge.eclipse.aicoder.next.NextEditRequest;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import de.hetzge.eclipse.aicoder.util.JinjaUtils;
+import de.hetzge.eclipse.aicoder.util.Utils;
+import mjson.Json;
+
+public final class InceptionLabsLlmProviderClient extends AbstractOpenAiCompatibleLlmProviderClient {
+
+	public static final String INCEPTIONLABS_BASE_URL = "https://api.inceptionlabs.ai";
+
+	// remote server: multiplex requests over one connection
+	private final HttpClient httpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.build();
+
+	@Override
+	public HttpClient getHttpClient(HttpRequest httpRequest) {
+		return this.httpClient;
+	}
+
+	@Override
+	protected boolean isTextCompletion(LlmRequest request) {
+		return request.isNativeFillInTheMiddle();
+	}
+
+	@Override
+	public HttpRequest createHttpRequest(LlmRequest request) {
+		final Json json = Json.object();
+		json.set("model", request.llmModelOption().modelKey());
+		json.set("temperature", request.temperature());
+		if (request.choiceCount() > 1) {
+			json.set("n", request.choiceCount());
+		}
+		if (request.streaming()) {
+			json.set("stream", true);
+		}
+		if (request.isFillInTheMiddle()) {
+			if (!request.isPseudoFim()) {
+				json.set("prompt", request.prompt());
+				json.set("suffix", request.suffix());
+				json.set("max_tokens", request.maxTokens());
+				json.set("stop", LlmUtils.createStop(request.multiline()));
+			} else {
+				final String pseudoFimUserPrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
+						Map.entry("prefix", request.prompt()),
+						Map.entry("suffix", request.suffix())));
+				json.set("messages", LlmUtils.createMessages(LlmUtils.getPseduoFIMSystemPrompt(request.multiline()), pseudoFimUserPrompt));
+			}
+		} else {
+			json.set("messages", LlmUtils.createMessages(request.systemPrompt(), request.prompt()));
+		}
+		final String path = request.isNativeFillInTheMiddle() ? "/v1/fim/completions" : "/v1/chat/completions";
+		return createHttpRequest(path, json);
+	}
+
+	public HttpRequest createNextEditHttpRequest(LlmOption llmModelOption, NextEditRequest request) {
+		final Json json = Json.object();
+		json.set("model", llmModelOption.modelKey());
+		json.set("messages", Json.array()
+				.add(Json.object()
+						.set("role", "user")
+						.set("content", request.toInceptionLabsNextEditPrompt())));
+		return createHttpRequest("/v1/edit/completions", json);
+	}
+
+	private HttpRequest createHttpRequest(String path, Json json) {
+		final URI uri = URI.create(Utils.joinUriParts(List.of(INCEPTIONLABS_BASE_URL, path)));
+		final boolean streaming = json.has("stream") && json.at("stream").asBoolean();
+		return HttpRequest.newBuilder()
+				.uri(uri)
+				.header("Content-Type", "application/json")
+				.header("Accept", streaming ? "text/event-stream" : "application/json")
+				.header("Authorization", "Bearer " + AiCoderPreferences.getInceptionLabsApiKey())
+				.timeout(AiCoderPreferences.getTimeout())
+				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+				.build();
+	}
+}
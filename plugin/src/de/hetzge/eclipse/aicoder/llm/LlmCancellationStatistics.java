@@ -0,0 +1,33 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts cancelled LLM requests and how many of them the backend still completed, because the cancellation came too late to abort the exchange.
+ */
+public enum LlmCancellationStatistics {
+	INSTANCE;
+
+	private final AtomicLong cancelledCount = new AtomicLong();
+	private final AtomicLong cancelledButCompletedCount = new AtomicLong();
+
+	void recordCancelled() {
+		this.cancelledCount.incrementAndGet();
+	}
+
+	void recordCancelledButCompleted() {
+		this.cancelledButCompletedCount.incrementAndGet();
+	}
+
+	public long getCancelledCount() {
+		return this.cancelledCount.get();
+	}
+
+	public long getCancelledButCompletedCount() {
+		return this.cancelledButCompletedCount.get();
+	}
+
+	public String getStatisticsString() {
+		return String.format("cancelled: %s, cancelled but completed: %s", getCancelledCount(), getCancelledButCompletedCount());
+	}
+}
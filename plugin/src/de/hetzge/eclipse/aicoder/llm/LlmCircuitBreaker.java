@@ -0,0 +1,139 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+
+/**
+ * Circuit breaker per {@link LlmProvider}. After a configurable number of consecutive failures (timeouts, 429 or 5xx) the circuit opens and requests to the provider are skipped. Once the backoff
+ * (or the Retry-After of the server, if longer) passed, a single probe request is let through (half-open). A failed probe reopens the circuit with doubled backoff.
+ */
+public final class LlmCircuitBreaker {
+
+	private static final Duration INITIAL_BACKOFF = Duration.ofSeconds(5);
+	private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+	private static final Map<LlmProvider, LlmCircuitBreaker> BY_PROVIDER = new EnumMap<>(LlmProvider.class);
+
+	private enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final LlmProvider provider;
+	private State state;
+	private int failureCount;
+	private Duration backoff;
+	private long openUntilTimestamp;
+	private boolean probeInFlight;
+
+	private LlmCircuitBreaker(LlmProvider provider) {
+		this.provider = provider;
+		this.state = State.CLOSED;
+		this.failureCount = 0;
+		this.backoff = INITIAL_BACKOFF;
+		this.openUntilTimestamp = 0;
+		this.probeInFlight = false;
+	}
+
+	public static synchronized LlmCircuitBreaker get(LlmProvider provider) {
+		return BY_PROVIDER.computeIfAbsent(provider, LlmCircuitBreaker::new);
+	}
+
+	/**
+	 * @return true if a request to the provider may be sent (and must be followed by a record call or {@link #release()})
+	 */
+	public synchronized boolean tryAcquire() {
+		switch (this.state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (System.currentTimeMillis() < this.openUntilTimestamp) {
+				return false;
+			}
+			AiCoderActivator.log().info(String.format("Circuit of %s is half open, sending probe request", this.provider));
+			this.state = State.HALF_OPEN;
+			this.probeInFlight = true;
+			return true;
+		case HALF_OPEN:
+			if (this.probeInFlight) {
+				return false;
+			}
+			this.probeInFlight = true;
+			return true;
+		default:
+			throw new IllegalStateException("Unknown state: " + this.state);
+		}
+	}
+
+	public synchronized void recordSuccess() {
+		if (this.state != State.CLOSED) {
+			AiCoderActivator.log().info(String.format("Circuit of %s is closed again", this.provider));
+		}
+		this.state = State.CLOSED;
+		this.failureCount = 0;
+		this.backoff = INITIAL_BACKOFF;
+		this.probeInFlight = false;
+	}
+
+	public synchronized void recordFailure(Optional<Duration> retryAfterOptional) {
+		this.failureCount++;
+		this.probeInFlight = false;
+		if (this.state == State.HALF_OPEN) {
+			this.backoff = min(this.backoff.multipliedBy(2), MAX_BACKOFF);
+			open(retryAfterOptional);
+		} else if (this.state == State.CLOSED && (this.failureCount >= AiCoderPreferences.getCircuitBreakerFailureThreshold() || retryAfterOptional.isPresent())) {
+			open(retryAfterOptional);
+		}
+	}
+
+	/**
+	 * Releases an acquired request without result (for example because it was cancelled).
+	 */
+	public synchronized void release() {
+		this.probeInFlight = false;
+	}
+
+	public synchronized boolean isOpen() {
+		return this.state == State.OPEN && System.currentTimeMillis() < this.openUntilTimestamp;
+	}
+
+	private void open(Optional<Duration> retryAfterOptional) {
+		final Duration openDuration = retryAfterOptional.filter(retryAfter -> retryAfter.compareTo(this.backoff) > 0).orElse(this.backoff);
+		this.state = State.OPEN;
+		this.openUntilTimestamp = System.currentTimeMillis() + openDuration.toMillis();
+		AiCoderActivator.log().info(String.format("Circuit of %s is open for %sms after %s failures", this.provider, openDuration.toMillis(), this.failureCount));
+	}
+
+	static boolean isFailureStatusCode(int statusCode) {
+		return statusCode == 429 || statusCode >= 500;
+	}
+
+	/**
+	 * Parses a Retry-After header, which is either a number of seconds or a HTTP date.
+	 */
+	static Optional<Duration> parseRetryAfter(Optional<String> retryAfterOptional) {
+		return retryAfterOptional.map(String::trim).flatMap(retryAfter -> {
+			try {
+				return Optional.of(Duration.ofSeconds(Long.parseLong(retryAfter)));
+			} catch (final NumberFormatException exception) {
+				try {
+					final Duration duration = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME));
+					return duration.isNegative() ? Optional.empty() : Optional.of(duration);
+				} catch (final DateTimeParseException parseException) {
+					return Optional.empty();
+				}
+			}
+		});
+	}
+
+	private static Duration min(Duration a, Duration b) {
+		return a.compareTo(b) <= 0 ? a : b;
+	}
+}
@@ -0,0 +1,95 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+
+/**
+ * Tries an ordered chain of LLMs one after another. The next LLM is only used if the previous one timed out, failed with 429/5xx or was skipped by its open {@link LlmCircuitBreaker}.
+ */
+final class LlmFailoverExecution {
+
+	private final List<LlmOption> llmModelOptions;
+	private final String systemPrompt;
+	private final String prompt;
+	private final String suffix;
+	private final Consumer<String> partialContentConsumer;
+	private final LlmStreamTerminator terminator;
+	private final CompletableFuture<LlmResponse> resultFuture;
+	private volatile CompletableFuture<LlmResponse> currentFuture;
+
+	private LlmFailoverExecution(List<LlmOption> llmModelOptions, String systemPrompt, String prompt, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		this.llmModelOptions = llmModelOptions;
+		this.systemPrompt = systemPrompt;
+		this.prompt = prompt;
+		this.suffix = suffix;
+		this.partialContentConsumer = partialContentConsumer;
+		this.terminator = terminator;
+		this.resultFuture = new CompletableFuture<>();
+		this.currentFuture = null;
+	}
+
+	static CompletableFuture<LlmResponse> execute(List<LlmOption> llmModelOptions, String systemPrompt, String prompt, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		if (llmModelOptions.size() == 1) {
+			return LlmUtils.execute(llmModelOptions.get(0), systemPrompt, prompt, suffix, partialContentConsumer, terminator);
+		}
+		final LlmFailoverExecution execution = new LlmFailoverExecution(llmModelOptions, systemPrompt, prompt, suffix, partialContentConsumer, terminator);
+		execution.resultFuture.whenComplete((response, throwable) -> {
+			final CompletableFuture<LlmResponse> future = execution.currentFuture;
+			if (execution.resultFuture.isCancelled() && future != null) {
+				future.cancel(true);
+			}
+		});
+		execution.execute(0);
+		return execution.resultFuture;
+	}
+
+	private void execute(int index) {
+		final LlmOption llmModelOption = this.llmModelOptions.get(index);
+		final boolean isLast = index == this.llmModelOptions.size() - 1;
+		final CompletableFuture<LlmResponse> future;
+		try {
+			future = LlmUtils.execute(llmModelOption, this.systemPrompt, this.prompt, this.suffix, this.partialContentConsumer, this.terminator);
+		} catch (final Exception exception) {
+			if (isLast) {
+				this.resultFuture.completeExceptionally(exception);
+			} else {
+				failover(index, exception.getMessage());
+			}
+			return;
+		}
+		this.currentFuture = future;
+		if (this.resultFuture.isDone()) {
+			future.cancel(true);
+			return;
+		}
+		future.whenComplete((response, throwable) -> {
+			if (this.resultFuture.isDone()) {
+				return;
+			}
+			final boolean isFailed = throwable != null
+					? !isCancellation(throwable)
+					: response.isError() && LlmCircuitBreaker.isFailureStatusCode(response.getStatusCode());
+			if (isFailed && !isLast) {
+				failover(index, throwable != null ? throwable.getMessage() : "status " + response.getStatusCode());
+			} else if (throwable != null) {
+				this.resultFuture.completeExceptionally(throwable);
+			} else {
+				this.resultFuture.complete(response);
+			}
+		});
+	}
+
+	private void failover(int index, String reason) {
+		AiCoderActivator.log().info(String.format("LLM %s failed (%s), failing over to %s", this.llmModelOptions.get(index).getLabel(), reason, this.llmModelOptions.get(index + 1).getLabel()));
+		execute(index + 1);
+	}
+
+	static boolean isCancellation(Throwable throwable) {
+		return throwable instanceof CancellationException || (throwable instanceof CompletionException && throwable.getCause() instanceof CancellationException);
+	}
+}
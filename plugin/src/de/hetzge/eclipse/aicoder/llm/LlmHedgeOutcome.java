@@ -0,0 +1,8 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+public enum LlmHedgeOutcome {
+	/** The hedge request was not sent, because the primary answered within the hedge delay (or no hedge is configured). */
+	NOT_HEDGED,
+	PRIMARY_WON,
+	HEDGE_WON;
+}
@@ -0,0 +1,143 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+
+/**
+ * Races a primary and a hedge LLM. The hedge request is only sent if the primary did not answer within the hedge delay or failed before. The first valid response wins and the other
+ * request is cancelled.
+ */
+final class LlmHedgedExecution {
+
+	private enum Leg {
+		PRIMARY, HEDGE
+	}
+
+	private final CompletableFuture<LlmResponse> resultFuture;
+	private final List<CompletableFuture<LlmResponse>> legFutures;
+	private final LlmOption hedgeOption;
+	private final String prefix;
+	private final String suffix;
+	private final Consumer<String> partialContentConsumer;
+	private final LlmStreamTerminator terminator;
+	private Leg streamingLeg;
+	private int pendingCount;
+	private boolean hedged;
+
+	private LlmHedgedExecution(LlmOption hedgeOption, String prefix, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		this.resultFuture = new CompletableFuture<>();
+		this.legFutures = new ArrayList<>();
+		this.hedgeOption = hedgeOption;
+		this.prefix = prefix;
+		this.suffix = suffix;
+		this.partialContentConsumer = partialContentConsumer;
+		this.terminator = terminator;
+		this.streamingLeg = null;
+		this.pendingCount = 0;
+		this.hedged = false;
+	}
+
+	static CompletableFuture<LlmResponse> execute(List<LlmOption> primaryOptions, LlmOption hedgeOption, Duration hedgeDelay, String prefix, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		final LlmHedgedExecution execution = new LlmHedgedExecution(hedgeOption, prefix, suffix, partialContentConsumer, terminator);
+		execution.resultFuture.whenComplete((response, throwable) -> execution.cancelLegs());
+		execution.start(Leg.PRIMARY, primaryOptions);
+		CompletableFuture.delayedExecutor(hedgeDelay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> execution.startHedge("did not answer in time"));
+		return execution.resultFuture;
+	}
+
+	private void startHedge(String reason) {
+		synchronized (this) {
+			if (this.resultFuture.isDone() || this.hedged) {
+				return;
+			}
+		}
+		AiCoderActivator.log().info(String.format("Primary LLM %s, sending hedge request to %s", reason, this.hedgeOption.getLabel()));
+		start(Leg.HEDGE, List.of(this.hedgeOption));
+	}
+
+	private void start(Leg leg, List<LlmOption> options) {
+		synchronized (this) {
+			if (this.resultFuture.isDone() || (leg == Leg.HEDGE && this.hedged)) {
+				return;
+			}
+			this.pendingCount++;
+			this.hedged |= leg == Leg.HEDGE;
+		}
+		final CompletableFuture<LlmResponse> future;
+		try {
+			future = LlmFailoverExecution.execute(options, null, this.prefix, this.suffix, createPartialContentConsumer(leg), this.terminator);
+		} catch (final Exception exception) {
+			onComplete(leg, null, exception);
+			return;
+		}
+		synchronized (this) {
+			this.legFutures.add(future);
+		}
+		if (this.resultFuture.isDone()) {
+			future.cancel(true);
+			return;
+		}
+		future.whenComplete((response, throwable) -> onComplete(leg, response, throwable));
+	}
+
+	private void onComplete(Leg leg, LlmResponse response, Throwable throwable) {
+		final boolean valid = throwable == null && !response.isError();
+		final boolean hedgeNow;
+		final LlmHedgeOutcome outcome;
+		synchronized (this) {
+			this.pendingCount--;
+			if (this.resultFuture.isDone() || (!valid && this.pendingCount > 0)) {
+				return;
+			}
+			hedgeNow = !valid && !this.hedged;
+			outcome = !this.hedged ? LlmHedgeOutcome.NOT_HEDGED : leg == Leg.PRIMARY ? LlmHedgeOutcome.PRIMARY_WON : LlmHedgeOutcome.HEDGE_WON;
+		}
+		if (hedgeNow) {
+			// for example a stopped local server or an open circuit breaker, there is no reason to wait for the hedge delay
+			startHedge(throwable != null ? "failed" : "failed with status " + response.getStatusCode());
+			return;
+		}
+		if (throwable != null) {
+			this.resultFuture.completeExceptionally(throwable);
+		} else {
+			if (outcome != LlmHedgeOutcome.NOT_HEDGED) {
+				AiCoderActivator.log().info(String.format("Hedged LLM request finished: %s (%s)", outcome, response.getLlmModelOption().getLabel()));
+			}
+			this.resultFuture.complete(response.withHedgeOutcome(outcome));
+		}
+	}
+
+	private Consumer<String> createPartialContentConsumer(Leg leg) {
+		if (this.partialContentConsumer == null) {
+			return null;
+		}
+		return content -> {
+			synchronized (this) {
+				if (this.streamingLeg == null) {
+					this.streamingLeg = leg;
+				}
+				// only the leg that streamed first is shown, otherwise the partial completion would flicker between both
+				if (this.streamingLeg != leg || this.resultFuture.isDone()) {
+					return;
+				}
+			}
+			this.partialContentConsumer.accept(content);
+		};
+	}
+
+	private void cancelLegs() {
+		final List<CompletableFuture<LlmResponse>> futures;
+		synchronized (this) {
+			futures = List.copyOf(this.legFutures);
+		}
+		for (final CompletableFuture<LlmResponse> future : futures) {
+			future.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exponentially weighted moving average of the recent response latency per {@link LlmOption}.
+ */
+public enum LlmLatencyStatistics {
+	INSTANCE;
+
+	private static final double ALPHA = 0.2;
+
+	private final Map<LlmOption, Double> averageLatencyMsByOption = new ConcurrentHashMap<>();
+
+	void record(LlmOption llmOption, Duration latency) {
+		this.averageLatencyMsByOption.merge(llmOption, (double) latency.toMillis(), (average, sample) -> average + ALPHA * (sample - average));
+	}
+
+	public Optional<Duration> getAverageLatency(LlmOption llmOption) {
+		return Optional.ofNullable(this.averageLatencyMsByOption.get(llmOption)).map(average -> Duration.ofMillis(Math.round(average)));
+	}
+}
@@ -1,132 +1,260 @@
 package de.hetzge.eclipse.aicoder.llm;
 
-import java.net.HttpURLConnection;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 
 import de.hetzge.eclipse.aicoder.AiCoderActivator;
 import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
-import de.hetzge.eclipse.aicoder.util.HttpUtils;
 import mjson.Json;
 
+/**
+ * Known LLM models of all configured providers. The models are discovered asynchronously (all endpoints in parallel) and cached on disk, so that the last known models are available immediately.
+ */
 public enum LlmModels {
 	INSTANCE;
 
-	private final List<LlmOption> options;
+	private static final String MODELS_JSON_FILENAME = "llmModels.json";
+	private static final Duration CACHE_TTL = Duration.ofHours(24);
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(5);
+
+	private final HttpClient httpClient;
+	private final Map<LlmProvider, List<LlmOption>> optionsByProvider;
+	private long loadedTimestamp;
+	private boolean diskCacheLoaded;
+	private CompletableFuture<Void> refreshFuture;
+	private long generation;
 
 	private LlmModels() {
-		this.options = new ArrayList<>();
+		this.httpClient = HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build();
+		this.optionsByProvider = new EnumMap<>(LlmProvider.class);
+		this.loadedTimestamp = 0;
+		this.diskCacheLoaded = false;
+		this.refreshFuture = null;
+		this.generation = 0;
+	}
+
+	/**
+	 * Forgets the known options. The results of a running refresh are dropped.
+	 */
+	public synchronized void reset() {
+		this.generation++;
+		this.refreshFuture = null;
+		this.optionsByProvider.clear();
+		this.loadedTimestamp = 0;
+		this.diskCacheLoaded = true; // don't reload the outdated disk cache
+		final File file = getCacheFile();
+		if (file.exists() && !file.delete()) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to delete llm models cache: " + file));
+		}
+	}
+
+	/**
+	 * @return the last known options (from memory or the disk cache) without waiting for the network
+	 */
+	public synchronized List<LlmOption> getOptions() {
+		loadDiskCacheIfNecessary();
+		return this.optionsByProvider.values().stream().flatMap(List::stream).toList();
+	}
+
+	/**
+	 * @return true if the options were never refreshed or the last refresh is older than the cache TTL (also if it found no options)
+	 */
+	public synchronized boolean isStale() {
+		loadDiskCacheIfNecessary();
+		return this.loadedTimestamp == 0 || System.currentTimeMillis() - this.loadedTimestamp > CACHE_TTL.toMillis();
 	}
 
-	public void reset() {
-		this.options.clear();
+	/**
+	 * @return true while the providers are queried
+	 */
+	public synchronized boolean isRefreshing() {
+		return this.refreshFuture != null && !this.refreshFuture.isDone();
 	}
 
-	public synchronized List<LlmOption> getOrLoadOptions() {
-		if (this.options.isEmpty()) {
-			this.options.addAll(loadOllamaModels());
-			this.options.addAll(loadOpenAiModels());
-			this.options.addAll(loadMistralModels());
-			this.options.addAll(loadInceptionLabsModels());
+	/**
+	 * Queries all providers in parallel. The consumer receives all known options every time the models of a provider arrived.
+	 */
+	public synchronized CompletableFuture<Void> refresh(Consumer<List<LlmOption>> optionsConsumer) {
+		if (this.refreshFuture != null && !this.refreshFuture.isDone()) {
+			return this.refreshFuture.thenRun(() -> optionsConsumer.accept(getOptions()));
 		}
-		return this.options;
+		final long refreshGeneration = this.generation;
+		final List<CompletableFuture<Void>> futures = new ArrayList<>();
+		futures.add(loadOllamaModels().thenAccept(options -> update(refreshGeneration, LlmProvider.OLLAMA, options, optionsConsumer)));
+		futures.add(loadOpenAiModels().thenAccept(options -> update(refreshGeneration, LlmProvider.OPENAI, options, optionsConsumer)));
+		futures.add(loadMistralModels().thenAccept(options -> update(refreshGeneration, LlmProvider.MISTRAL, options, optionsConsumer)));
+		futures.add(loadInceptionLabsModels().thenAccept(options -> update(refreshGeneration, LlmProvider.INCEPTIONLABS, options, optionsConsumer)));
+		this.refreshFuture = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenRun(() -> {
+			synchronized (this) {
+				if (refreshGeneration != this.generation) {
+					return; // reset while the models were loaded
+				}
+				this.loadedTimestamp = System.currentTimeMillis();
+				persist();
+			}
+		});
+		return this.refreshFuture;
 	}
 
-	private List<LlmOption> loadOllamaModels() {
+	private void update(long refreshGeneration, LlmProvider provider, List<LlmOption> options, Consumer<List<LlmOption>> optionsConsumer) {
+		final List<LlmOption> allOptions;
+		synchronized (this) {
+			if (refreshGeneration != this.generation) {
+				return;
+			}
+			if (options.isEmpty() && this.optionsByProvider.containsKey(provider)) {
+				return; // keep the last known models of an unreachable provider
+			}
+			this.optionsByProvider.put(provider, options);
+			allOptions = getOptions();
+		}
+		optionsConsumer.accept(allOptions);
+	}
+
+	private CompletableFuture<List<LlmOption>> loadOllamaModels() {
 		try {
 			final String ollamaBaseUrl = AiCoderPreferences.getOllamaBaseUrl();
-			final URL url = URI.create(ollamaBaseUrl).resolve("/api/tags").toURL();
-			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			connection.setRequestProperty("Accept", "application/json");
-			final int responseCode = connection.getResponseCode();
-			if (responseCode != HttpURLConnection.HTTP_OK) {
-				AiCoderActivator.log().info("Received ollama response code: " + responseCode + " -> skip ollama models");
-				return List.of();
-			}
-			final String responseBody = HttpUtils.readResponseBody(connection);
-			final Json responseJson = Json.read(responseBody);
-			final Json modelsJson = responseJson.at("models");
-			return modelsJson.asJsonList().stream().map(modelJson -> {
-				final String modelName = modelJson.at("name").asString();
-				return new LlmOption(LlmProvider.OLLAMA, modelName);
-			}).toList();
+			final HttpRequest request = HttpRequest.newBuilder()
+					.uri(URI.create(ollamaBaseUrl).resolve("/api/tags"))
+					.header("Accept", "application/json")
+					.timeout(REQUEST_TIMEOUT)
+					.GET()
+					.build();
+			return loadModels("ollama", request, responseJson -> responseJson.at("models").asJsonList().stream()
+					.map(modelJson -> new LlmOption(LlmProvider.OLLAMA, modelJson.at("name").asString()))
+					.toList());
 		} catch (final Exception exception) {
 			AiCoderActivator.log().info(String.format("%s while querying ollama models: %s -> skip ollama models", exception.getClass().getName(), exception.getMessage()));
-			return List.of();
+			return CompletableFuture.completedFuture(List.of());
 		}
 	}
 
-	private List<LlmOption> loadOpenAiModels() {
+	private CompletableFuture<List<LlmOption>> loadOpenAiModels() {
 		try {
 			final String openAiBaseUrl = AiCoderPreferences.getOpenAiBaseUrl();
 			final String openAiApiKey = AiCoderPreferences.getOpenAiApiKey();
-			final URL url = URI.create(openAiBaseUrl + "/").resolve("./v1/models").toURL();
-			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			connection.setRequestProperty("Content-Type", "application/json");
-			connection.setRequestProperty("Accept", "application/json");
-			connection.setRequestProperty("Authorization", "Bearer " + openAiApiKey);
-			final int responseCode = connection.getResponseCode();
-			if (responseCode != HttpURLConnection.HTTP_OK) {
-				AiCoderActivator.log().info("Received openai response code: " + responseCode + " -> skip openai models");
-				return List.of();
-			}
-			final String responseBody = HttpUtils.readResponseBody(connection);
-			final Json responseJson = Json.read(responseBody);
-			final Json modelsJson = responseJson.at("data");
-			return modelsJson.asJsonList().stream().map(modelJson -> {
-				final String modelName = modelJson.at("id").asString();
-				return new LlmOption(LlmProvider.OPENAI, modelName);
-			}).toList();
+			final HttpRequest request = HttpRequest.newBuilder()
+					.uri(URI.create(openAiBaseUrl + "/").resolve("./v1/models"))
+					.header("Content-Type", "application/json")
+					.header("Accept", "application/json")
+					.header("Authorization", "Bearer " + openAiApiKey)
+					.timeout(REQUEST_TIMEOUT)
+					.GET()
+					.build();
+			return loadModels("openai", request, responseJson -> responseJson.at("data").asJsonList().stream()
+					.map(modelJson -> new LlmOption(LlmProvider.OPENAI, modelJson.at("id").asString()))
+					.toList());
 		} catch (final Exception exception) {
 			AiCoderActivator.log().info(String.format("%s while querying openai models: %s -> skip openai models", exception.getClass().getName(), exception.getMessage()));
-			return List.of();
+			return CompletableFuture.completedFuture(List.of());
 		}
 	}
 
-	private List<LlmOption> loadMistralModels() {
-		try {
-			final String codestralApiKey = AiCoderPreferences.getCodestralApiKey();
-			if (codestralApiKey == null || codestralApiKey.isBlank()) {
-				return List.of();
-			}
-			return List.of(new LlmOption(LlmProvider.MISTRAL, "codestral-latest"));
-		} catch (final Exception exception) {
-			AiCoderActivator.log().info(String.format("%s while querying mistral models: %s -> skip mistral models", exception.getClass().getName(), exception.getMessage()));
-			return List.of();
+	private CompletableFuture<List<LlmOption>> loadMistralModels() {
+		final String codestralApiKey = AiCoderPreferences.getCodestralApiKey();
+		if (codestralApiKey == null || codestralApiKey.isBlank()) {
+			return CompletableFuture.completedFuture(List.of());
 		}
+		return CompletableFuture.completedFuture(List.of(new LlmOption(LlmProvider.MISTRAL, "codestral-latest")));
 	}
 
-	private List<LlmOption> loadInceptionLabsModels() {
+	private CompletableFuture<List<LlmOption>> loadInceptionLabsModels() {
 		try {
 			final String inceptionLabsApiKey = AiCoderPreferences.getInceptionLabsApiKey();
 			if (inceptionLabsApiKey == null || inceptionLabsApiKey.isBlank()) {
-				return List.of();
-			}
-			final URL url = URI.create("https://api.inceptionlabs.ai/v1/models").toURL();
-			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			connection.setRequestProperty("Content-Type", "application/json");
-			connection.setRequestProperty("Accept", "application/json");
-			connection.setRequestProperty("Authorization", "Bearer " + inceptionLabsApiKey);
-			final int responseCode = connection.getResponseCode();
-			if (responseCode != HttpURLConnection.HTTP_OK) {
-				AiCoderActivator.log().info("Received inceptionlabs response code: " + responseCode + " -> skip inceptionlabs models");
-				return List.of();
+				return CompletableFuture.completedFuture(List.of());
 			}
-			final String responseBody = HttpUtils.readResponseBody(connection);
-			final Json responseJson = Json.read(responseBody);
-			final Json modelsJson = responseJson.at("data");
-			return modelsJson.asJsonList().stream().map(modelJson -> {
-				final String modelName = modelJson.at("id").asString();
-				return new LlmOption(LlmProvider.INCEPTIONLABS, modelName);
-			}).toList();
+			final HttpRequest request = HttpRequest.newBuilder()
+					.uri(URI.create(InceptionLabsLlmProviderClient.INCEPTIONLABS_BASE_URL + "/v1/models"))
+					.header("Content-Type", "application/json")
+					.header("Accept", "application/json")
+					.header("Authorization", "Bearer " + inceptionLabsApiKey)
+					.timeout(REQUEST_TIMEOUT)
+					.GET()
+					.build();
+			return loadModels("inceptionlabs", request, responseJson -> responseJson.at("data").asJsonList().stream()
+					.map(modelJson -> new LlmOption(LlmProvider.INCEPTIONLABS, modelJson.at("id").asString()))
+					.toList());
 		} catch (final Exception exception) {
 			AiCoderActivator.log().info(String.format("%s while querying inceptionlabs models: %s -> skip inceptionlabs models", exception.getClass().getName(), exception.getMessage()));
-			return List.of();
+			return CompletableFuture.completedFuture(List.of());
+		}
+	}
+
+	private CompletableFuture<List<LlmOption>> loadModels(String name, HttpRequest request, Function<Json, List<LlmOption>> parser) {
+		return this.httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+				.thenApply(response -> {
+					if (response.statusCode() != 200) {
+						AiCoderActivator.log().info(String.format("Received %s response code: %s -> skip %s models", name, response.statusCode(), name));
+						return List.<LlmOption>of();
+					}
+					return parser.apply(Json.read(response.body()));
+				})
+				.exceptionally(exception -> {
+					AiCoderActivator.log().info(String.format("%s while querying %s models: %s -> skip %s models", exception.getClass().getName(), name, exception.getMessage(), name));
+					return List.of();
+				});
+	}
+
+	private void loadDiskCacheIfNecessary() {
+		if (this.diskCacheLoaded) {
+			return;
+		}
+		this.diskCacheLoaded = true;
+		final File file = getCacheFile();
+		if (!file.exists()) {
+			return;
 		}
+		try (FileInputStream fileInputStream = new FileInputStream(file)) {
+			final String fileContent = new String(fileInputStream.readAllBytes(), StandardCharsets.UTF_8);
+			final Json json = Json.read(!fileContent.isBlank() ? fileContent : "{}");
+			for (final Json optionJson : json.at("options", Json.array()).asJsonList()) {
+				final LlmProvider provider = LlmProvider.valueOf(optionJson.at("provider").asString());
+				this.optionsByProvider.computeIfAbsent(provider, ignore -> new ArrayList<>()).add(new LlmOption(provider, optionJson.at("model").asString()));
+			}
+			this.loadedTimestamp = json.at("timestamp", 0L).asLong();
+		} catch (final Exception exception) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to read llm models cache", exception));
+		}
+	}
+
+	private void persist() {
+		final Json optionsJson = Json.array();
+		for (final LlmOption option : getOptions()) {
+			optionsJson.add(Json.object()
+					.set("provider", option.provider().name())
+					.set("model", option.modelKey()));
+		}
+		try (FileWriter fileWriter = new FileWriter(getCacheFile())) {
+			fileWriter.write(Json.object()
+					.set("timestamp", this.loadedTimestamp)
+					.set("options", optionsJson)
+					.toString());
+		} catch (final IOException exception) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, "Failed to write llm models cache", exception));
+		}
+	}
+
+	private File getCacheFile() {
+		return AiCoderActivator.getDefault().getStateLocation().append(MODELS_JSON_FILENAME).toFile();
 	}
 }
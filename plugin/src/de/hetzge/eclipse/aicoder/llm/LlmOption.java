@@ -1,5 +1,12 @@
 package de.hetzge.eclipse.aicoder.llm;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
 import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
 
 public record LlmOption(
@@ -14,6 +21,10 @@ public record LlmOption(
 		return new LlmOption(AiCoderPreferences.getFillInMiddleProvider(), AiCoderPreferences.getFillInMiddleModel());
 	}
 
+	public static LlmOption createFillInMiddleHedgeModelOptionFromPreferences() {
+		return new LlmOption(AiCoderPreferences.getFillInMiddleHedgeProvider(), AiCoderPreferences.getFillInMiddleHedgeModel());
+	}
+
 	public static LlmOption createEditModelOptionFromPreferences() {
 		return new LlmOption(AiCoderPreferences.getEditProvider(), AiCoderPreferences.getEditModel());
 	}
@@ -29,4 +40,29 @@ public record LlmOption(
 	public static LlmOption createNextEditModelOptionFromPreferences() {
 		return new LlmOption(AiCoderPreferences.getNextEditProvider(), AiCoderPreferences.getNextEditModel());
 	}
+
+	/**
+	 * @param fallbacks comma or line separated list of "PROVIDER:model" entries
+	 * @return the given option followed by the parsed fallback options
+	 */
+	public static List<LlmOption> withFallbacks(LlmOption llmOption, String fallbacks) {
+		final List<LlmOption> llmOptions = new ArrayList<>();
+		llmOptions.add(llmOption);
+		for (final String fallback : fallbacks.split("[,\\n]")) {
+			if (fallback.isBlank()) {
+				continue;
+			}
+			final String[] parts = fallback.trim().split(":", 2);
+			try {
+				final LlmProvider provider = LlmProvider.valueOf(parts[0].trim());
+				if (provider == LlmProvider.NONE || parts.length < 2) {
+					throw new IllegalArgumentException("Missing provider or model");
+				}
+				llmOptions.add(new LlmOption(provider, parts[1].trim()));
+			} catch (final IllegalArgumentException exception) {
+				AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Ignore invalid fallback LLM '%s' (expected PROVIDER:model)", fallback.trim())));
+			}
+		}
+		return llmOptions;
+	}
 }
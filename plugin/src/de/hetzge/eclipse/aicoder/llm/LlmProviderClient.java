@@ -0,0 +1,38 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Provider specific part of a LLM call. Each provider owns its http client (and with it its connection pool), builds its requests and parses its responses.
+ */
+public interface LlmProviderClient {
+
+	HttpClient getHttpClient(HttpRequest httpRequest);
+
+	HttpRequest createHttpRequest(LlmRequest request);
+
+	LlmResponse parseResponse(LlmRequest request, String responseBody, Duration duration);
+
+	/**
+	 * @return true if the provider samples {@link LlmRequest#choiceCount()} completions in one request
+	 */
+	default boolean supportsChoiceCount(LlmRequest request) {
+		return false;
+	}
+
+	/**
+	 * @return the contents of all choices of a (not streamed) response
+	 */
+	default List<String> parseChoiceContents(LlmRequest request, String responseBody) {
+		return List.of(parseResponse(request, responseBody, Duration.ZERO).getContent());
+	}
+
+	/**
+	 * Parses a single line of a streamed response. Empty if the line contains no data (keep alive, end marker, ...).
+	 */
+	Optional<LlmStreamChunk> parseStreamLine(LlmRequest request, String line);
+}
@@ -0,0 +1,33 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+public record LlmRequest(
+		LlmOption llmModelOption,
+		String systemPrompt,
+		String prompt,
+		String suffix, // null if this is not a fill in the middle request
+		boolean pseudoFim,
+		boolean multiline,
+		int maxTokens,
+		double temperature, // 0 for deterministic completions
+		int choiceCount, // number of sampled completions ("n"), 1 for a single completion
+		boolean streaming) {
+
+	public boolean isFillInTheMiddle() {
+		return this.suffix != null;
+	}
+
+	public boolean isPseudoFim() {
+		return isFillInTheMiddle() && this.pseudoFim;
+	}
+
+	public boolean isNativeFillInTheMiddle() {
+		return isFillInTheMiddle() && !this.pseudoFim;
+	}
+
+	/**
+	 * @return false for sampled requests, because the same request is expected to produce a different response
+	 */
+	public boolean isCacheable() {
+		return this.temperature == 0;
+	}
+}
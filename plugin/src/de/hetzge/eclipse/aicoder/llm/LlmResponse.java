@@ -3,22 +3,61 @@ package de.hetzge.eclipse.aicoder.llm;
 import java.time.Duration;
 
 public class LlmResponse {
+	public static final int UNKNOWN_TOKENS = -1;
+
 	private final LlmOption llmModelOption;
 	private final String content;
 	private final String plainResponse;
 	private final int inputTokens;
 	private final int outputTokens;
+	private final int cachedInputTokens;
 	private final Duration duration;
 	private final boolean error;
+	private final boolean cached;
+	private final LlmHedgeOutcome hedgeOutcome;
+	private final int statusCode;
 
 	public LlmResponse(LlmOption llmModelOption, String content, String plainResponse, int inputTokens, int outputTokens, Duration duration, boolean error) {
+		this(llmModelOption, content, plainResponse, inputTokens, outputTokens, UNKNOWN_TOKENS, duration, error);
+	}
+
+	public LlmResponse(LlmOption llmModelOption, String content, String plainResponse, int inputTokens, int outputTokens, int cachedInputTokens, Duration duration, boolean error) {
+		this(llmModelOption, content, plainResponse, inputTokens, outputTokens, cachedInputTokens, duration, error, false, LlmHedgeOutcome.NOT_HEDGED, 0);
+	}
+
+	private LlmResponse(LlmOption llmModelOption, String content, String plainResponse, int inputTokens, int outputTokens, int cachedInputTokens, Duration duration, boolean error, boolean cached, LlmHedgeOutcome hedgeOutcome, int statusCode) {
 		this.llmModelOption = llmModelOption;
 		this.content = content;
 		this.plainResponse = plainResponse;
 		this.inputTokens = inputTokens;
 		this.outputTokens = outputTokens;
+		this.cachedInputTokens = cachedInputTokens;
 		this.duration = duration;
 		this.error = error;
+		this.cached = cached;
+		this.hedgeOutcome = hedgeOutcome;
+		this.statusCode = statusCode;
+	}
+
+	/**
+	 * @return a copy of this response that is marked as answered from the cache (without llm duration)
+	 */
+	public LlmResponse asCached() {
+		return new LlmResponse(this.llmModelOption, this.content, this.plainResponse, this.inputTokens, this.outputTokens, this.cachedInputTokens, Duration.ZERO, this.error, true, LlmHedgeOutcome.NOT_HEDGED, this.statusCode);
+	}
+
+	/**
+	 * @return a copy of this response that records whether it won a hedged request
+	 */
+	public LlmResponse withHedgeOutcome(LlmHedgeOutcome hedgeOutcome) {
+		return new LlmResponse(this.llmModelOption, this.content, this.plainResponse, this.inputTokens, this.outputTokens, this.cachedInputTokens, this.duration, this.error, this.cached, hedgeOutcome, this.statusCode);
+	}
+
+	/**
+	 * @return a copy of this response with the http status code of the failed request
+	 */
+	public LlmResponse withStatusCode(int statusCode) {
+		return new LlmResponse(this.llmModelOption, this.content, this.plainResponse, this.inputTokens, this.outputTokens, this.cachedInputTokens, this.duration, this.error, this.cached, this.hedgeOutcome, statusCode);
 	}
 
 	public LlmOption getLlmModelOption() {
@@ -41,6 +80,13 @@ public class LlmResponse {
 		return this.outputTokens;
 	}
 
+	/**
+	 * @return the number of input tokens the provider read from its prompt cache or {@link #UNKNOWN_TOKENS} if not reported
+	 */
+	public int getCachedInputTokens() {
+		return this.cachedInputTokens;
+	}
+
 	public Duration getDuration() {
 		return this.duration;
 	}
@@ -48,4 +94,19 @@ public class LlmResponse {
 	public boolean isError() {
 		return this.error;
 	}
-}
\ No newline at end of file
+
+	public boolean isCached() {
+		return this.cached;
+	}
+
+	public LlmHedgeOutcome getHedgeOutcome() {
+		return this.hedgeOutcome;
+	}
+
+	/**
+	 * @return the http status code of a failed request or 0 if unknown
+	 */
+	public int getStatusCode() {
+		return this.statusCode;
+	}
+}
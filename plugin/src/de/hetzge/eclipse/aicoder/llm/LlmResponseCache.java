@@ -0,0 +1,108 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+
+/**
+ * Size bounded LRU cache for LLM responses. Repeated requests (caret moved away and back, undo, ...) are answered without a network call.
+ */
+public enum LlmResponseCache {
+	INSTANCE;
+
+	private final Map<String, LlmResponse> responseByKey;
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
+
+	private LlmResponseCache() {
+		this.responseByKey = new LinkedHashMap<>(16, 0.75f, true);
+		this.hitCount = new AtomicLong();
+		this.missCount = new AtomicLong();
+	}
+
+	public synchronized Optional<LlmResponse> get(LlmRequest request) {
+		if (AiCoderPreferences.getResponseCacheSize() <= 0 || !request.isCacheable()) {
+			return Optional.empty();
+		}
+		final LlmResponse response = this.responseByKey.get(createKey(request));
+		if (response != null) {
+			this.hitCount.incrementAndGet();
+		} else {
+			this.missCount.incrementAndGet();
+		}
+		return Optional.ofNullable(response);
+	}
+
+	public synchronized void put(LlmRequest request, LlmResponse response) {
+		final int maxSize = AiCoderPreferences.getResponseCacheSize();
+		if (maxSize <= 0 || !request.isCacheable() || response.isError() || response.getContent().isBlank()) {
+			return;
+		}
+		this.responseByKey.put(createKey(request), response);
+		while (this.responseByKey.size() > maxSize) {
+			this.responseByKey.remove(this.responseByKey.keySet().iterator().next());
+		}
+	}
+
+	public synchronized void clear() {
+		this.responseByKey.clear();
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	public String getStatisticsString() {
+		return String.format("hits: %d, misses: %d", getHitCount(), getMissCount());
+	}
+
+	/**
+	 * Hash of everything that influences the response, including the server (another server may run another build of a model with the same name). The streaming flag does not
+	 * change the result, so it is not part of the key.
+	 */
+	private static String createKey(LlmRequest request) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, request.llmModelOption().provider().name());
+			update(digest, getBaseUrl(request.llmModelOption().provider()));
+			update(digest, request.llmModelOption().modelKey());
+			update(digest, request.systemPrompt());
+			update(digest, request.prompt());
+			update(digest, request.suffix());
+			update(digest, String.valueOf(request.isPseudoFim()));
+			update(digest, String.valueOf(request.multiline()));
+			update(digest, String.valueOf(request.maxTokens()));
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (final NoSuchAlgorithmException exception) {
+			throw new IllegalStateException("SHA-256 not available", exception);
+		}
+	}
+
+	private static String getBaseUrl(LlmProvider provider) {
+		return switch (provider) {
+		case OLLAMA -> AiCoderPreferences.getOllamaBaseUrl();
+		case MISTRAL -> AiCoderPreferences.getCodestralBaseUrl();
+		case OPENAI -> AiCoderPreferences.getOpenAiBaseUrl();
+		case INCEPTIONLABS -> InceptionLabsLlmProviderClient.INCEPTIONLABS_BASE_URL;
+		case NONE -> null;
+		};
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		if (value != null) {
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+		}
+		digest.update((byte) 0);
+	}
+}
@@ -18,6 +18,7 @@ import org.eclipse.jface.viewers.StyledString;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.dialogs.FilteredItemsSelectionDialog;
@@ -120,10 +121,18 @@ public final class LlmSelectorDialog extends FilteredItemsSelectionDialog {
 	@Override
 	protected void fillContentProvider(AbstractContentProvider contentProvider, ItemsFilter itemsFilter, IProgressMonitor progressMonitor) throws CoreException {
 		progressMonitor.beginTask("Load LLMs", IProgressMonitor.UNKNOWN);
-		final List<LlmOption> options = LlmModels.INSTANCE.getOrLoadOptions();
+		final List<LlmOption> options = LlmModels.INSTANCE.getOptions();
 		for (final LlmOption option : options) {
 			contentProvider.add(option, itemsFilter);
 		}
+		if (LlmModels.INSTANCE.isStale() && !LlmModels.INSTANCE.isRefreshing()) {
+			// show the last known models at once and fill the list again as the discovered ones arrive
+			LlmModels.INSTANCE.refresh(ignore -> Display.getDefault().asyncExec(() -> {
+				if (getShell() != null && !getShell().isDisposed()) {
+					scheduleRefresh();
+				}
+			}));
+		}
 		progressMonitor.done();
 	}
 
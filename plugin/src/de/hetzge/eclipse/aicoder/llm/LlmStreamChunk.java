@@ -0,0 +1,8 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+public record LlmStreamChunk(
+		String content,
+		int inputTokens,
+		int outputTokens,
+		int cachedInputTokens) { // LlmResponse.UNKNOWN_TOKENS if not reported
+}
@@ -0,0 +1,152 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Collects a streamed (NDJSON or SSE) LLM response line by line. Holds the body subscription, so that a cancelled request can close the stream instead of reading it to the end. The
+ * response is delivered by its own future, because the http response future never completes after the subscription was cancelled by the terminator.
+ */
+final class LlmStreamLineSubscriber implements Flow.Subscriber<String> {
+
+	private final LlmProviderClient client;
+	private final LlmRequest request;
+	private final int statusCode;
+	private final long beforeTimestamp;
+	private final Consumer<String> partialContentConsumer;
+	private final LlmStreamTerminator terminator;
+	private final StringBuilder contentBuilder;
+	private final StringBuilder plainResponseBuilder;
+	private final CompletableFuture<LlmResponse> responseFuture;
+	private int inputTokens;
+	private int outputTokens;
+	private int cachedInputTokens;
+	private volatile Flow.Subscription subscription;
+	private volatile boolean cancelled;
+	private volatile boolean stopped;
+
+	/**
+	 * @param beforeTimestamp the time the request was sent, for the duration of the response
+	 */
+	LlmStreamLineSubscriber(LlmProviderClient client, LlmRequest request, int statusCode, long beforeTimestamp, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		this.client = client;
+		this.request = request;
+		this.statusCode = statusCode;
+		this.beforeTimestamp = beforeTimestamp;
+		this.partialContentConsumer = partialContentConsumer;
+		this.terminator = terminator;
+		this.contentBuilder = new StringBuilder();
+		this.plainResponseBuilder = new StringBuilder();
+		this.responseFuture = new CompletableFuture<>();
+		this.inputTokens = 0;
+		this.outputTokens = 0;
+		this.cachedInputTokens = LlmResponse.UNKNOWN_TOKENS;
+		this.subscription = null;
+		this.cancelled = false;
+		this.stopped = false;
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		if (this.cancelled) {
+			subscription.cancel();
+		} else {
+			subscription.request(Long.MAX_VALUE);
+		}
+	}
+
+	@Override
+	public void onNext(String line) {
+		if (this.cancelled) {
+			return;
+		}
+		try {
+			append(line);
+		} catch (final RuntimeException exception) {
+			cancel();
+			this.responseFuture.completeExceptionally(exception);
+		}
+	}
+
+	private void append(String line) {
+		this.plainResponseBuilder.append(line).append("\n");
+		if (!isSuccess()) {
+			return;
+		}
+		final Optional<LlmStreamChunk> chunkOptional = this.client.parseStreamLine(this.request, line);
+		if (chunkOptional.isEmpty()) {
+			return;
+		}
+		final LlmStreamChunk chunk = chunkOptional.get();
+		this.inputTokens = Math.max(this.inputTokens, chunk.inputTokens());
+		this.outputTokens = Math.max(this.outputTokens, chunk.outputTokens());
+		this.cachedInputTokens = Math.max(this.cachedInputTokens, chunk.cachedInputTokens());
+		if (!chunk.content().isEmpty()) {
+			this.contentBuilder.append(chunk.content());
+			final int end = this.terminator != null ? this.terminator.findEnd(this.contentBuilder.toString()) : -1;
+			if (end >= 0) {
+				this.contentBuilder.setLength(end);
+				this.stopped = true;
+				cancel();
+			}
+			this.partialContentConsumer.accept(this.contentBuilder.toString());
+			if (this.stopped) {
+				// neither onComplete nor the http response future follow the cancellation
+				complete();
+			}
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		this.responseFuture.completeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		complete();
+	}
+
+	/**
+	 * Closes the body subscription, which tears down the exchange (closes the connection for HTTP/1.1, resets the stream for HTTP/2).
+	 */
+	void cancel() {
+		this.cancelled = true;
+		final Flow.Subscription currentSubscription = this.subscription;
+		if (currentSubscription != null) {
+			currentSubscription.cancel();
+		}
+	}
+
+	/**
+	 * @return true if the stream was closed early, because the terminator found the end of the content
+	 */
+	boolean isStopped() {
+		return this.stopped;
+	}
+
+	private boolean isSuccess() {
+		return this.statusCode == 200;
+	}
+
+	/**
+	 * @return the future of the response, which is completed at the end of the stream, when the terminator stopped it or with the error of the stream
+	 */
+	CompletableFuture<LlmResponse> getResponseFuture() {
+		return this.responseFuture;
+	}
+
+	private void complete() {
+		final Duration duration = Duration.ofMillis(System.currentTimeMillis() - this.beforeTimestamp);
+		final String plainResponse = this.plainResponseBuilder.toString();
+		if (!isSuccess()) {
+			this.responseFuture.complete(new LlmResponse(this.request.llmModelOption(), "", plainResponse, 0, 0, duration, true).withStatusCode(this.statusCode));
+		} else {
+			this.responseFuture.complete(new LlmResponse(this.request.llmModelOption(), this.contentBuilder.toString(), plainResponse, this.inputTokens, this.outputTokens, this.cachedInputTokens, duration, false));
+		}
+	}
+}
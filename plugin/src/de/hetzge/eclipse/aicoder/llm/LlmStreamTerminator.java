@@ -0,0 +1,13 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+/**
+ * Decides while streaming if the generated content is complete, so that the request can be closed before the model stops by itself.
+ */
+@FunctionalInterface
+public interface LlmStreamTerminator {
+
+	/**
+	 * @return the length of the content to keep if the generation can be stopped, otherwise -1
+	 */
+	int findEnd(String content);
+}
@@ -0,0 +1,17 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import de.hetzge.eclipse.aicoder.util.Utils;
+
+/**
+ * Counts the tokens of text in a LLM vocabulary.
+ */
+@FunctionalInterface
+public interface LlmTokenizer {
+
+	/**
+	 * Used if the vocabulary of a LLM is not available.
+	 */
+	LlmTokenizer APPROXIMATE = text -> Utils.countApproximateTokens(text.toString());
+
+	int countTokens(CharSequence text);
+}
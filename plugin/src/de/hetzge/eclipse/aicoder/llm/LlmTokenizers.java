@@ -0,0 +1,149 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import mjson.Json;
+
+/**
+ * The tokenizers of the LLMs. The vocabulary of a LLM is picked by its provider and model name and loaded in the background from the tokenizer folder (tiktoken files like
+ * "cl100k_base.tiktoken" or Hugging Face "tokenizer.json" files renamed like "mistral.json"). If a vocabulary is missing or still loading, token counts are approximated.
+ */
+public enum LlmTokenizers {
+	INSTANCE;
+
+	private static final String TOKENIZERS_FOLDER_NAME = "tokenizers";
+	private static final String CL100K = "cl100k_base.tiktoken";
+	private static final String O200K = "o200k_base.tiktoken";
+	private static final String MISTRAL = "mistral.json";
+	private static final String LLAMA = "llama.json";
+	private static final String LLAMA3 = "llama3.json";
+	private static final String QWEN = "qwen.json";
+
+	private final Map<String, LlmTokenizer> tokenizerByVocabulary;
+	private final Set<String> loadingVocabularies;
+	private long generation;
+
+	private LlmTokenizers() {
+		this.tokenizerByVocabulary = new ConcurrentHashMap<>();
+		this.loadingVocabularies = new HashSet<>();
+		this.generation = 0;
+	}
+
+	/**
+	 * Never blocks: if the vocabulary isn't loaded yet, it is loaded in the background and the token count is approximated until then.
+	 */
+	public LlmTokenizer get(LlmOption llmOption) {
+		final String vocabulary = getVocabulary(llmOption);
+		final LlmTokenizer tokenizer = this.tokenizerByVocabulary.get(vocabulary);
+		if (tokenizer != null) {
+			return tokenizer;
+		}
+		scheduleLoad(vocabulary);
+		return LlmTokenizer.APPROXIMATE;
+	}
+
+	/**
+	 * Loads the vocabularies of the configured models in the background, so that they are available at the first completion.
+	 */
+	public void preload() {
+		scheduleLoad(getVocabulary(LlmOption.createFillInMiddleModelOptionFromPreferences()));
+		scheduleLoad(getVocabulary(LlmOption.createEditModelOptionFromPreferences()));
+	}
+
+	public synchronized void reset() {
+		this.tokenizerByVocabulary.clear();
+		this.loadingVocabularies.clear();
+		this.generation++;
+	}
+
+	private void scheduleLoad(String vocabulary) {
+		final long loadGeneration;
+		synchronized (this) {
+			if (this.tokenizerByVocabulary.containsKey(vocabulary) || !this.loadingVocabularies.add(vocabulary)) {
+				return;
+			}
+			loadGeneration = this.generation;
+		}
+		final Job job = new Job(String.format("Load tokenizer vocabulary '%s'", vocabulary)) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				final LlmTokenizer tokenizer = load(vocabulary);
+				synchronized (LlmTokenizers.this) {
+					// a vocabulary loaded before a reset may come from another folder
+					if (loadGeneration == LlmTokenizers.this.generation) {
+						LlmTokenizers.this.tokenizerByVocabulary.put(vocabulary, tokenizer);
+						LlmTokenizers.this.loadingVocabularies.remove(vocabulary);
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	static String getVocabulary(LlmOption llmOption) {
+		final String model = llmOption.modelKey().toLowerCase(Locale.ROOT);
+		if (llmOption.provider() == LlmProvider.MISTRAL || model.contains("mistral") || model.contains("codestral") || model.contains("mixtral") || model.contains("devstral")) {
+			return MISTRAL;
+		} else if (model.contains("llama3") || model.contains("llama-3")) {
+			return LLAMA3;
+		} else if (model.contains("llama")) {
+			return LLAMA;
+		} else if (model.contains("qwen")) {
+			return QWEN;
+		} else if (model.contains("gpt-4o") || model.contains("gpt-4.1") || model.contains("gpt-5") || model.matches("o\\d.*")) {
+			return O200K;
+		} else {
+			return CL100K;
+		}
+	}
+
+	private LlmTokenizer load(String vocabulary) {
+		final File file = new File(getTokenizersFolder(), vocabulary);
+		if (!file.isFile()) {
+			AiCoderActivator.log().info(String.format("No tokenizer vocabulary '%s' -> approximate token counts", file));
+			return LlmTokenizer.APPROXIMATE;
+		}
+		final long before = System.currentTimeMillis();
+		try (InputStream inputStream = new FileInputStream(file)) {
+			final LlmTokenizer tokenizer;
+			if (vocabulary.endsWith(".tiktoken")) {
+				tokenizer = BytePairTokenizer.loadTiktoken(inputStream, vocabulary.equals(O200K) ? BytePairTokenizer.O200K_PATTERN : BytePairTokenizer.CL100K_PATTERN);
+			} else {
+				final Json tokenizerJson = Json.read(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+				tokenizer = SentencePieceTokenizer.isSentencePiece(tokenizerJson)
+						? SentencePieceTokenizer.loadHuggingFace(tokenizerJson)
+						: BytePairTokenizer.loadHuggingFace(tokenizerJson);
+			}
+			AiCoderActivator.log().info(String.format("Loaded tokenizer vocabulary '%s' in %d ms", vocabulary, System.currentTimeMillis() - before));
+			return tokenizer;
+		} catch (final Exception exception) {
+			AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Failed to load tokenizer vocabulary '%s' -> approximate token counts", file), exception));
+			return LlmTokenizer.APPROXIMATE;
+		}
+	}
+
+	private File getTokenizersFolder() {
+		final String tokenizersFolder = AiCoderPreferences.getTokenizersFolder();
+		if (tokenizersFolder != null && !tokenizersFolder.isBlank()) {
+			return new File(tokenizersFolder);
+		}
+		return AiCoderActivator.getDefault().getStateLocation().append(TOKENIZERS_FOLDER_NAME).toFile();
+	}
+}
@@ -1,283 +1,311 @@
 package de.hetzge.eclipse.aicoder.llm;
 
-import java.net.URI;
-import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 
 import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.metrics.LatencyMetrics;
+import de.hetzge.eclipse.aicoder.metrics.LatencyStage;
 import de.hetzge.eclipse.aicoder.next.NextEditRequest;
 import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
-import de.hetzge.eclipse.aicoder.util.JinjaUtils;
-import de.hetzge.eclipse.aicoder.util.Utils;
 import mjson.Json;
 
 public final class LlmUtils {
 
-	private static final String CODESTRAL_BASE_URL = "https://codestral.mistral.ai";
-	private static final String INCEPTIONLABS_BASE_URL = "https://api.inceptionlabs.ai";
+	private static final double CANDIDATE_TEMPERATURE = 0.6;
 
-	private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
-			.version(HttpClient.Version.HTTP_1_1) // force http 1.1, otherwise lm studio does not work (no response)
-			.build();
+	private static final InceptionLabsLlmProviderClient INCEPTIONLABS_CLIENT = new InceptionLabsLlmProviderClient();
+
+	private static final Map<LlmProvider, LlmProviderClient> CLIENT_BY_PROVIDER = Map.ofEntries(
+			Map.entry(LlmProvider.OLLAMA, new OllamaLlmProviderClient()),
+			Map.entry(LlmProvider.MISTRAL, new MistralLlmProviderClient()),
+			Map.entry(LlmProvider.OPENAI, new OpenAiLlmProviderClient()),
+			Map.entry(LlmProvider.INCEPTIONLABS, INCEPTIONLABS_CLIENT));
 
 	private LlmUtils() {
 	}
 
 	public static CompletableFuture<LlmResponse> executeGenerate(String systemPrompt, String prompt) {
-		return execute(LlmOption.createEditModelOptionFromPreferences(), systemPrompt, prompt, null);
+		return LlmFailoverExecution.execute(LlmOption.withFallbacks(LlmOption.createEditModelOptionFromPreferences(), AiCoderPreferences.getGenerateFallbacks()), systemPrompt, prompt, null, null, null);
 	}
 
 	public static CompletableFuture<LlmResponse> executeEdit(String systemPrompt, String prompt) {
-		return execute(LlmOption.createEditModelOptionFromPreferences(), systemPrompt, prompt, null);
+		return LlmFailoverExecution.execute(LlmOption.withFallbacks(LlmOption.createEditModelOptionFromPreferences(), AiCoderPreferences.getEditFallbacks()), systemPrompt, prompt, null, null, null);
 	}
 
 	public static CompletableFuture<LlmResponse> executeQuickFix(String systemPrompt, String prompt) {
-		return execute(LlmOption.createQuickFixModelOptionFromPreferences(), systemPrompt, prompt, null);
+		return LlmFailoverExecution.execute(LlmOption.withFallbacks(LlmOption.createQuickFixModelOptionFromPreferences(), AiCoderPreferences.getQuickFixFallbacks()), systemPrompt, prompt, null, null, null);
 	}
 
 	public static CompletableFuture<LlmResponse> executeFillInTheMiddle(String prefix, String suffix) {
-		return execute(LlmOption.createFillInMiddleModelOptionFromPreferences(), null, prefix, suffix);
+		return executeHedgedFillInTheMiddle(prefix, suffix, null, null);
+	}
+
+	/**
+	 * Like {@link #executeFillInTheMiddle(String, String)} but streams the response if enabled in the preferences. The consumer receives the accumulated content every time new tokens arrive. The
+	 * (optional) terminator closes the stream as soon as the content is complete.
+	 */
+	public static CompletableFuture<LlmResponse> executeFillInTheMiddle(String prefix, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		return executeHedgedFillInTheMiddle(prefix, suffix, AiCoderPreferences.isStreamingEnabled() ? partialContentConsumer : null, terminator);
 	}
 
-	private static CompletableFuture<LlmResponse> execute(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix) {
-		AiCoderActivator.log().log(new Status(IStatus.INFO, AiCoderActivator.PLUGIN_ID, String.format("Executing LLM: %s", llmModelOption)));
-		final LlmProvider provider = llmModelOption.provider();
-		switch (provider) {
-		case NONE:
+	private static CompletableFuture<LlmResponse> executeHedgedFillInTheMiddle(String prefix, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		final List<LlmOption> llmModelOptions = LlmOption.withFallbacks(LlmOption.createFillInMiddleModelOptionFromPreferences(), AiCoderPreferences.getFillInMiddleFallbacks());
+		final LlmOption hedgeLlmModelOption = LlmOption.createFillInMiddleHedgeModelOptionFromPreferences();
+		if (hedgeLlmModelOption.provider() == LlmProvider.NONE) {
+			return LlmFailoverExecution.execute(llmModelOptions, null, prefix, suffix, partialContentConsumer, terminator);
+		}
+		return LlmHedgedExecution.execute(llmModelOptions, hedgeLlmModelOption, AiCoderPreferences.getHedgeDelay(), prefix, suffix, partialContentConsumer, terminator);
+	}
+
+	/**
+	 * Requests alternative fill in the middle completions of the primary model. The alternatives are sampled with a non zero temperature and are not streamed, so they can be sent
+	 * in parallel to the regular (deterministic) request. Providers that support it sample all alternatives in one request ("n"), the others get one request per alternative.
+	 *
+	 * @return the contents of the successful alternatives
+	 */
+	public static CompletableFuture<List<String>> executeFillInTheMiddleCandidates(String prefix, String suffix, int count) {
+		final LlmOption llmModelOption = LlmOption.createFillInMiddleModelOptionFromPreferences();
+		final LlmProviderClient client = getProviderClient(llmModelOption.provider());
+		final LlmRequest request = createRequest(llmModelOption, null, prefix, suffix, CANDIDATE_TEMPERATURE, count, false);
+		if (client.supportsChoiceCount(request)) {
+			final CompletableFuture<LlmResponse> responseFuture = execute(request, null, null);
+			final CompletableFuture<List<String>> contentsFuture = responseFuture.thenApply(response -> !response.isError()
+					? client.parseChoiceContents(request, response.getPlainResponse())
+					: List.<String>of());
+			propagateCancellation(contentsFuture, responseFuture);
+			return contentsFuture;
+		}
+		final List<CompletableFuture<LlmResponse>> responseFutures = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			responseFutures.add(execute(createRequest(llmModelOption, null, prefix, suffix, CANDIDATE_TEMPERATURE, 1, false), null, null));
+		}
+		final CompletableFuture<List<String>> contentsFuture = CompletableFuture.allOf(responseFutures.toArray(new CompletableFuture[0])).handle((ignore, throwable) -> responseFutures.stream()
+				.filter(future -> future.isDone() && !future.isCompletedExceptionally())
+				.map(CompletableFuture::join)
+				.filter(response -> !response.isError())
+				.map(LlmResponse::getContent)
+				.toList());
+		responseFutures.forEach(responseFuture -> propagateCancellation(contentsFuture, responseFuture));
+		return contentsFuture;
+	}
+
+	public static LlmProviderClient getProviderClient(LlmProvider provider) {
+		if (provider == LlmProvider.NONE) {
 			throw new IllegalStateException("No LLM provider selected.");
-		case OLLAMA:
-			return executeOllama(llmModelOption, systemPrompt, prompt, suffix);
-		case MISTRAL:
-			return executeMistral(llmModelOption, systemPrompt, prompt, suffix);
-		case OPENAI:
-			return executeOpenAi(llmModelOption, systemPrompt, prompt, suffix);
-		case INCEPTIONLABS:
-			return executeInceptionLabs(llmModelOption, systemPrompt, prompt, suffix);
-		default:
+		}
+		final LlmProviderClient client = CLIENT_BY_PROVIDER.get(provider);
+		if (client == null) {
 			throw new IllegalStateException("Illegal provider: " + provider);
 		}
+		return client;
+	}
+
+	static CompletableFuture<LlmResponse> execute(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		return execute(llmModelOption, systemPrompt, prompt, suffix, partialContentConsumer, terminator, 0);
 	}
 
-	private static CompletableFuture<LlmResponse> executeOllama(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix) {
-		final boolean isFillInTheMiddle = suffix != null;
-		final boolean isPseudoFim = isFillInTheMiddle && AiCoderPreferences.isEnablePseduoFim();
-		final String urlString = AiCoderPreferences.getOllamaBaseUrl();
-		final boolean multilineEnabled = AiCoderPreferences.isMultilineEnabled();
-		final Json json = Json.object();
-		json.set("model", llmModelOption.modelKey());
-		json.set("stream", false);
-		json.set("options", Json.object().set("temperature", 0));
-		if (isFillInTheMiddle) {
-			if (!isPseudoFim) {
-				json.set("suffix", suffix);
-				json.at("options").set("stop", createStop(multilineEnabled));
+	private static CompletableFuture<LlmResponse> execute(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator, double temperature) {
+		return execute(createRequest(llmModelOption, systemPrompt, prompt, suffix, temperature, 1, partialContentConsumer != null), partialContentConsumer, terminator);
+	}
+
+	private static LlmRequest createRequest(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix, double temperature, int choiceCount, boolean streaming) {
+		return new LlmRequest(
+				llmModelOption,
+				systemPrompt,
+				prompt,
+				suffix,
+				AiCoderPreferences.isEnablePseduoFim(),
+				AiCoderPreferences.isMultilineEnabled(),
+				AiCoderPreferences.getMaxTokens(),
+				temperature,
+				choiceCount,
+				streaming);
+	}
+
+	private static CompletableFuture<LlmResponse> execute(LlmRequest request, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		final LlmOption llmModelOption = request.llmModelOption();
+		AiCoderActivator.log().log(new Status(IStatus.INFO, AiCoderActivator.PLUGIN_ID, String.format("Executing LLM: %s (streaming: %s, temperature: %s, choices: %s)", llmModelOption, request.streaming(), request.temperature(), request.choiceCount())));
+		final LlmProviderClient client = getProviderClient(llmModelOption.provider());
+		final Optional<LlmResponse> cachedResponseOptional = LlmResponseCache.INSTANCE.get(request);
+		if (cachedResponseOptional.isPresent()) {
+			AiCoderActivator.log().info(String.format("LLM response cache hit (%s)", LlmResponseCache.INSTANCE.getStatisticsString()));
+			return CompletableFuture.completedFuture(cachedResponseOptional.get().asCached());
+		}
+		final LlmCircuitBreaker circuitBreaker = LlmCircuitBreaker.get(llmModelOption.provider());
+		if (!circuitBreaker.tryAcquire()) {
+			AiCoderActivator.log().info(String.format("Skip %s, because its circuit is open", llmModelOption.getLabel()));
+			final String message = String.format("%s is skipped, because it failed repeatedly", llmModelOption.provider());
+			return CompletableFuture.completedFuture(new LlmResponse(llmModelOption, "", message, 0, 0, Duration.ZERO, true).withStatusCode(503));
+		}
+		final HttpRequest httpRequest;
+		try {
+			final long beforeSerializationNanos = System.nanoTime();
+			httpRequest = client.createHttpRequest(request);
+			LatencyMetrics.INSTANCE.record(LatencyStage.SERIALIZATION, llmModelOption.getLabel(), System.nanoTime() - beforeSerializationNanos);
+		} catch (final RuntimeException exception) {
+			circuitBreaker.release();
+			throw exception;
+		}
+		final CompletableFuture<LlmResponse> responseFuture = request.streaming()
+				? executeStreaming(client, request, httpRequest, partialContentConsumer, terminator)
+				: executeNonStreaming(client, request, httpRequest);
+		final CompletableFuture<LlmResponse> cachingResponseFuture = responseFuture.thenApply(response -> {
+			if (!response.isError()) {
+				LlmLatencyStatistics.INSTANCE.record(llmModelOption, response.getDuration());
+			}
+			LlmResponseCache.INSTANCE.put(request, response);
+			return response;
+		});
+		responseFuture.whenComplete((response, throwable) -> {
+			if (throwable == null) {
+				return;
+			}
+			if (LlmFailoverExecution.isCancellation(throwable)) {
+				circuitBreaker.release();
 			} else {
-				final String pseudoFimSystemPrompt = getPseduoFIMSystemPrompt();
-				final String pseudoFimUserPrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
-						Map.entry("prefix", prompt),
-						Map.entry("suffix", suffix)));
-				json.set("system", pseudoFimSystemPrompt);
-				json.set("prompt", pseudoFimUserPrompt);
+				circuitBreaker.recordFailure(Optional.empty());
 			}
-			json.at("options").set("num_predict", AiCoderPreferences.getMaxTokens());
-		} else {
-			json.set("prompt", prompt);
-			json.set("system", systemPrompt);
-		}
-		final URI uri = URI.create(Utils.joinUriParts(List.of(urlString, "/api/generate")));
-		final long beforeTimestamp = System.currentTimeMillis();
-		final HttpRequest request = HttpRequest.newBuilder()
-				.uri(uri)
-				.header("Content-Type", "application/json")
-				.header("Accept", "application/json")
-				.timeout(AiCoderPreferences.getTimeout())
-				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
-				.build();
-		return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-				.thenApply(response -> {
-					final Duration duration = Duration.ofMillis(System.currentTimeMillis() - beforeTimestamp);
-					if (response.statusCode() == 200) {
-						final String responseBody = response.body();
-						final Json responseJson = Json.read(responseBody);
-						final String content = responseJson.at("response").asString();
-						final int inputTokens = responseJson.at("prompt_eval_count").asInteger();
-						final int outputTokens = responseJson.at("eval_count").asInteger();
-						return new LlmResponse(llmModelOption, content, responseBody, inputTokens, outputTokens, duration, false);
-					} else {
-						AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", response.body(), response.statusCode())));
-						return new LlmResponse(llmModelOption, "", response.body(), 0, 0, duration, true);
-					}
-				});
+		});
+		propagateCancellation(cachingResponseFuture, responseFuture);
+		return cachingResponseFuture;
 	}
 
-	private static CompletableFuture<LlmResponse> executeMistral(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix) {
-		final boolean isFillInTheMiddle = suffix != null;
-		final boolean isPseudoFim = isFillInTheMiddle && AiCoderPreferences.isEnablePseduoFim();
-		final String urlString = CODESTRAL_BASE_URL;
-		final String codestralApiKey = AiCoderPreferences.getCodestralApiKey();
-		final boolean multilineEnabled = AiCoderPreferences.isMultilineEnabled();
-		final Json json = Json.object();
-		json.set("model", llmModelOption.modelKey());
-		json.set("temperature", 0);
-		if (isFillInTheMiddle) {
-			if (!isPseudoFim) {
-				json.set("prompt", prompt);
-				json.set("suffix", suffix);
-				json.set("max_tokens", AiCoderPreferences.getMaxTokens());
-				json.set("stop", createStop(multilineEnabled));
+	private static CompletableFuture<LlmResponse> executeNonStreaming(LlmProviderClient client, LlmRequest request, HttpRequest httpRequest) {
+		final LlmOption llmModelOption = request.llmModelOption();
+		final long beforeTimestamp = System.currentTimeMillis();
+		final long beforeNanos = System.nanoTime();
+		final AtomicLong firstByteNanos = new AtomicLong();
+		final CompletableFuture<HttpResponse<String>> httpResponseFuture = client.getHttpClient(httpRequest).sendAsync(httpRequest, responseInfo -> {
+			firstByteNanos.set(System.nanoTime());
+			return HttpResponse.BodyHandlers.ofString().apply(responseInfo);
+		});
+		final CompletableFuture<LlmResponse> responseFuture = httpResponseFuture.thenApply(response -> {
+			final Duration duration = Duration.ofMillis(System.currentTimeMillis() - beforeTimestamp);
+			recordCircuitBreakerResult(llmModelOption, response);
+			if (response.statusCode() == 200) {
+				recordResponseLatencies(llmModelOption, beforeNanos, firstByteNanos.get());
+				return client.parseResponse(request, response.body(), duration);
 			} else {
-				final String pseudoFimSystemPrompt = getPseduoFIMSystemPrompt();
-				final String pseudoFimUserPrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
-						Map.entry("prefix", prompt),
-						Map.entry("suffix", suffix)));
-				json.set("max_tokens", AiCoderPreferences.getMaxTokens());
-				json.set("messages", createMessages(pseudoFimSystemPrompt, pseudoFimUserPrompt));
+				AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", response.body(), response.statusCode())));
+				return new LlmResponse(llmModelOption, "", response.body(), 0, 0, duration, true).withStatusCode(response.statusCode());
 			}
-		} else {
-			json.set("messages", createMessages(systemPrompt, prompt));
-		}
-		final String path = isFillInTheMiddle && !isPseudoFim ? "/v1/fim/completions" : "/v1/chat/completions";
-		final URI uri = URI.create(Utils.joinUriParts(List.of(urlString, path)));
+		});
+		abortOnCancellation(responseFuture, httpResponseFuture, () -> {
+		});
+		return responseFuture;
+	}
+
+	private static CompletableFuture<LlmResponse> executeStreaming(LlmProviderClient client, LlmRequest request, HttpRequest httpRequest, Consumer<String> partialContentConsumer, LlmStreamTerminator terminator) {
+		final LlmOption llmModelOption = request.llmModelOption();
 		final long beforeTimestamp = System.currentTimeMillis();
-		final HttpRequest request = HttpRequest.newBuilder()
-				.uri(uri)
-				.header("Content-Type", "application/json")
-				.header("Accept", "application/json")
-				.header("Authorization", "Bearer " + codestralApiKey)
-				.timeout(AiCoderPreferences.getTimeout())
-				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
-				.build();
-		return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-				.thenApply(response -> {
-					final Duration duration = Duration.ofMillis(System.currentTimeMillis() - beforeTimestamp);
-					if (response.statusCode() == 200) {
-						final String responseBody = response.body();
-						final Json responseJson = Json.read(responseBody);
-						final String content = responseJson.at("choices").at(0).at("message").at("content").asString();
-						final int inputTokens = responseJson.at("usage").at("prompt_tokens").asInteger();
-						final int outputTokens = responseJson.at("usage").at("completion_tokens").asInteger();
-						return new LlmResponse(llmModelOption, content, responseBody, inputTokens, outputTokens, duration, false);
-					} else {
-						AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", response.body(), response.statusCode())));
-						return new LlmResponse(llmModelOption, "", response.body(), 0, 0, duration, true);
-					}
-				});
+		final long beforeNanos = System.nanoTime();
+		final AtomicLong firstByteNanos = new AtomicLong();
+		final AtomicReference<HttpResponse.ResponseInfo> responseInfoReference = new AtomicReference<>();
+		final AtomicReference<LlmStreamLineSubscriber> subscriberReference = new AtomicReference<>();
+		final CompletableFuture<LlmResponse> streamResponseFuture = new CompletableFuture<>();
+		final CompletableFuture<HttpResponse<Void>> httpResponseFuture = client.getHttpClient(httpRequest).sendAsync(httpRequest, responseInfo -> {
+			firstByteNanos.set(System.nanoTime());
+			final LlmStreamLineSubscriber subscriber = new LlmStreamLineSubscriber(client, request, responseInfo.statusCode(), beforeTimestamp, partialContentConsumer, terminator);
+			responseInfoReference.set(responseInfo);
+			subscriberReference.set(subscriber);
+			subscriber.getResponseFuture().whenComplete((response, throwable) -> {
+				if (throwable != null) {
+					streamResponseFuture.completeExceptionally(throwable);
+				} else {
+					streamResponseFuture.complete(response);
+				}
+			});
+			return HttpResponse.BodySubscribers.fromLineSubscriber(subscriber);
+		});
+		// failures before the body is subscribed (connection errors) only complete the http response future
+		httpResponseFuture.whenComplete((response, throwable) -> {
+			if (throwable != null) {
+				streamResponseFuture.completeExceptionally(throwable);
+			}
+		});
+		final CompletableFuture<LlmResponse> responseFuture = streamResponseFuture.thenApply(llmResponse -> {
+			final HttpResponse.ResponseInfo responseInfo = responseInfoReference.get();
+			recordCircuitBreakerResult(llmModelOption, responseInfo.statusCode(), responseInfo.headers());
+			if (llmResponse.isError()) {
+				AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", llmResponse.getPlainResponse(), responseInfo.statusCode())));
+				return llmResponse;
+			}
+			if (subscriberReference.get().isStopped()) {
+				AiCoderActivator.log().info("Closed LLM stream at syntactic boundary");
+			}
+			recordResponseLatencies(llmModelOption, beforeNanos, firstByteNanos.get());
+			return llmResponse;
+		});
+		abortOnCancellation(responseFuture, httpResponseFuture, () -> {
+			final LlmStreamLineSubscriber subscriber = subscriberReference.get();
+			if (subscriber != null) {
+				subscriber.cancel();
+			}
+		});
+		return responseFuture;
 	}
 
-	private static CompletableFuture<LlmResponse> executeOpenAi(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix) {
-		final boolean isFillInTheMiddle = suffix != null;
-		final boolean isPseudoFim = isFillInTheMiddle && AiCoderPreferences.isEnablePseduoFim();
-		final String urlString = AiCoderPreferences.getOpenAiBaseUrl();
-		final String openAiApiKey = AiCoderPreferences.getOpenAiApiKey();
-		final Json json = Json.object();
-		json.set("model", llmModelOption.modelKey());
-		json.set("temperature", 0);
-		if (isFillInTheMiddle) {
-			final String fimTemplatePrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
-					Map.entry("prefix", prompt),
-					Map.entry("suffix", suffix)));
-			if (!isPseudoFim) {
-				json.set("prompt", fimTemplatePrompt);
-				json.set("max_tokens", AiCoderPreferences.getMaxTokens());
-				json.set("stop", createStop(AiCoderPreferences.isMultilineEnabled()));
-			} else {
-				final String pseudoFimSystemPrompt = getPseduoFIMSystemPrompt();
-				json.set("messages", createMessages(pseudoFimSystemPrompt, fimTemplatePrompt));
+	/**
+	 * Cancelling a dependent stage of {@link java.net.http.HttpClient#sendAsync} does not abort the exchange, so the backend would keep generating. This cancels the http response future itself (and closes the body
+	 * subscriber via the given callback) as soon as the response future is cancelled.
+	 */
+	private static void abortOnCancellation(CompletableFuture<LlmResponse> responseFuture, CompletableFuture<? extends HttpResponse<?>> httpResponseFuture, Runnable closeBody) {
+		responseFuture.whenComplete((response, throwable) -> {
+			if (!responseFuture.isCancelled()) {
+				return;
 			}
+			LlmCancellationStatistics.INSTANCE.recordCancelled();
+			closeBody.run();
+			httpResponseFuture.cancel(true);
+			httpResponseFuture.thenRun(() -> {
+				LlmCancellationStatistics.INSTANCE.recordCancelledButCompleted();
+				AiCoderActivator.log().info(String.format("Cancelled LLM request was completed by the backend (%s)", LlmCancellationStatistics.INSTANCE.getStatisticsString()));
+			});
+		});
+	}
+
+	/**
+	 * Splits the duration of a successful request at the arrival of the response headers into the time to first byte and the generation.
+	 */
+	private static void recordResponseLatencies(LlmOption llmModelOption, long beforeNanos, long firstByteNanos) {
+		final long afterNanos = System.nanoTime();
+		LatencyMetrics.INSTANCE.record(LatencyStage.TIME_TO_FIRST_BYTE, llmModelOption.getLabel(), firstByteNanos - beforeNanos);
+		LatencyMetrics.INSTANCE.record(LatencyStage.GENERATION, llmModelOption.getLabel(), afterNanos - firstByteNanos);
+	}
+
+	private static void recordCircuitBreakerResult(LlmOption llmModelOption, HttpResponse<?> response) {
+		recordCircuitBreakerResult(llmModelOption, response.statusCode(), response.headers());
+	}
+
+	private static void recordCircuitBreakerResult(LlmOption llmModelOption, int statusCode, HttpHeaders headers) {
+		final LlmCircuitBreaker circuitBreaker = LlmCircuitBreaker.get(llmModelOption.provider());
+		if (LlmCircuitBreaker.isFailureStatusCode(statusCode)) {
+			circuitBreaker.recordFailure(LlmCircuitBreaker.parseRetryAfter(headers.firstValue("Retry-After")));
 		} else {
-			json.set("messages", createMessages(systemPrompt, prompt));
+			circuitBreaker.recordSuccess();
 		}
-		final String path = isFillInTheMiddle && !isPseudoFim ? "/v1/completions" : "/v1/chat/completions";
-		final URI uri = URI.create(Utils.joinUriParts(List.of(urlString, path)));
-		final long beforeTimestamp = System.currentTimeMillis();
-		final HttpRequest request = HttpRequest.newBuilder()
-				.uri(uri)
-				.header("Content-Type", "application/json")
-				.header("Accept", "application/json")
-				.header("Authorization", "Bearer " + openAiApiKey)
-				.timeout(AiCoderPreferences.getTimeout())
-				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
-				.build();
-		return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-				.thenApply(response -> {
-					final Duration duration = Duration.ofMillis(System.currentTimeMillis() - beforeTimestamp);
-					if (response.statusCode() == 200) {
-						final String responseBody = response.body();
-						final Json responseJson = Json.read(responseBody);
-						final String content = isFillInTheMiddle && !isPseudoFim
-								? responseJson.at("choices").at(0).at("text").asString()
-								: responseJson.at("choices").at(0).at("message").at("content").asString();
-						final int inputTokens = responseJson.at("usage").at("prompt_tokens").asInteger();
-						final int outputTokens = responseJson.at("usage").at("completion_tokens").asInteger();
-						return new LlmResponse(llmModelOption, content, responseBody, inputTokens, outputTokens, duration, false);
-					} else {
-						AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", response.body(), response.statusCode())));
-						return new LlmResponse(llmModelOption, "", response.body(), 0, 0, duration, true);
-					}
-				});
 	}
 
-	private static CompletableFuture<LlmResponse> executeInceptionLabs(LlmOption llmModelOption, String systemPrompt, String prompt, String suffix) {
-		final boolean isFillInTheMiddle = suffix != null;
-		final boolean isPseudoFim = isFillInTheMiddle && AiCoderPreferences.isEnablePseduoFim();
-		final String urlString = INCEPTIONLABS_BASE_URL;
-		final String inceptionApiKey = AiCoderPreferences.getInceptionLabsApiKey();
-		final boolean multilineEnabled = AiCoderPreferences.isMultilineEnabled();
-		final Json json = Json.object();
-		json.set("model", llmModelOption.modelKey());
-		json.set("temperature", 0);
-		if (isFillInTheMiddle) {
-			if (!isPseudoFim) {
-				json.set("prompt", prompt);
-				json.set("suffix", suffix);
-				json.set("max_tokens", AiCoderPreferences.getMaxTokens());
-				json.set("stop", createStop(multilineEnabled));
-			} else {
-				final String pseudoFimSystemPrompt = getPseduoFIMSystemPrompt();
-				final String pseudoFimUserPrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
-						Map.entry("prefix", prompt),
-						Map.entry("suffix", suffix)));
-				json.set("messages", createMessages(pseudoFimSystemPrompt, pseudoFimUserPrompt));
+	private static void propagateCancellation(CompletableFuture<?> dependentFuture, CompletableFuture<?> sourceFuture) {
+		dependentFuture.whenComplete((response, throwable) -> {
+			if (dependentFuture.isCancelled()) {
+				sourceFuture.cancel(true);
 			}
-		} else {
-			json.set("messages", createMessages(systemPrompt, prompt));
-		}
-		final String path = isFillInTheMiddle && !isPseudoFim ? "/v1/fim/completions" : "/v1/chat/completions";
-		final URI uri = URI.create(Utils.joinUriParts(List.of(urlString, path)));
-		final long beforeTimestamp = System.currentTimeMillis();
-		final HttpRequest request = HttpRequest.newBuilder()
-				.uri(uri)
-				.header("Content-Type", "application/json")
-				.header("Accept", "application/json")
-				.header("Authorization", "Bearer " + inceptionApiKey)
-				.timeout(AiCoderPreferences.getTimeout())
-				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
-				.build();
-		return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-				.thenApply(response -> {
-					final Duration duration = Duration.ofMillis(System.currentTimeMillis() - beforeTimestamp);
-					if (response.statusCode() == 200) {
-						final String responseBody = response.body();
-						final Json responseJson = Json.read(responseBody);
-						final String content = isFillInTheMiddle && !isPseudoFim
-								? responseJson.at("choices").at(0).at("text").asString()
-								: responseJson.at("choices").at(0).at("message").at("content").asString();
-						final int inputTokens = responseJson.at("usage").at("prompt_tokens").asInteger();
-						final int outputTokens = responseJson.at("usage").at("completion_tokens").asInteger();
-						return new LlmResponse(llmModelOption, content, responseBody, inputTokens, outputTokens, duration, false);
-					} else {
-						AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", response.body(), response.statusCode())));
-						return new LlmResponse(llmModelOption, "", response.body(), 0, 0, duration, true);
-					}
-				});
+		});
 	}
 
 	public static CompletableFuture<LlmResponse> executeNextEdit(NextEditRequest request) {
@@ -285,55 +313,36 @@ public final class LlmUtils {
 		if (llmModelOption.provider() != LlmProvider.INCEPTIONLABS) {
 			throw new IllegalArgumentException("Only InceptionLabs is currently supported for next edit.");
 		}
-		final String urlString = INCEPTIONLABS_BASE_URL;
-		final String inceptionApiKey = AiCoderPreferences.getInceptionLabsApiKey();
-		final Json json = Json.object();
-		json.set("model", llmModelOption.modelKey());
-		json.set("messages", Json.array()
-				.add(Json.object()
-						.set("role", "user")
-						.set("content", request.toInceptionLabsNextEditPrompt())));
-
-		final URI uri = URI.create(Utils.joinUriParts(List.of(urlString, "/v1/edit/completions")));
+		final LlmRequest llmRequest = new LlmRequest(llmModelOption, null, null, null, false, false, 0, 0, 1, false);
+		final HttpRequest httpRequest = INCEPTIONLABS_CLIENT.createNextEditHttpRequest(llmModelOption, request);
 		final long beforeTimestamp = System.currentTimeMillis();
-		final HttpRequest httpRequest = HttpRequest.newBuilder()
-				.uri(uri)
-				.header("Content-Type", "application/json")
-				.header("Accept", "application/json")
-				.header("Authorization", "Bearer " + inceptionApiKey)
-				.timeout(AiCoderPreferences.getTimeout())
-				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
-				.build();
-		return HTTP_CLIENT.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
-				.thenApply(response -> {
-					final Duration duration = Duration.ofMillis(System.currentTimeMillis() - beforeTimestamp);
-					if (response.statusCode() == 200) {
-						final String responseBody = response.body();
-						final Json responseJson = Json.read(responseBody);
-						final String content = responseJson.at("choices").at(0).at("message").at("content").asString();
-						final int inputTokens = responseJson.at("usage").at("prompt_tokens").asInteger();
-						final int outputTokens = responseJson.at("usage").at("completion_tokens").asInteger();
-						return new LlmResponse(llmModelOption, content, responseBody, inputTokens, outputTokens, duration, false);
-					} else {
-						AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", response.body(), response.statusCode())));
-						return new LlmResponse(llmModelOption, "", response.body(), 0, 0, duration, true);
-					}
-				});
+		final CompletableFuture<HttpResponse<String>> httpResponseFuture = INCEPTIONLABS_CLIENT.getHttpClient(httpRequest).sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString());
+		final CompletableFuture<LlmResponse> responseFuture = httpResponseFuture.thenApply(response -> {
+			final Duration duration = Duration.ofMillis(System.currentTimeMillis() - beforeTimestamp);
+			if (response.statusCode() == 200) {
+				return INCEPTIONLABS_CLIENT.parseResponse(llmRequest, response.body(), duration);
+			} else {
+				AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Error: %s (%s)", response.body(), response.statusCode())));
+				return new LlmResponse(llmModelOption, "", response.body(), 0, 0, duration, true);
+			}
+		});
+		abortOnCancellation(responseFuture, httpResponseFuture, () -> {
+		});
+		return responseFuture;
 	}
 
-	private static String getPseduoFIMSystemPrompt() {
+	static String getPseduoFIMSystemPrompt(boolean isMultilineEnabled) {
 		final String systemPrompt = AiCoderPreferences.getPseudoFimSystemPrompt();
-		final boolean isMultilineEnabled = AiCoderPreferences.isMultilineEnabled();
 		return systemPrompt + (isMultilineEnabled ? "" : "\n- Only generate a single line of code. The user expects only the completion of the current line.");
 	}
 
-	private static Json createStop(final boolean multilineEnabled) {
+	static Json createStop(final boolean multilineEnabled) {
 		return Json.array()
 				.add(multilineEnabled ? "\n\n" : "\n")
 				.add(multilineEnabled ? "\r\n\r\n" : "\r\n");
 	}
 
-	private static Json createMessages(String systemPrompt, String prompt) {
+	static Json createMessages(String systemPrompt, String prompt) {
 		return Json.array()
 				.add(Json.object()
 						.set("role", "system")
@@ -342,4 +351,4 @@ public final class LlmUtils {
 						.set("role", "user")
 						.set("content", prompt));
 	}
-}
\ No newline at end of file
+}
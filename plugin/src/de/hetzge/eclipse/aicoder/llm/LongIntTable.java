@@ -0,0 +1,78 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+/**
+ * Open addressing hash table from long keys to int values (without boxing).
+ */
+final class LongIntTable {
+
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+
+	LongIntTable(int expectedSize) {
+		final int capacity = Integer.highestOneBit(Math.max(16, expectedSize) * 2 - 1) << 1;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.used = new boolean[capacity];
+		this.size = 0;
+	}
+
+	void put(long key, int value) {
+		if ((this.size + 1) * 2 > this.keys.length) {
+			rehash(this.keys.length * 2);
+		}
+		final int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while (this.used[slot]) {
+			if (this.keys[slot] == key) {
+				this.values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		this.used[slot] = true;
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		this.size++;
+	}
+
+	/**
+	 * @return the value or the default value if the key is unknown
+	 */
+	int get(long key, int defaultValue) {
+		final int mask = this.keys.length - 1;
+		int slot = hash(key) & mask;
+		while (this.used[slot]) {
+			if (this.keys[slot] == key) {
+				return this.values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	private void rehash(int capacity) {
+		final long[] oldKeys = this.keys;
+		final int[] oldValues = this.values;
+		final boolean[] oldUsed = this.used;
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.used = new boolean[capacity];
+		this.size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
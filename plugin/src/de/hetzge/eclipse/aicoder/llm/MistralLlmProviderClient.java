@@ -0,0 +1,77 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import de.hetzge.eclipse.aicoder.util.JinjaUtils;
+import de.hetzge.eclipse.aicoder.util.Utils;
+import mjson.Json;
+
+public final class MistralLlmProviderClient extends AbstractOpenAiCompatibleLlmProviderClient {
+
+	// remote server: multiplex requests over one connection
+	private final HttpClient httpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.build();
+
+	@Override
+	public HttpClient getHttpClient(HttpRequest httpRequest) {
+		return this.httpClient;
+	}
+
+	@Override
+	protected boolean isTextCompletion(LlmRequest request) {
+		return false;
+	}
+
+	/**
+	 * The fim endpoint returns a single completion.
+	 */
+	@Override
+	public boolean supportsChoiceCount(LlmRequest request) {
+		return !request.isNativeFillInTheMiddle();
+	}
+
+	@Override
+	public HttpRequest createHttpRequest(LlmRequest request) {
+		final Json json = Json.object();
+		json.set("model", request.llmModelOption().modelKey());
+		json.set("temperature", request.temperature());
+		if (request.choiceCount() > 1) {
+			json.set("n", request.choiceCount());
+		}
+		if (request.streaming()) {
+			json.set("stream", true);
+		}
+		if (request.isFillInTheMiddle()) {
+			if (!request.isPseudoFim()) {
+				json.set("prompt", request.prompt());
+				json.set("suffix", request.suffix());
+				json.set("max_tokens", request.maxTokens());
+				json.set("stop", LlmUtils.createStop(request.multiline()));
+			} else {
+				final String pseudoFimUserPrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
+						Map.entry("prefix", request.prompt()),
+						Map.entry("suffix", request.suffix())));
+				json.set("max_tokens", request.maxTokens());
+				json.set("messages", LlmUtils.createMessages(LlmUtils.getPseduoFIMSystemPrompt(request.multiline()), pseudoFimUserPrompt));
+			}
+		} else {
+			json.set("messages", LlmUtils.createMessages(request.systemPrompt(), request.prompt()));
+		}
+		final String path = request.isNativeFillInTheMiddle() ? "/v1/fim/completions" : "/v1/chat/completions";
+		final URI uri = URI.create(Utils.joinUriParts(List.of(AiCoderPreferences.getCodestralBaseUrl(), path)));
+		return HttpRequest.newBuilder()
+				.uri(uri)
+				.header("Content-Type", "application/json")
+				.header("Accept", request.streaming() ? "text/event-stream" : "application/json")
+				.header("Authorization", "Bearer " + AiCoderPreferences.getCodestralApiKey())
+				.timeout(AiCoderPreferences.getTimeout())
+				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+				.build();
+	}
+}
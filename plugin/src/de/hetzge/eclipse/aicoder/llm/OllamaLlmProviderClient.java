@@ -0,0 +1,88 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import de.hetzge.eclipse.aicoder.util.JinjaUtils;
+import de.hetzge.eclipse.aicoder.util.Utils;
+import mjson.Json;
+
+public final class OllamaLlmProviderClient implements LlmProviderClient {
+
+	// local server: keep alive connections, no multiplexing
+	private final HttpClient httpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.build();
+
+	@Override
+	public HttpClient getHttpClient(HttpRequest httpRequest) {
+		return this.httpClient;
+	}
+
+	@Override
+	public HttpRequest createHttpRequest(LlmRequest request) {
+		final Json json = Json.object();
+		json.set("model", request.llmModelOption().modelKey());
+		json.set("stream", request.streaming());
+		json.set("options", Json.object().set("temperature", request.temperature()));
+		if (AiCoderPreferences.isOllamaWarmupEnabled()) {
+			json.set("keep_alive", OllamaWarmup.getKeepAlive());
+		}
+		if (request.isFillInTheMiddle()) {
+			if (!request.isPseudoFim()) {
+				json.set("prompt", request.prompt());
+				json.set("suffix", request.suffix());
+				json.at("options").set("stop", LlmUtils.createStop(request.multiline()));
+			} else {
+				final String pseudoFimUserPrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
+						Map.entry("prefix", request.prompt()),
+						Map.entry("suffix", request.suffix())));
+				json.set("system", LlmUtils.getPseduoFIMSystemPrompt(request.multiline()));
+				json.set("prompt", pseudoFimUserPrompt);
+			}
+			json.at("options").set("num_predict", request.maxTokens());
+		} else {
+			json.set("prompt", request.prompt());
+			json.set("system", request.systemPrompt());
+		}
+		final URI uri = URI.create(Utils.joinUriParts(List.of(AiCoderPreferences.getOllamaBaseUrl(), "/api/generate")));
+		return HttpRequest.newBuilder()
+				.uri(uri)
+				.header("Content-Type", "application/json")
+				.header("Accept", request.streaming() ? "application/x-ndjson" : "application/json")
+				.timeout(AiCoderPreferences.getTimeout())
+				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+				.build();
+	}
+
+	@Override
+	public LlmResponse parseResponse(LlmRequest request, String responseBody, Duration duration) {
+		final Json responseJson = Json.read(responseBody);
+		final String content = responseJson.at("response").asString();
+		// only the newly evaluated prompt tokens are reported (nothing if the whole prompt was reused), the cached share is unknown
+		final int inputTokens = responseJson.at("prompt_eval_count", 0).asInteger();
+		final int outputTokens = responseJson.at("eval_count", 0).asInteger();
+		return new LlmResponse(request.llmModelOption(), content, responseBody, inputTokens, outputTokens, duration, false);
+	}
+
+	/**
+	 * Ollama streams newline delimited json objects. The last object has "done" set and contains the token counts.
+	 */
+	@Override
+	public Optional<LlmStreamChunk> parseStreamLine(LlmRequest request, String line) {
+		if (line.isBlank()) {
+			return Optional.empty();
+		}
+		final Json json = Json.read(line);
+		final String content = json.has("response") ? json.at("response").asString() : "";
+		final int inputTokens = json.has("prompt_eval_count") ? json.at("prompt_eval_count").asInteger() : 0;
+		final int outputTokens = json.has("eval_count") ? json.at("eval_count").asInteger() : 0;
+		return Optional.of(new LlmStreamChunk(content, inputTokens, outputTokens, LlmResponse.UNKNOWN_TOKENS));
+	}
+}
@@ -0,0 +1,157 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchWindow;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import de.hetzge.eclipse.aicoder.util.Utils;
+import mjson.Json;
+
+/**
+ * Keeps the Ollama models of the fill in the middle and edit options loaded while the IDE is focused. A request without prompt loads a model without generating tokens, so the first
+ * completion doesn't pay the model load. The load is refreshed before the keep alive expires and the models are released (keep alive 0) when the IDE was not focused for a while.
+ */
+public enum OllamaWarmup {
+	INSTANCE;
+
+	private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+	private final HttpClient httpClient;
+	private final Job loadJob;
+	private final Job releaseJob;
+
+	private OllamaWarmup() {
+		this.httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.build();
+		this.loadJob = new Job("Warm up Ollama models") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				if (!AiCoderPreferences.isOllamaWarmupEnabled()) {
+					return Status.OK_STATUS;
+				}
+				sendKeepAlive(getKeepAlive());
+				// refresh before the keep alive expires (completions refresh it as well)
+				schedule(Math.max(1, AiCoderPreferences.getOllamaKeepAliveMinutes() / 2) * 60_000L);
+				return Status.OK_STATUS;
+			}
+		};
+		this.loadJob.setSystem(true);
+		this.releaseJob = new Job("Release Ollama models") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				OllamaWarmup.this.loadJob.cancel();
+				if (AiCoderPreferences.isOllamaWarmupEnabled()) {
+					sendKeepAlive("0");
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		this.releaseJob.setSystem(true);
+	}
+
+	/**
+	 * Loads the models now and follows the focus of the workbench windows.
+	 */
+	public void start(IWorkbench workbench) {
+		workbench.addWindowListener(new IWindowListener() {
+			@Override
+			public void windowActivated(IWorkbenchWindow window) {
+				onFocus();
+			}
+
+			@Override
+			public void windowDeactivated(IWorkbenchWindow window) {
+				onIdle();
+			}
+
+			@Override
+			public void windowOpened(IWorkbenchWindow window) {
+			}
+
+			@Override
+			public void windowClosed(IWorkbenchWindow window) {
+			}
+		});
+		onFocus();
+	}
+
+	public void stop() {
+		this.loadJob.cancel();
+		this.releaseJob.cancel();
+	}
+
+	private void onFocus() {
+		this.releaseJob.cancel();
+		if (this.loadJob.getState() != Job.RUNNING) {
+			this.loadJob.cancel();
+			this.loadJob.schedule();
+		}
+	}
+
+	private void onIdle() {
+		final int releaseAfterIdleMinutes = AiCoderPreferences.getOllamaReleaseAfterIdleMinutes();
+		if (releaseAfterIdleMinutes > 0) {
+			this.releaseJob.schedule(releaseAfterIdleMinutes * 60_000L);
+		}
+	}
+
+	private void sendKeepAlive(String keepAlive) {
+		final URI uri = URI.create(Utils.joinUriParts(List.of(AiCoderPreferences.getOllamaBaseUrl(), "/api/generate")));
+		for (final String model : getModels()) {
+			final Json json = Json.object()
+					.set("model", model)
+					.set("keep_alive", keepAlive);
+			final HttpRequest httpRequest = HttpRequest.newBuilder()
+					.uri(uri)
+					.header("Content-Type", "application/json")
+					.timeout(REQUEST_TIMEOUT)
+					.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+					.build();
+			final long before = System.currentTimeMillis();
+			try {
+				final HttpResponse<String> response = this.httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+				if (response.statusCode() == 200) {
+					AiCoderActivator.log().info(String.format("Ollama model '%s' keep alive '%s' (%d ms)", model, keepAlive, System.currentTimeMillis() - before));
+				} else {
+					AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Failed to set keep alive of Ollama model '%s' (status %d): %s", model, response.statusCode(), response.body())));
+				}
+			} catch (final InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (final Exception exception) {
+				AiCoderActivator.log().log(new Status(IStatus.WARNING, AiCoderActivator.PLUGIN_ID, String.format("Failed to set keep alive of Ollama model '%s'", model), exception));
+			}
+		}
+	}
+
+	private static List<String> getModels() {
+		return Stream.of(LlmOption.createFillInMiddleModelOptionFromPreferences(), LlmOption.createEditModelOptionFromPreferences())
+				.filter(option -> option.provider() == LlmProvider.OLLAMA)
+				.map(LlmOption::modelKey)
+				.filter(model -> model != null && !model.isBlank())
+				.distinct()
+				.toList();
+	}
+
+	/**
+	 * @return the keep alive of the loaded models in Ollama's duration format
+	 */
+	static String getKeepAlive() {
+		return AiCoderPreferences.getOllamaKeepAliveMinutes() + "m";
+	}
+}
@@ -0,0 +1,73 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.Map;
+
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+import de.hetzge.eclipse.aicoder.util.JinjaUtils;
+import de.hetzge.eclipse.aicoder.util.Utils;
+import mjson.Json;
+
+public final class OpenAiLlmProviderClient extends AbstractOpenAiCompatibleLlmProviderClient {
+
+	// remote server (https): multiplex requests over one connection (http 2 is negotiated via alpn and falls back to http 1.1)
+	private final HttpClient secureHttpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.build();
+
+	// local server (http): force http 1.1, otherwise lm studio does not work (no response because of the h2c upgrade)
+	private final HttpClient plainHttpClient = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.build();
+
+	@Override
+	public HttpClient getHttpClient(HttpRequest httpRequest) {
+		return "https".equalsIgnoreCase(httpRequest.uri().getScheme()) ? this.secureHttpClient : this.plainHttpClient;
+	}
+
+	@Override
+	protected boolean isTextCompletion(LlmRequest request) {
+		return request.isNativeFillInTheMiddle();
+	}
+
+	@Override
+	public HttpRequest createHttpRequest(LlmRequest request) {
+		final Json json = Json.object();
+		json.set("model", request.llmModelOption().modelKey());
+		json.set("temperature", request.temperature());
+		if (request.choiceCount() > 1) {
+			json.set("n", request.choiceCount());
+		}
+		if (request.streaming()) {
+			json.set("stream", true);
+			json.set("stream_options", Json.object().set("include_usage", true));
+		}
+		if (request.isFillInTheMiddle()) {
+			final String fimTemplatePrompt = JinjaUtils.applyTemplate(AiCoderPreferences.getOpenAiFimTemplate(), Map.ofEntries(
+					Map.entry("prefix", request.prompt()),
+					Map.entry("suffix", request.suffix())));
+			if (!request.isPseudoFim()) {
+				json.set("prompt", fimTemplatePrompt);
+				json.set("max_tokens", request.maxTokens());
+				json.set("stop", LlmUtils.createStop(request.multiline()));
+			} else {
+				json.set("messages", LlmUtils.createMessages(LlmUtils.getPseduoFIMSystemPrompt(request.multiline()), fimTemplatePrompt));
+			}
+		} else {
+			json.set("messages", LlmUtils.createMessages(request.systemPrompt(), request.prompt()));
+		}
+		final String path = request.isNativeFillInTheMiddle() ? "/v1/completions" : "/v1/chat/completions";
+		final URI uri = URI.create(Utils.joinUriParts(List.of(AiCoderPreferences.getOpenAiBaseUrl(), path)));
+		return HttpRequest.newBuilder()
+				.uri(uri)
+				.header("Content-Type", "application/json")
+				.header("Accept", request.streaming() ? "text/event-stream" : "application/json")
+				.header("Authorization", "Bearer " + AiCoderPreferences.getOpenAiApiKey())
+				.timeout(AiCoderPreferences.getTimeout())
+				.POST(HttpRequest.BodyPublishers.ofString(json.toString()))
+				.build();
+	}
+}
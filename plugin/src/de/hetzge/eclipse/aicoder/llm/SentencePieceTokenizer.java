@@ -0,0 +1,294 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import mjson.Json;
+
+/**
+ * SentencePiece style byte pair encoding (Llama 2, Mistral, Codestral): spaces are replaced with "▁" and the adjacent symbols of the whole text with the lowest merge rank (the leftmost
+ * one first) are merged until no merge is possible anymore, so tokens can span spaces (like "▁▁▁▁" for indentation). Characters that are not part of the vocabulary are encoded as UTF-8
+ * bytes (byte fallback). The symbols are kept in a linked list and the candidate merges in a heap, both in reused buffers, so nothing is allocated while encoding.
+ */
+public final class SentencePieceTokenizer implements LlmTokenizer {
+
+	private static final char SPACE_SYMBOL = '▁';
+	private static final int NO_MERGE = Integer.MAX_VALUE;
+	private static final int UNKNOWN = -1;
+	private static final int NONE = -1;
+	private static final int REMOVED = Integer.MIN_VALUE;
+
+	private static final class Buffers {
+		private int[] symbols = new int[256]; // token id, -(code point + 1) for unknown characters or REMOVED for merged symbols
+		private int[] previousIndices = new int[256];
+		private int[] nextIndices = new int[256];
+		private long[] merges = new long[256]; // heap of merge rank << 32 | index of the left symbol
+		private int mergeCount;
+
+		private void ensureCapacity(int symbolCount) {
+			if (symbolCount > this.symbols.length) {
+				final int capacity = Math.max(symbolCount, this.symbols.length * 2);
+				this.symbols = new int[capacity];
+				this.previousIndices = new int[capacity];
+				this.nextIndices = new int[capacity];
+			}
+		}
+
+		private void pushMerge(int rank, int index) {
+			if (rank == NO_MERGE) {
+				return;
+			}
+			if (this.mergeCount == this.merges.length) {
+				this.merges = Arrays.copyOf(this.merges, this.mergeCount * 2);
+			}
+			final long merge = (long) rank << 32 | index;
+			int childIndex = this.mergeCount++;
+			while (childIndex > 0) {
+				final int parentIndex = (childIndex - 1) / 2;
+				if (this.merges[parentIndex] <= merge) {
+					break;
+				}
+				this.merges[childIndex] = this.merges[parentIndex];
+				childIndex = parentIndex;
+			}
+			this.merges[childIndex] = merge;
+		}
+
+		private long pollMerge() {
+			final long first = this.merges[0];
+			final long last = this.merges[--this.mergeCount];
+			int parentIndex = 0;
+			while (true) {
+				int childIndex = parentIndex * 2 + 1;
+				if (childIndex >= this.mergeCount) {
+					break;
+				}
+				if (childIndex + 1 < this.mergeCount && this.merges[childIndex + 1] < this.merges[childIndex]) {
+					childIndex++;
+				}
+				if (last <= this.merges[childIndex]) {
+					break;
+				}
+				this.merges[parentIndex] = this.merges[childIndex];
+				parentIndex = childIndex;
+			}
+			this.merges[parentIndex] = last;
+			return first;
+		}
+	}
+
+	private final LongIntTable idByCodePoint;
+	private final LongIntTable rankByPair;
+	private final int[] mergedIdByRank;
+	private final int[] byteFallbackIds;
+	private final int unknownId;
+	private final boolean prependSpace;
+	private final ThreadLocal<Buffers> buffers;
+
+	private SentencePieceTokenizer(LongIntTable idByCodePoint, LongIntTable rankByPair, int[] mergedIdByRank, int[] byteFallbackIds, int unknownId, boolean prependSpace) {
+		this.idByCodePoint = idByCodePoint;
+		this.rankByPair = rankByPair;
+		this.mergedIdByRank = mergedIdByRank;
+		this.byteFallbackIds = byteFallbackIds;
+		this.unknownId = unknownId;
+		this.prependSpace = prependSpace;
+		this.buffers = ThreadLocal.withInitial(Buffers::new);
+	}
+
+	/**
+	 * Passes the id of every token to the consumer (in order).
+	 */
+	public void encode(CharSequence text, IntConsumer tokenIdConsumer) {
+		process(text, tokenIdConsumer);
+	}
+
+	@Override
+	public int countTokens(CharSequence text) {
+		return process(text, null);
+	}
+
+	private int process(CharSequence text, IntConsumer tokenIdConsumer) {
+		if (text.isEmpty()) {
+			return 0;
+		}
+		final Buffers buffers = this.buffers.get();
+		buffers.ensureCapacity(text.length() + 1);
+		final int[] symbols = buffers.symbols;
+		int symbolCount = 0;
+		if (this.prependSpace) {
+			symbols[symbolCount++] = symbol(SPACE_SYMBOL);
+		}
+		for (int i = 0; i < text.length(); i++) {
+			final char character = text.charAt(i);
+			final int codePoint;
+			if (Character.isHighSurrogate(character) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+				codePoint = Character.toCodePoint(character, text.charAt(++i));
+			} else {
+				codePoint = character == ' ' ? SPACE_SYMBOL : character;
+			}
+			symbols[symbolCount++] = symbol(codePoint);
+		}
+		return merge(buffers, symbolCount, tokenIdConsumer);
+	}
+
+	private int symbol(int codePoint) {
+		return this.idByCodePoint.get(codePoint, -(codePoint + 1));
+	}
+
+	private int merge(Buffers buffers, int symbolCount, IntConsumer tokenIdConsumer) {
+		final int[] symbols = buffers.symbols;
+		final int[] previousIndices = buffers.previousIndices;
+		final int[] nextIndices = buffers.nextIndices;
+		buffers.mergeCount = 0;
+		for (int i = 0; i < symbolCount; i++) {
+			previousIndices[i] = i - 1;
+			nextIndices[i] = i + 1 < symbolCount ? i + 1 : NONE;
+			if (i + 1 < symbolCount) {
+				buffers.pushMerge(rank(symbols[i], symbols[i + 1]), i);
+			}
+		}
+		while (buffers.mergeCount > 0) {
+			final long merge = buffers.pollMerge();
+			final int rank = (int) (merge >>> 32);
+			final int index = (int) merge;
+			final int nextIndex = nextIndices[index];
+			// merges of symbols that were merged since are outdated
+			if (nextIndex == NONE || rank(symbols[index], symbols[nextIndex]) != rank) {
+				continue;
+			}
+			symbols[index] = this.mergedIdByRank[rank];
+			symbols[nextIndex] = REMOVED;
+			final int afterIndex = nextIndices[nextIndex];
+			nextIndices[index] = afterIndex;
+			if (afterIndex != NONE) {
+				previousIndices[afterIndex] = index;
+				buffers.pushMerge(rank(symbols[index], symbols[afterIndex]), index);
+			}
+			final int previousIndex = previousIndices[index];
+			if (previousIndex != NONE) {
+				buffers.pushMerge(rank(symbols[previousIndex], symbols[index]), previousIndex);
+			}
+		}
+		int count = 0;
+		for (int i = 0; i != NONE; i = nextIndices[i]) {
+			final int symbol = symbols[i];
+			if (symbol >= 0) {
+				count++;
+				if (tokenIdConsumer != null) {
+					tokenIdConsumer.accept(symbol);
+				}
+			} else {
+				count += emitByteFallback(-symbol - 1, tokenIdConsumer);
+			}
+		}
+		return count;
+	}
+
+	private int rank(int leftSymbol, int rightSymbol) {
+		if (leftSymbol < 0 || rightSymbol < 0) {
+			return NO_MERGE;
+		}
+		return this.rankByPair.get(pairKey(leftSymbol, rightSymbol), NO_MERGE);
+	}
+
+	/**
+	 * Emits the UTF-8 bytes of the code point (a lone surrogate is encoded as '?' like {@link String#getBytes(java.nio.charset.Charset)} does).
+	 */
+	private int emitByteFallback(int codePoint, IntConsumer tokenIdConsumer) {
+		if (this.byteFallbackIds == null) {
+			if (tokenIdConsumer != null) {
+				tokenIdConsumer.accept(this.unknownId);
+			}
+			return 1;
+		}
+		if (codePoint < 0x80) {
+			emitByte(codePoint, tokenIdConsumer);
+			return 1;
+		} else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+			emitByte('?', tokenIdConsumer);
+			return 1;
+		} else if (codePoint < 0x800) {
+			emitByte(0xC0 | codePoint >> 6, tokenIdConsumer);
+			emitByte(0x80 | codePoint & 0x3F, tokenIdConsumer);
+			return 2;
+		} else if (codePoint < 0x10000) {
+			emitByte(0xE0 | codePoint >> 12, tokenIdConsumer);
+			emitByte(0x80 | codePoint >> 6 & 0x3F, tokenIdConsumer);
+			emitByte(0x80 | codePoint & 0x3F, tokenIdConsumer);
+			return 3;
+		} else {
+			emitByte(0xF0 | codePoint >> 18, tokenIdConsumer);
+			emitByte(0x80 | codePoint >> 12 & 0x3F, tokenIdConsumer);
+			emitByte(0x80 | codePoint >> 6 & 0x3F, tokenIdConsumer);
+			emitByte(0x80 | codePoint & 0x3F, tokenIdConsumer);
+			return 4;
+		}
+	}
+
+	private void emitByte(int value, IntConsumer tokenIdConsumer) {
+		if (tokenIdConsumer != null) {
+			tokenIdConsumer.accept(this.byteFallbackIds[value]);
+		}
+	}
+
+	private static long pairKey(int leftId, int rightId) {
+		return (long) leftId << 32 | rightId & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Loads the BPE model of a Hugging Face tokenizer.json of a SentencePiece tokenizer.
+	 */
+	public static SentencePieceTokenizer loadHuggingFace(Json tokenizerJson) {
+		final Json modelJson = tokenizerJson.at("model");
+		final Map<String, Json> vocabulary = modelJson.at("vocab").asJsonMap();
+		final LongIntTable idByCodePoint = new LongIntTable(vocabulary.size());
+		for (final Map.Entry<String, Json> entry : vocabulary.entrySet()) {
+			final String token = entry.getKey();
+			if (token.codePointCount(0, token.length()) == 1) {
+				idByCodePoint.put(token.codePointAt(0), entry.getValue().asInteger());
+			}
+		}
+		int[] byteFallbackIds = null;
+		if (modelJson.at("byte_fallback", false).asBoolean()) {
+			byteFallbackIds = new int[256];
+			for (int value = 0; value < 256; value++) {
+				final Json idJson = vocabulary.get(String.format("<0x%02X>", value));
+				byteFallbackIds[value] = idJson != null ? idJson.asInteger() : UNKNOWN;
+			}
+		}
+		final List<Json> merges = modelJson.at("merges").asJsonList();
+		final LongIntTable rankByPair = new LongIntTable(merges.size());
+		final int[] mergedIdByRank = new int[merges.size()];
+		for (int rank = 0; rank < merges.size(); rank++) {
+			final Json mergeJson = merges.get(rank);
+			final String[] pair = mergeJson.isArray()
+					? new String[] { mergeJson.at(0).asString(), mergeJson.at(1).asString() }
+					: mergeJson.asString().split(" ", 2);
+			final Json leftIdJson = vocabulary.get(pair[0]);
+			final Json rightIdJson = vocabulary.get(pair[1]);
+			final Json mergedIdJson = vocabulary.get(pair[0] + pair[1]);
+			if (leftIdJson != null && rightIdJson != null && mergedIdJson != null) {
+				final long key = pairKey(leftIdJson.asInteger(), rightIdJson.asInteger());
+				if (rankByPair.get(key, NO_MERGE) == NO_MERGE) {
+					rankByPair.put(key, rank);
+				}
+				mergedIdByRank[rank] = mergedIdJson.asInteger();
+			}
+		}
+		final Json unknownTokenJson = modelJson.at("unk_token");
+		final Json unknownIdJson = unknownTokenJson != null && unknownTokenJson.isString() ? vocabulary.get(unknownTokenJson.asString()) : null;
+		final String normalizationString = String.valueOf(tokenizerJson.at("normalizer")) + tokenizerJson.at("pre_tokenizer");
+		final boolean prependSpace = normalizationString.contains("\"prepend_scheme\":\"always\"") || normalizationString.contains("\"prepend\":\"▁\"") || normalizationString.contains("\"add_prefix_space\":true");
+		return new SentencePieceTokenizer(idByCodePoint, rankByPair, mergedIdByRank, byteFallbackIds, unknownIdJson != null ? unknownIdJson.asInteger() : UNKNOWN, prependSpace);
+	}
+
+	/**
+	 * @return true if the tokenizer.json describes a SentencePiece model (and not a byte level one)
+	 */
+	public static boolean isSentencePiece(Json tokenizerJson) {
+		final Json modelJson = tokenizerJson.at("model");
+		return modelJson.at("byte_fallback", false).asBoolean() || modelJson.at("vocab").has("▁");
+	}
+}
@@ -0,0 +1,110 @@
+package de.hetzge.eclipse.aicoder.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free HDR style histogram of latencies in microseconds. The values are counted in log-linear buckets (16 sub buckets per power of two), so recording is a single atomic increment and
+ * every percentile is accurate to about 6%, independent of the number of samples.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts;
+	private final LongAdder totalCount;
+	private final LongAdder totalMicros;
+	private final AtomicLong maxMicros;
+
+	public LatencyHistogram() {
+		this.counts = new AtomicLongArray(BUCKET_COUNT);
+		this.totalCount = new LongAdder();
+		this.totalMicros = new LongAdder();
+		this.maxMicros = new AtomicLong();
+	}
+
+	public record Bucket(long upperBoundMicros, long count) {
+	}
+
+	public void recordNanos(long nanos) {
+		final long micros = Math.max(0, nanos / 1000);
+		this.counts.incrementAndGet(getBucketIndex(micros));
+		this.totalCount.increment();
+		this.totalMicros.add(micros);
+		this.maxMicros.accumulateAndGet(micros, Math::max);
+	}
+
+	public long getCount() {
+		return this.totalCount.sum();
+	}
+
+	public long getTotalMicros() {
+		return this.totalMicros.sum();
+	}
+
+	public long getMaxMicros() {
+		return this.maxMicros.get();
+	}
+
+	public double getMeanMicros() {
+		final long count = getCount();
+		return count > 0 ? (double) getTotalMicros() / count : 0;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value that is equivalent (same bucket) to the value at the given percentile
+	 */
+	public long getValueAtPercentile(double percentile) {
+		final long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+		final long targetCount = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long cumulativeCount = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumulativeCount += this.counts.get(i);
+			if (cumulativeCount >= targetCount) {
+				return Math.min(getUpperBound(i), getMaxMicros());
+			}
+		}
+		return getMaxMicros();
+	}
+
+	/**
+	 * @return the non empty buckets in ascending order
+	 */
+	public List<Bucket> getBuckets() {
+		final List<Bucket> buckets = new ArrayList<>();
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			final long count = this.counts.get(i);
+			if (count > 0) {
+				buckets.add(new Bucket(getUpperBound(i), count));
+			}
+		}
+		return buckets;
+	}
+
+	static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		final int subBucket = (int) (value >>> shift);
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket - SUB_BUCKET_COUNT;
+	}
+
+	static long getUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		final int shift = index / SUB_BUCKET_COUNT - 1;
+		final long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,113 @@
+package de.hetzge.eclipse.aicoder.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mjson.Json;
+
+/**
+ * Latency histograms per {@link LatencyStage}, detail (for example the context type) and model. Recording only looks up the histogram and increments a counter, so it can be called on the
+ * hot path.
+ */
+public enum LatencyMetrics {
+	INSTANCE;
+
+	private static final String METRIC_NAME = "aicoder_stage_latency_seconds";
+	private static final Comparator<Key> KEY_COMPARATOR = Comparator.comparing(Key::stage)
+			.thenComparing(Key::detail)
+			.thenComparing(Key::model);
+
+	private final Map<Key, LatencyHistogram> histogramByKey = new ConcurrentHashMap<>();
+
+	public record Key(LatencyStage stage, String detail, String model) {
+	}
+
+	public void record(LatencyStage stage, String model, Duration duration) {
+		record(stage, "", model, duration.toNanos());
+	}
+
+	public void record(LatencyStage stage, String model, long nanos) {
+		record(stage, "", model, nanos);
+	}
+
+	public void record(LatencyStage stage, String detail, String model, long nanos) {
+		this.histogramByKey.computeIfAbsent(new Key(stage, detail, model), key -> new LatencyHistogram()).recordNanos(nanos);
+	}
+
+	/**
+	 * @return the histograms sorted by stage, detail and model
+	 */
+	public Map<Key, LatencyHistogram> getHistograms() {
+		final Map<Key, LatencyHistogram> histograms = new TreeMap<>(KEY_COMPARATOR);
+		histograms.putAll(this.histogramByKey);
+		return histograms;
+	}
+
+	public void reset() {
+		this.histogramByKey.clear();
+	}
+
+	public void exportJson(Path path) throws IOException {
+		final Json json = Json.array();
+		getHistograms().forEach((key, histogram) -> {
+			final Json buckets = Json.array();
+			histogram.getBuckets().forEach(bucket -> buckets.add(Json.object()
+					.set("upperBoundMicros", bucket.upperBoundMicros())
+					.set("count", bucket.count())));
+			json.add(Json.object()
+					.set("stage", key.stage().name())
+					.set("detail", key.detail())
+					.set("model", key.model())
+					.set("count", histogram.getCount())
+					.set("meanMicros", histogram.getMeanMicros())
+					.set("p50Micros", histogram.getValueAtPercentile(50))
+					.set("p95Micros", histogram.getValueAtPercentile(95))
+					.set("p99Micros", histogram.getValueAtPercentile(99))
+					.set("maxMicros", histogram.getMaxMicros())
+					.set("buckets", buckets));
+		});
+		Files.writeString(path, json.toString(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the histograms in the OpenMetrics text format, so that they can be read by Prometheus compatible tools (for example via the node exporter textfile collector).
+	 */
+	public void exportOpenMetrics(Path path) throws IOException {
+		Files.writeString(path, toOpenMetrics(), StandardCharsets.UTF_8);
+	}
+
+	String toOpenMetrics() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("# TYPE ").append(METRIC_NAME).append(" histogram\n");
+		builder.append("# UNIT ").append(METRIC_NAME).append(" seconds\n");
+		builder.append("# HELP ").append(METRIC_NAME).append(" Latency of the AI Coder completion stages.\n");
+		getHistograms().forEach((key, histogram) -> {
+			final String labels = String.format("stage=\"%s\",detail=\"%s\",model=\"%s\"", key.stage().name().toLowerCase(), escapeLabelValue(key.detail()), escapeLabelValue(key.model()));
+			long cumulativeCount = 0;
+			for (final LatencyHistogram.Bucket bucket : histogram.getBuckets()) {
+				cumulativeCount += bucket.count();
+				builder.append(String.format("%s_bucket{%s,le=\"%s\"} %d\n", METRIC_NAME, labels, toSeconds(bucket.upperBoundMicros()), cumulativeCount));
+			}
+			builder.append(String.format("%s_bucket{%s,le=\"+Inf\"} %d\n", METRIC_NAME, labels, histogram.getCount()));
+			builder.append(String.format("%s_count{%s} %d\n", METRIC_NAME, labels, histogram.getCount()));
+			builder.append(String.format("%s_sum{%s} %s\n", METRIC_NAME, labels, toSeconds(histogram.getTotalMicros())));
+		});
+		builder.append("# EOF\n");
+		return builder.toString();
+	}
+
+	private static String toSeconds(long micros) {
+		return String.valueOf(micros / 1_000_000.0);
+	}
+
+	private static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,139 @@
+package de.hetzge.eclipse.aicoder.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ColumnLabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.TableViewerColumn;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.ui.part.ViewPart;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+
+/**
+ * Shows the percentiles of the {@link LatencyMetrics} and exports them as JSON or OpenMetrics file.
+ */
+public class LatencyMetricsView extends ViewPart {
+
+	public static final String ID = "de.hetzge.eclipse.aicoder.LatencyMetricsView";
+
+	private static final int REFRESH_INTERVAL_MS = 2000;
+
+	private TableViewer viewer;
+
+	@Override
+	public void createPartControl(Composite parent) {
+		parent.setLayout(new FillLayout());
+		this.viewer = new TableViewer(parent, SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL | SWT.FULL_SELECTION | SWT.BORDER);
+		final Table table = this.viewer.getTable();
+		table.setHeaderVisible(true);
+		table.setLinesVisible(true);
+		this.viewer.setContentProvider(ArrayContentProvider.getInstance());
+		createColumn("Stage", 130, entry -> entry.getKey().stage().getLabel());
+		createColumn("Detail", 160, entry -> entry.getKey().detail());
+		createColumn("Model", 200, entry -> entry.getKey().model());
+		createColumn("Count", 60, entry -> String.valueOf(entry.getValue().getCount()));
+		createColumn("Mean", 70, entry -> formatMillis(entry.getValue().getMeanMicros()));
+		createColumn("p50", 70, entry -> formatMillis(entry.getValue().getValueAtPercentile(50)));
+		createColumn("p95", 70, entry -> formatMillis(entry.getValue().getValueAtPercentile(95)));
+		createColumn("p99", 70, entry -> formatMillis(entry.getValue().getValueAtPercentile(99)));
+		createColumn("Max", 70, entry -> formatMillis(entry.getValue().getMaxMicros()));
+		fillLocalToolBar(getViewSite().getActionBars().getToolBarManager());
+		refresh();
+		scheduleRefresh();
+	}
+
+	private void createColumn(String title, int width, Function<Map.Entry<LatencyMetrics.Key, LatencyHistogram>, String> textFunction) {
+		final TableViewerColumn column = new TableViewerColumn(this.viewer, SWT.NONE);
+		column.getColumn().setText(title);
+		column.getColumn().setWidth(width);
+		column.getColumn().setResizable(true);
+		column.setLabelProvider(new ColumnLabelProvider() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public String getText(Object element) {
+				return textFunction.apply((Map.Entry<LatencyMetrics.Key, LatencyHistogram>) element);
+			}
+		});
+	}
+
+	private void fillLocalToolBar(IToolBarManager manager) {
+		manager.add(new Action("Refresh") {
+			@Override
+			public void run() {
+				refresh();
+			}
+		});
+		manager.add(new Action("Reset") {
+			@Override
+			public void run() {
+				LatencyMetrics.INSTANCE.reset();
+				refresh();
+			}
+		});
+		manager.add(new Action("Export") {
+			@Override
+			public void run() {
+				export();
+			}
+		});
+	}
+
+	private void export() {
+		final FileDialog dialog = new FileDialog(this.viewer.getControl().getShell(), SWT.SAVE);
+		dialog.setText("Export latency metrics");
+		dialog.setFilterNames(new String[] { "JSON (*.json)", "OpenMetrics (*.txt)" });
+		dialog.setFilterExtensions(new String[] { "*.json", "*.txt" });
+		dialog.setFileName("aicoder-latency.json");
+		dialog.setOverwrite(true);
+		final String fileName = dialog.open();
+		if (fileName == null) {
+			return;
+		}
+		try {
+			final Path path = Path.of(fileName);
+			if (fileName.endsWith(".json")) {
+				LatencyMetrics.INSTANCE.exportJson(path);
+			} else {
+				LatencyMetrics.INSTANCE.exportOpenMetrics(path);
+			}
+		} catch (final IOException exception) {
+			AiCoderActivator.log().error("Failed to export latency metrics", exception);
+			MessageDialog.openError(this.viewer.getControl().getShell(), "AI Coder Latency", "Failed to export: " + exception.getMessage());
+		}
+	}
+
+	private void scheduleRefresh() {
+		this.viewer.getControl().getDisplay().timerExec(REFRESH_INTERVAL_MS, () -> {
+			if (this.viewer.getControl().isDisposed()) {
+				return;
+			}
+			refresh();
+			scheduleRefresh();
+		});
+	}
+
+	public void refresh() {
+		this.viewer.setInput(LatencyMetrics.INSTANCE.getHistograms().entrySet().toArray());
+	}
+
+	@Override
+	public void setFocus() {
+		this.viewer.getControl().setFocus();
+	}
+
+	private static String formatMillis(double micros) {
+		return String.format("%.1f ms", micros / 1000.0);
+	}
+}
@@ -0,0 +1,25 @@
+package de.hetzge.eclipse.aicoder.metrics;
+
+/**
+ * The stages of a completion from the keystroke to the painted ghost text.
+ */
+public enum LatencyStage {
+	DEBOUNCE("Debounce"),
+	CONTEXT("Context"),
+	RENDER("Render"),
+	SERIALIZATION("Serialization"),
+	TIME_TO_FIRST_BYTE("Time to first byte"),
+	GENERATION("Generation"),
+	POST_PROCESSING("Post processing"),
+	PAINT("Paint");
+
+	private final String label;
+
+	private LatencyStage(String label) {
+		this.label = label;
+	}
+
+	public String getLabel() {
+		return this.label;
+	}
+}
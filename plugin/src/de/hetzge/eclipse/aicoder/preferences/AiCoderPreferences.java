@@ -15,6 +15,7 @@ import mjson.Json;
 public final class AiCoderPreferences extends AbstractPreferenceInitializer {
 
 	public static final String CODESTRAL_API_KEY_KEY = "de.hetzge.eclipse.aicoder.codestral_api_key";
+	public static final String CODESTRAL_BASE_URL_KEY = "de.hetzge.eclipse.aicoder.codestral_base_url";
 	public static final String OLLAMA_BASE_URL_KEY = "de.hetzge.eclipse.aicoder.ollama_base_url";
 	public static final String OPENAI_BASE_URL_KEY = "de.hetzge.eclipse.aicoder.openai_base_url";
 	public static final String OPENAI_API_KEY_KEY = "de.hetzge.eclipse.aicoder.openai_api_key";
@@ -47,11 +48,39 @@ public final class AiCoderPreferences extends AbstractPreferenceInitializer {
 	public static final String PSEUDO_FIM_SYSTEM_PROMPT_KEY = "de.hetzge.eclipse.aicoder.pseudo_fim_system_prompt";
 	public static final String TIMEOUT_KEY = "de.hetzge.eclipse.aicoder.timeout";
 	public static final String INCEPTIONLABS_API_KEY_KEY = "de.hetzge.eclipse.aicoder.inceptionlabs_api_key";
+	public static final String ENABLE_STREAMING_KEY = "de.hetzge.eclipse.aicoder.enable_streaming";
+	public static final String RESPONSE_CACHE_SIZE_KEY = "de.hetzge.eclipse.aicoder.response_cache_size";
+	public static final String ENABLE_SPECULATIVE_PREFETCH_KEY = "de.hetzge.eclipse.aicoder.enable_speculative_prefetch";
+	public static final String FILL_IN_MIDDLE_HEDGE_PROVIDER_KEY = "de.hetzge.eclipse.aicoder.fill_in_middle_hedge_provider";
+	public static final String FILL_IN_MIDDLE_HEDGE_MODEL_KEY = "de.hetzge.eclipse.aicoder.fill_in_middle_hedge_model";
+	public static final String HEDGE_DELAY_IN_MS_KEY = "de.hetzge.eclipse.aicoder.hedge_delay_in_ms";
+	public static final String ENABLE_ADAPTIVE_DEBOUNCE_KEY = "de.hetzge.eclipse.aicoder.enable_adaptive_debounce";
+	public static final String FILL_IN_MIDDLE_FALLBACKS_KEY = "de.hetzge.eclipse.aicoder.fill_in_middle_fallbacks";
+	public static final String QUICK_FIX_FALLBACKS_KEY = "de.hetzge.eclipse.aicoder.quick_fix_fallbacks";
+	public static final String GENERATE_FALLBACKS_KEY = "de.hetzge.eclipse.aicoder.generate_fallbacks";
+	public static final String EDIT_FALLBACKS_KEY = "de.hetzge.eclipse.aicoder.edit_fallbacks";
+	public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD_KEY = "de.hetzge.eclipse.aicoder.circuit_breaker_failure_threshold";
+	public static final String CANDIDATE_COUNT_KEY = "de.hetzge.eclipse.aicoder.candidate_count";
+	public static final String FILL_IN_MIDDLE_CONTEXT_WINDOW_KEY = "de.hetzge.eclipse.aicoder.fill_in_middle_context_window";
+	public static final String QUICK_FIX_CONTEXT_WINDOW_KEY = "de.hetzge.eclipse.aicoder.quick_fix_context_window";
+	public static final String GENERATE_CONTEXT_WINDOW_KEY = "de.hetzge.eclipse.aicoder.generate_context_window";
+	public static final String EDIT_CONTEXT_WINDOW_KEY = "de.hetzge.eclipse.aicoder.edit_context_window";
+	public static final String TOKENIZERS_FOLDER_KEY = "de.hetzge.eclipse.aicoder.tokenizers_folder";
+	public static final String ENABLE_CACHE_FRIENDLY_CONTEXT_LAYOUT_KEY = "de.hetzge.eclipse.aicoder.enable_cache_friendly_context_layout";
+	public static final String ENABLE_OLLAMA_WARMUP_KEY = "de.hetzge.eclipse.aicoder.enable_ollama_warmup";
+	public static final String OLLAMA_KEEP_ALIVE_MINUTES_KEY = "de.hetzge.eclipse.aicoder.ollama_keep_alive_minutes";
+	public static final String OLLAMA_RELEASE_AFTER_IDLE_MINUTES_KEY = "de.hetzge.eclipse.aicoder.ollama_release_after_idle_minutes";
+	public static final String HISTORY_MAX_ENTRIES_KEY = "de.hetzge.eclipse.aicoder.history_max_entries";
+	public static final String HISTORY_MAX_AGE_DAYS_KEY = "de.hetzge.eclipse.aicoder.history_max_age_days";
+	public static final String HISTORY_MAX_SIZE_MB_KEY = "de.hetzge.eclipse.aicoder.history_max_size_mb";
+	public static final String ENABLE_CONTEXT_PRECOMPUTATION_KEY = "de.hetzge.eclipse.aicoder.enable_context_precomputation";
+	public static final String FILE_TREE_MAX_SIZE_KEY = "de.hetzge.eclipse.aicoder.file_tree_max_size";
 
 	@Override
 	public void initializeDefaultPreferences() {
 		final IPreferenceStore store = getStore();
 		store.setDefault(CODESTRAL_API_KEY_KEY, "");
+		store.setDefault(CODESTRAL_BASE_URL_KEY, "https://codestral.mistral.ai");
 		store.setDefault(OLLAMA_BASE_URL_KEY, "http://localhost:11434");
 		store.setDefault(OPENAI_BASE_URL_KEY, "https://api.openai.com");
 		store.setDefault(OPENAI_API_KEY_KEY, "");
@@ -84,12 +113,43 @@ public final class AiCoderPreferences extends AbstractPreferenceInitializer {
 		store.setDefault(PSEUDO_FIM_SYSTEM_PROMPT_KEY, LlmPromptTemplates.pseudoFimCodeSystemPrompt());
 		store.setDefault(TIMEOUT_KEY, Duration.ofMinutes(5).toMillis());
 		store.setDefault(INCEPTIONLABS_API_KEY_KEY, "");
+		store.setDefault(ENABLE_STREAMING_KEY, true);
+		store.setDefault(RESPONSE_CACHE_SIZE_KEY, 100);
+		store.setDefault(ENABLE_SPECULATIVE_PREFETCH_KEY, false);
+		store.setDefault(FILL_IN_MIDDLE_HEDGE_PROVIDER_KEY, LlmProvider.NONE.name());
+		store.setDefault(FILL_IN_MIDDLE_HEDGE_MODEL_KEY, "");
+		store.setDefault(HEDGE_DELAY_IN_MS_KEY, 300);
+		store.setDefault(ENABLE_ADAPTIVE_DEBOUNCE_KEY, true);
+		store.setDefault(FILL_IN_MIDDLE_FALLBACKS_KEY, "");
+		store.setDefault(QUICK_FIX_FALLBACKS_KEY, "");
+		store.setDefault(GENERATE_FALLBACKS_KEY, "");
+		store.setDefault(EDIT_FALLBACKS_KEY, "");
+		store.setDefault(CIRCUIT_BREAKER_FAILURE_THRESHOLD_KEY, 3);
+		store.setDefault(CANDIDATE_COUNT_KEY, 1);
+		store.setDefault(FILL_IN_MIDDLE_CONTEXT_WINDOW_KEY, 0);
+		store.setDefault(QUICK_FIX_CONTEXT_WINDOW_KEY, 0);
+		store.setDefault(GENERATE_CONTEXT_WINDOW_KEY, 0);
+		store.setDefault(EDIT_CONTEXT_WINDOW_KEY, 0);
+		store.setDefault(TOKENIZERS_FOLDER_KEY, "");
+		store.setDefault(ENABLE_CACHE_FRIENDLY_CONTEXT_LAYOUT_KEY, false);
+		store.setDefault(ENABLE_OLLAMA_WARMUP_KEY, true);
+		store.setDefault(OLLAMA_KEEP_ALIVE_MINUTES_KEY, 30);
+		store.setDefault(OLLAMA_RELEASE_AFTER_IDLE_MINUTES_KEY, 15);
+		store.setDefault(HISTORY_MAX_ENTRIES_KEY, 1000);
+		store.setDefault(HISTORY_MAX_AGE_DAYS_KEY, 30);
+		store.setDefault(HISTORY_MAX_SIZE_MB_KEY, 100);
+		store.setDefault(ENABLE_CONTEXT_PRECOMPUTATION_KEY, true);
+		store.setDefault(FILE_TREE_MAX_SIZE_KEY, 8000);
 	}
 
 	public static String getCodestralApiKey() {
 		return getStore().getString(CODESTRAL_API_KEY_KEY);
 	}
 
+	public static String getCodestralBaseUrl() {
+		return getStore().getString(CODESTRAL_BASE_URL_KEY);
+	}
+
 	public static String getOllamaBaseUrl() {
 		return getStore().getString(OLLAMA_BASE_URL_KEY);
 	}
@@ -241,10 +301,121 @@ public final class AiCoderPreferences extends AbstractPreferenceInitializer {
 	}
 
 	public static Duration getTimeout() {
-		return Duration.ofSeconds(getStore().getInt(TIMEOUT_KEY));
+		return Duration.ofMillis(getStore().getInt(TIMEOUT_KEY));
 	}
 
 	public static String getInceptionLabsApiKey() {
 		return getStore().getString(INCEPTIONLABS_API_KEY_KEY);
 	}
-}
\ No newline at end of file
+
+	public static boolean isStreamingEnabled() {
+		return getStore().getBoolean(ENABLE_STREAMING_KEY);
+	}
+
+	public static int getResponseCacheSize() {
+		return getStore().getInt(RESPONSE_CACHE_SIZE_KEY);
+	}
+
+	public static boolean isSpeculativePrefetchEnabled() {
+		return getStore().getBoolean(ENABLE_SPECULATIVE_PREFETCH_KEY);
+	}
+
+	public static LlmProvider getFillInMiddleHedgeProvider() {
+		return LlmProvider.valueOf(getStore().getString(FILL_IN_MIDDLE_HEDGE_PROVIDER_KEY));
+	}
+
+	public static String getFillInMiddleHedgeModel() {
+		return getStore().getString(FILL_IN_MIDDLE_HEDGE_MODEL_KEY);
+	}
+
+	public static Duration getHedgeDelay() {
+		return Duration.ofMillis(getStore().getInt(HEDGE_DELAY_IN_MS_KEY));
+	}
+
+	public static boolean isAdaptiveDebounceEnabled() {
+		return getStore().getBoolean(ENABLE_ADAPTIVE_DEBOUNCE_KEY);
+	}
+
+	public static String getFillInMiddleFallbacks() {
+		return getStore().getString(FILL_IN_MIDDLE_FALLBACKS_KEY);
+	}
+
+	public static String getQuickFixFallbacks() {
+		return getStore().getString(QUICK_FIX_FALLBACKS_KEY);
+	}
+
+	public static String getGenerateFallbacks() {
+		return getStore().getString(GENERATE_FALLBACKS_KEY);
+	}
+
+	public static String getEditFallbacks() {
+		return getStore().getString(EDIT_FALLBACKS_KEY);
+	}
+
+	public static int getCircuitBreakerFailureThreshold() {
+		return Math.max(1, getStore().getInt(CIRCUIT_BREAKER_FAILURE_THRESHOLD_KEY));
+	}
+
+	public static int getCandidateCount() {
+		return Math.max(1, getStore().getInt(CANDIDATE_COUNT_KEY));
+	}
+
+	public static int getFillInMiddleContextWindow() {
+		return getStore().getInt(FILL_IN_MIDDLE_CONTEXT_WINDOW_KEY);
+	}
+
+	public static int getQuickFixContextWindow() {
+		return getStore().getInt(QUICK_FIX_CONTEXT_WINDOW_KEY);
+	}
+
+	public static int getGenerateContextWindow() {
+		return getStore().getInt(GENERATE_CONTEXT_WINDOW_KEY);
+	}
+
+	public static int getEditContextWindow() {
+		return getStore().getInt(EDIT_CONTEXT_WINDOW_KEY);
+	}
+
+	public static String getTokenizersFolder() {
+		return getStore().getString(TOKENIZERS_FOLDER_KEY);
+	}
+
+	public static boolean isCacheFriendlyContextLayoutEnabled() {
+		return getStore().getBoolean(ENABLE_CACHE_FRIENDLY_CONTEXT_LAYOUT_KEY);
+	}
+
+	public static boolean isOllamaWarmupEnabled() {
+		return getStore().getBoolean(ENABLE_OLLAMA_WARMUP_KEY);
+	}
+
+	public static int getOllamaKeepAliveMinutes() {
+		return Math.max(1, getStore().getInt(OLLAMA_KEEP_ALIVE_MINUTES_KEY));
+	}
+
+	public static int getOllamaReleaseAfterIdleMinutes() {
+		return getStore().getInt(OLLAMA_RELEASE_AFTER_IDLE_MINUTES_KEY);
+	}
+
+	public static int getHistoryMaxEntries() {
+		return Math.max(1, getStore().getInt(HISTORY_MAX_ENTRIES_KEY));
+	}
+
+	/**
+	 * @return the maximum age of history entries in days or 0 for no limit
+	 */
+	public static int getHistoryMaxAgeDays() {
+		return Math.max(0, getStore().getInt(HISTORY_MAX_AGE_DAYS_KEY));
+	}
+
+	public static long getHistoryMaxSizeBytes() {
+		return Math.max(1, getStore().getInt(HISTORY_MAX_SIZE_MB_KEY)) * 1024L * 1024L;
+	}
+
+	public static boolean isContextPrecomputationEnabled() {
+		return getStore().getBoolean(ENABLE_CONTEXT_PRECOMPUTATION_KEY);
+	}
+
+	public static int getFileTreeMaxSize() {
+		return Math.max(1, getStore().getInt(FILE_TREE_MAX_SIZE_KEY));
+	}
+}
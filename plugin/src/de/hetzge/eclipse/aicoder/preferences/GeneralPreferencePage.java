@@ -3,6 +3,7 @@ package de.hetzge.eclipse.aicoder.preferences;
 import java.time.Duration;
 
 import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.DirectoryFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.SWT;
@@ -12,6 +13,7 @@ import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
 import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.llm.LlmTokenizers;
 
 public class GeneralPreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
 
@@ -50,6 +52,18 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage implements
 				"Enable Pseudo FIM",
 				generalGroup));
 
+		// Streaming setting
+		addField(new BooleanFieldEditor(
+				AiCoderPreferences.ENABLE_STREAMING_KEY,
+				"Enable streaming (fill in the middle)",
+				generalGroup));
+
+		// Speculative prefetch setting
+		addField(new BooleanFieldEditor(
+				AiCoderPreferences.ENABLE_SPECULATIVE_PREFETCH_KEY,
+				"Prefetch next completion after accept",
+				generalGroup));
+
 		addField(new BooleanFieldEditor(
 				AiCoderPreferences.ONLY_ON_CHANGE_AUTOCOMPLETE_KEY,
 				"Only on change autocomplete",
@@ -68,6 +82,18 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage implements
 				"Cleanup code on apply",
 				generalGroup));
 
+		// Context layout
+		addField(new BooleanFieldEditor(
+				AiCoderPreferences.ENABLE_CACHE_FRIENDLY_CONTEXT_LAYOUT_KEY,
+				"Order context from stable to volatile (prompt caching)",
+				generalGroup));
+
+		// Context precomputation
+		addField(new BooleanFieldEditor(
+				AiCoderPreferences.ENABLE_CONTEXT_PRECOMPUTATION_KEY,
+				"Precompute cursor independent context in the background",
+				generalGroup));
+
 		// Context size settings
 		final IntegerFieldEditor maxPrefixSizeEditor = new IntegerFieldEditor(
 				AiCoderPreferences.MAX_PREFIX_SIZE_KEY,
@@ -83,6 +109,13 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage implements
 		maxSuffixSizeEditor.setValidRange(0, 10000);
 		addField(maxSuffixSizeEditor);
 
+		final IntegerFieldEditor fileTreeMaxSizeEditor = new IntegerFieldEditor(
+				AiCoderPreferences.FILE_TREE_MAX_SIZE_KEY,
+				"Maximum file tree size (characters):",
+				generalGroup);
+		fileTreeMaxSizeEditor.setValidRange(100, 1000000);
+		addField(fileTreeMaxSizeEditor);
+
 		final IntegerFieldEditor maxTokensEditor = new IntegerFieldEditor(
 				AiCoderPreferences.MAX_TOKENS_KEY,
 				"Maximum tokens:",
@@ -90,6 +123,13 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage implements
 		maxTokensEditor.setValidRange(0, 10000);
 		addField(maxTokensEditor);
 
+		final IntegerFieldEditor candidateCountEditor = new IntegerFieldEditor(
+				AiCoderPreferences.CANDIDATE_COUNT_KEY,
+				"Completion candidates (cycle with Alt+[ and Alt+]):",
+				generalGroup);
+		candidateCountEditor.setValidRange(1, 5);
+		addField(candidateCountEditor);
+
 		final IntegerFieldEditor debounceInMsEditor = new IntegerFieldEditor(
 				AiCoderPreferences.DEBOUNCE_IN_MS_KEY,
 				"Debounce (in ms):",
@@ -97,6 +137,18 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage implements
 		debounceInMsEditor.setValidRange(0, 10000);
 		addField(debounceInMsEditor);
 
+		addField(new BooleanFieldEditor(
+				AiCoderPreferences.ENABLE_ADAPTIVE_DEBOUNCE_KEY,
+				"Adapt debounce to typing speed and LLM latency",
+				generalGroup));
+
+		final IntegerFieldEditor responseCacheSizeEditor = new IntegerFieldEditor(
+				AiCoderPreferences.RESPONSE_CACHE_SIZE_KEY,
+				"Response cache size (0 = disabled):",
+				generalGroup);
+		responseCacheSizeEditor.setValidRange(0, 10000);
+		addField(responseCacheSizeEditor);
+
 		// Timeout setting
 		final IntegerFieldEditor timeoutEditor = new IntegerFieldEditor(
 				AiCoderPreferences.TIMEOUT_KEY,
@@ -104,5 +156,56 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage implements
 				generalGroup);
 		timeoutEditor.setValidRange(0, (int) Duration.ofHours(1).toMillis());
 		addField(timeoutEditor);
+
+		final IntegerFieldEditor circuitBreakerFailureThresholdEditor = new IntegerFieldEditor(
+				AiCoderPreferences.CIRCUIT_BREAKER_FAILURE_THRESHOLD_KEY,
+				"Failures until a provider is skipped:",
+				generalGroup);
+		circuitBreakerFailureThresholdEditor.setValidRange(1, 100);
+		addField(circuitBreakerFailureThresholdEditor);
+
+		// Tokenizer settings group
+		final Group tokenizerGroup = new Group(getFieldEditorParent(), SWT.NONE);
+		tokenizerGroup.setText("Tokenizer");
+		tokenizerGroup.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		final DirectoryFieldEditor tokenizersFolderEditor = new DirectoryFieldEditor(
+				AiCoderPreferences.TOKENIZERS_FOLDER_KEY,
+				"Vocabularies folder:",
+				tokenizerGroup);
+		tokenizersFolderEditor.setEmptyStringAllowed(true);
+		tokenizersFolderEditor.getTextControl(tokenizerGroup).setToolTipText("Folder with tokenizer vocabularies (cl100k_base.tiktoken, o200k_base.tiktoken, mistral.json, llama.json, llama3.json, qwen.json). Empty for the plugin state location. Token counts are approximated if a vocabulary is missing.");
+		addField(tokenizersFolderEditor);
+
+		// History settings group
+		final Group historyGroup = new Group(getFieldEditorParent(), SWT.NONE);
+		historyGroup.setText("History");
+		historyGroup.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		final IntegerFieldEditor historyMaxEntriesEditor = new IntegerFieldEditor(
+				AiCoderPreferences.HISTORY_MAX_ENTRIES_KEY,
+				"Max entries:",
+				historyGroup);
+		historyMaxEntriesEditor.setValidRange(1, 1000000);
+		addField(historyMaxEntriesEditor);
+		final IntegerFieldEditor historyMaxAgeDaysEditor = new IntegerFieldEditor(
+				AiCoderPreferences.HISTORY_MAX_AGE_DAYS_KEY,
+				"Max age (in days, 0 = unlimited):",
+				historyGroup);
+		historyMaxAgeDaysEditor.setValidRange(0, 3650);
+		addField(historyMaxAgeDaysEditor);
+		final IntegerFieldEditor historyMaxSizeEditor = new IntegerFieldEditor(
+				AiCoderPreferences.HISTORY_MAX_SIZE_MB_KEY,
+				"Max size on disk (in MB):",
+				historyGroup);
+		historyMaxSizeEditor.setValidRange(1, 100000);
+		addField(historyMaxSizeEditor);
+	}
+
+	@Override
+	public boolean performOk() {
+		final boolean result = super.performOk();
+		LlmTokenizers.INSTANCE.reset();
+		LlmTokenizers.INSTANCE.preload();
+		AiCoderActivator.getDefault().getHistoryStore().applyRetention();
+		return result;
 	}
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import org.eclipse.jface.dialogs.Dialog;
 import org.eclipse.jface.layout.GridDataFactory;
 import org.eclipse.jface.preference.ComboFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionListener;
@@ -27,6 +28,8 @@ import de.hetzge.eclipse.aicoder.llm.LlmSelectorDialog;
 public class LlmPreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
 
 	private static final int LABEL_WIDTH = 100;
+	private static final String CONTEXT_WINDOW_TOOLTIP = "Context entries are dropped (lowest priority first) if the prompt would not fit into the context window of the LLM (0 = unlimited)";
+	private static final String FALLBACKS_TOOLTIP = "Comma separated LLMs (PROVIDER:model) that are tried in order if the LLM above times out or fails with 429/5xx";
 
 	public LlmPreferencePage() {
 		super(GRID);
@@ -56,6 +59,21 @@ public class LlmPreferencePage extends FieldEditorPreferencePage implements IWor
 				fillInMiddleModelGroup);
 		fillInMiddleModelEditor.getLabelControl(fillInMiddleModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
 		addField(fillInMiddleModelEditor);
+		final StringFieldEditor fillInMiddleFallbacksEditor = new StringFieldEditor(
+				AiCoderPreferences.FILL_IN_MIDDLE_FALLBACKS_KEY,
+				"Fallbacks:",
+				fillInMiddleModelGroup);
+		fillInMiddleFallbacksEditor.getLabelControl(fillInMiddleModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		fillInMiddleFallbacksEditor.getTextControl(fillInMiddleModelGroup).setToolTipText(FALLBACKS_TOOLTIP);
+		addField(fillInMiddleFallbacksEditor);
+		final IntegerFieldEditor fillInMiddleContextWindowEditor = new IntegerFieldEditor(
+				AiCoderPreferences.FILL_IN_MIDDLE_CONTEXT_WINDOW_KEY,
+				"Context window (tokens):",
+				fillInMiddleModelGroup);
+		fillInMiddleContextWindowEditor.getLabelControl(fillInMiddleModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		fillInMiddleContextWindowEditor.getTextControl(fillInMiddleModelGroup).setToolTipText(CONTEXT_WINDOW_TOOLTIP);
+		fillInMiddleContextWindowEditor.setValidRange(0, 10_000_000);
+		addField(fillInMiddleContextWindowEditor);
 		final Button fillInMiddleModelButton = new Button(fillInMiddleModelGroup, SWT.PUSH);
 		fillInMiddleModelButton.setText("Select LLM...");
 		fillInMiddleModelButton.setLayoutData(new GridData(SWT.END, SWT.CENTER, true, false, 2, 1));
@@ -71,6 +89,44 @@ public class LlmPreferencePage extends FieldEditorPreferencePage implements IWor
 				fillInMiddleModelEditor.setStringValue(llmOption.modelKey());
 			}
 		}));
+		final Group fillInMiddleHedgeModelGroup = new Group(getFieldEditorParent(), SWT.NONE);
+		fillInMiddleHedgeModelGroup.setText("Fill in middle hedge LLM (raced against the fill in middle LLM)");
+		fillInMiddleHedgeModelGroup.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		final ComboFieldEditor fillInMiddleHedgeProviderEditor = new ComboFieldEditor(
+				AiCoderPreferences.FILL_IN_MIDDLE_HEDGE_PROVIDER_KEY,
+				"Provider:",
+				getProviderEntryNamesAndValues(),
+				fillInMiddleHedgeModelGroup);
+		fillInMiddleHedgeProviderEditor.getLabelControl(fillInMiddleHedgeModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		addField(fillInMiddleHedgeProviderEditor);
+		final StringFieldEditor fillInMiddleHedgeModelEditor = new StringFieldEditor(
+				AiCoderPreferences.FILL_IN_MIDDLE_HEDGE_MODEL_KEY,
+				"Model:",
+				fillInMiddleHedgeModelGroup);
+		fillInMiddleHedgeModelEditor.getLabelControl(fillInMiddleHedgeModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		addField(fillInMiddleHedgeModelEditor);
+		final IntegerFieldEditor hedgeDelayEditor = new IntegerFieldEditor(
+				AiCoderPreferences.HEDGE_DELAY_IN_MS_KEY,
+				"Delay (ms):",
+				fillInMiddleHedgeModelGroup);
+		hedgeDelayEditor.getLabelControl(fillInMiddleHedgeModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		hedgeDelayEditor.setValidRange(0, 60000);
+		addField(hedgeDelayEditor);
+		final Button fillInMiddleHedgeModelButton = new Button(fillInMiddleHedgeModelGroup, SWT.PUSH);
+		fillInMiddleHedgeModelButton.setText("Select LLM...");
+		fillInMiddleHedgeModelButton.setLayoutData(new GridData(SWT.END, SWT.CENTER, true, false, 2, 1));
+		fillInMiddleHedgeModelButton.addSelectionListener(SelectionListener.widgetSelectedAdapter(event -> {
+			final LlmSelectorDialog dialog = new LlmSelectorDialog(getShell());
+			if (dialog.open() == Dialog.OK) {
+				final Optional<LlmOption> optionOptional = dialog.getResultOption();
+				if (optionOptional.isEmpty()) {
+					return;
+				}
+				final LlmOption llmOption = optionOptional.get();
+				setComboProvider(fillInMiddleHedgeModelGroup, fillInMiddleHedgeProviderEditor, llmOption);
+				fillInMiddleHedgeModelEditor.setStringValue(llmOption.modelKey());
+			}
+		}));
 		final Group quickFixModelGroup = new Group(getFieldEditorParent(), SWT.NONE);
 		quickFixModelGroup.setText("Quick fix LLM");
 		quickFixModelGroup.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
@@ -87,6 +143,21 @@ public class LlmPreferencePage extends FieldEditorPreferencePage implements IWor
 				quickFixModelGroup);
 		quickFixModelEditor.getLabelControl(quickFixModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
 		addField(quickFixModelEditor);
+		final StringFieldEditor quickFixFallbacksEditor = new StringFieldEditor(
+				AiCoderPreferences.QUICK_FIX_FALLBACKS_KEY,
+				"Fallbacks:",
+				quickFixModelGroup);
+		quickFixFallbacksEditor.getLabelControl(quickFixModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		quickFixFallbacksEditor.getTextControl(quickFixModelGroup).setToolTipText(FALLBACKS_TOOLTIP);
+		addField(quickFixFallbacksEditor);
+		final IntegerFieldEditor quickFixContextWindowEditor = new IntegerFieldEditor(
+				AiCoderPreferences.QUICK_FIX_CONTEXT_WINDOW_KEY,
+				"Context window (tokens):",
+				quickFixModelGroup);
+		quickFixContextWindowEditor.getLabelControl(quickFixModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		quickFixContextWindowEditor.getTextControl(quickFixModelGroup).setToolTipText(CONTEXT_WINDOW_TOOLTIP);
+		quickFixContextWindowEditor.setValidRange(0, 10_000_000);
+		addField(quickFixContextWindowEditor);
 		final Button quickFixModelButton = new Button(quickFixModelGroup, SWT.PUSH);
 		quickFixModelButton.setText("Select LLM...");
 		quickFixModelButton.setLayoutData(new GridData(SWT.END, SWT.CENTER, true, false, 2, 1));
@@ -119,6 +190,21 @@ public class LlmPreferencePage extends FieldEditorPreferencePage implements IWor
 				generateModelGroup);
 		generateModelEditor.getLabelControl(generateModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
 		addField(generateModelEditor);
+		final StringFieldEditor generateFallbacksEditor = new StringFieldEditor(
+				AiCoderPreferences.GENERATE_FALLBACKS_KEY,
+				"Fallbacks:",
+				generateModelGroup);
+		generateFallbacksEditor.getLabelControl(generateModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		generateFallbacksEditor.getTextControl(generateModelGroup).setToolTipText(FALLBACKS_TOOLTIP);
+		addField(generateFallbacksEditor);
+		final IntegerFieldEditor generateContextWindowEditor = new IntegerFieldEditor(
+				AiCoderPreferences.GENERATE_CONTEXT_WINDOW_KEY,
+				"Context window (tokens):",
+				generateModelGroup);
+		generateContextWindowEditor.getLabelControl(generateModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		generateContextWindowEditor.getTextControl(generateModelGroup).setToolTipText(CONTEXT_WINDOW_TOOLTIP);
+		generateContextWindowEditor.setValidRange(0, 10_000_000);
+		addField(generateContextWindowEditor);
 		final Button generateModelButton = new Button(generateModelGroup, SWT.PUSH);
 		generateModelButton.setText("Select LLM...");
 		generateModelButton.setLayoutData(new GridData(SWT.END, SWT.CENTER, true, false, 2, 1));
@@ -152,6 +238,21 @@ public class LlmPreferencePage extends FieldEditorPreferencePage implements IWor
 				editModelGroup);
 		editModelEditor.getLabelControl(editModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
 		addField(editModelEditor);
+		final StringFieldEditor editFallbacksEditor = new StringFieldEditor(
+				AiCoderPreferences.EDIT_FALLBACKS_KEY,
+				"Fallbacks:",
+				editModelGroup);
+		editFallbacksEditor.getLabelControl(editModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		editFallbacksEditor.getTextControl(editModelGroup).setToolTipText(FALLBACKS_TOOLTIP);
+		addField(editFallbacksEditor);
+		final IntegerFieldEditor editContextWindowEditor = new IntegerFieldEditor(
+				AiCoderPreferences.EDIT_CONTEXT_WINDOW_KEY,
+				"Context window (tokens):",
+				editModelGroup);
+		editContextWindowEditor.getLabelControl(editModelGroup).setLayoutData(GridDataFactory.fillDefaults().hint(LABEL_WIDTH, SWT.DEFAULT).create());
+		editContextWindowEditor.getTextControl(editModelGroup).setToolTipText(CONTEXT_WINDOW_TOOLTIP);
+		editContextWindowEditor.setValidRange(0, 10_000_000);
+		addField(editContextWindowEditor);
 		final Button editModelButton = new Button(editModelGroup, SWT.PUSH);
 		editModelButton.setText("Select LLM...");
 		editModelButton.setLayoutData(new GridData(SWT.END, SWT.CENTER, true, false, 2, 1));
@@ -1,6 +1,8 @@
 package de.hetzge.eclipse.aicoder.preferences;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridData;
@@ -33,11 +35,31 @@ public class ProviderPreferencePage extends FieldEditorPreferencePage implements
 				AiCoderPreferences.OLLAMA_BASE_URL_KEY,
 				"Base url:",
 				ollamaGroup));
+		addField(new BooleanFieldEditor(
+				AiCoderPreferences.ENABLE_OLLAMA_WARMUP_KEY,
+				"Keep models loaded while Eclipse is focused",
+				ollamaGroup));
+		final IntegerFieldEditor ollamaKeepAliveEditor = new IntegerFieldEditor(
+				AiCoderPreferences.OLLAMA_KEEP_ALIVE_MINUTES_KEY,
+				"Keep alive (minutes):",
+				ollamaGroup);
+		ollamaKeepAliveEditor.setValidRange(1, 1440);
+		addField(ollamaKeepAliveEditor);
+		final IntegerFieldEditor ollamaReleaseAfterIdleEditor = new IntegerFieldEditor(
+				AiCoderPreferences.OLLAMA_RELEASE_AFTER_IDLE_MINUTES_KEY,
+				"Release models after idle (minutes, 0 = never):",
+				ollamaGroup);
+		ollamaReleaseAfterIdleEditor.setValidRange(0, 1440);
+		addField(ollamaReleaseAfterIdleEditor);
 
 		// Mistral
 		final Group mistralGroup = new Group(getFieldEditorParent(), SWT.NONE);
 		mistralGroup.setText("Mistral");
 		mistralGroup.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+		addField(new StringFieldEditor(
+				AiCoderPreferences.CODESTRAL_BASE_URL_KEY,
+				"Base url:",
+				mistralGroup));
 		final StringFieldEditor codestralApiKeyFieldEditor = new StringFieldEditor(
 				AiCoderPreferences.CODESTRAL_API_KEY_KEY,
 				"Codestral API key:",
@@ -2,14 +2,24 @@ package de.hetzge.eclipse.aicoder.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheIterator;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
 
 import de.hetzge.eclipse.aicoder.AiCoderActivator;
 
@@ -85,11 +95,102 @@ public final class GitUtils {
 			this.ignoredPaths = ignoredPaths;
 		}
 
+		/**
+		 * @return true if the resource was ignored when the state was read
+		 */
 		public boolean isIgnored(IResource resource) {
-			if (this.repository == null) {
-				return false;
+			final String path = getRepositoryPath(resource);
+			return path != null && this.ignoredPaths.contains(path);
+		}
+
+		/**
+		 * @return a matcher of the current ignore rules, which should be used for all resources of one resource change event
+		 */
+		public IgnoreMatcher createIgnoreMatcher() {
+			return new IgnoreMatcher();
+		}
+
+		/**
+		 * Matches resources against the current ignore rules (.gitignore files, info/exclude and the global excludes file), which also covers resources created after the state
+		 * was read. Like git, a resource in an ignored folder is ignored and a resource in the index is not. The index is read once and the work tree below a matched resource is
+		 * walked once, so the resources below it are answered without reading the index or the file system again.
+		 */
+		public final class IgnoreMatcher {
+			private final List<String> walkedPaths;
+			private final Set<String> ignoredPaths;
+			private DirCache dirCache;
+
+			private IgnoreMatcher() {
+				this.walkedPaths = new ArrayList<>();
+				this.ignoredPaths = new HashSet<>();
+				this.dirCache = null;
+			}
+
+			public boolean matches(IResource resource) {
+				final String path = getRepositoryPath(resource);
+				if (path == null || path.isEmpty()) {
+					return false;
+				}
+				if (this.walkedPaths.stream().noneMatch(walkedPath -> isSameOrBelow(path, walkedPath))) {
+					try {
+						walk(path);
+					} catch (final IOException exception) {
+						AiCoderActivator.getDefault().getLog().warn("Error matching git ignore rules", exception);
+						return false;
+					}
+				}
+				return this.ignoredPaths.contains(path);
+			}
+
+			/**
+			 * Collects the ignored paths at and below the path (the content of ignored folders is not visited).
+			 */
+			private void walk(String path) throws IOException {
+				if (this.dirCache == null) {
+					this.dirCache = GitState.this.repository.readDirCache();
+				}
+				try (TreeWalk treeWalk = new TreeWalk(GitState.this.repository)) {
+					treeWalk.addTree(new FileTreeIterator(GitState.this.repository));
+					treeWalk.addTree(new DirCacheIterator(this.dirCache));
+					treeWalk.setFilter(PathFilter.create(path));
+					boolean ignoredFolder = false;
+					while (treeWalk.next()) {
+						final WorkingTreeIterator workingTreeIterator = treeWalk.getTree(0, WorkingTreeIterator.class);
+						final boolean ignored = workingTreeIterator != null && workingTreeIterator.isEntryIgnored();
+						final String entryPath = treeWalk.getPathString();
+						if (!isSameOrBelow(entryPath, path)) {
+							// a folder above the path
+							ignoredFolder |= ignored;
+						} else if ((ignoredFolder || ignored) && treeWalk.getTree(1, DirCacheIterator.class) == null) {
+							this.ignoredPaths.add(entryPath);
+							continue;
+						}
+						if (treeWalk.isSubtree()) {
+							treeWalk.enterSubtree();
+						}
+					}
+				}
+				this.walkedPaths.add(path);
+			}
+
+			private static boolean isSameOrBelow(String path, String parentPath) {
+				return path.equals(parentPath) || path.startsWith(parentPath + "/");
+			}
+		}
+
+		/**
+		 * @return the path relative to the work tree with "/" as separator or null if the resource is not part of the work tree
+		 */
+		private String getRepositoryPath(IResource resource) {
+			if (this.repository == null || resource.getLocation() == null) {
+				return null;
+			}
+			final Path workTreePath = this.repository.getWorkTree().toPath();
+			final Path resourcePath = resource.getLocation().toFile().toPath();
+			if (!resourcePath.startsWith(workTreePath)) {
+				return null;
 			}
-			return this.ignoredPaths.contains(this.repository.getWorkTree().toPath().relativize(resource.getLocation().toFile().toPath()).toString());
+			return workTreePath.relativize(resourcePath).toString().replace(File.separatorChar, '/');
 		}
 	}
 }
@@ -0,0 +1,81 @@
+package de.hetzge.eclipse.aicoder.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.eclipse.core.runtime.IPath;
+import org.junit.jupiter.api.Test;
+
+class ProjectFileTreeTest {
+
+	private static final IPath FOCUS_PATH = IPath.fromPortableString("src/main");
+
+	@Test
+	void test_render_expands_everything_that_fits() {
+		final ProjectFileTree tree = createTree();
+		assertEquals("""
+				project
+				  docs
+				    index.md
+				  pom.xml
+				  src
+				    main
+				      Main.java
+				    test
+				      MainTest.java
+				""", tree.render(FOCUS_PATH, 1000));
+	}
+
+	@Test
+	void test_render_collapses_folders_far_from_focus_path() {
+		final ProjectFileTree tree = createTree();
+		assertEquals("""
+				project
+				  docs (1 files)
+				  pom.xml
+				  src
+				    main
+				      Main.java
+				    test (1 files)
+				""", tree.render(FOCUS_PATH, 90));
+	}
+
+	@Test
+	void test_render_truncates_focus_path() {
+		final ProjectFileTree tree = createTree();
+		assertEquals("project\n...\n", tree.render(FOCUS_PATH, 20));
+	}
+
+	@Test
+	void test_add_and_remove() {
+		final ProjectFileTree tree = createTree();
+		tree.add(IPath.fromPortableString("docs/guide.md"), false);
+		tree.add(IPath.fromPortableString("target/classes/Main.class"), false);
+		tree.remove(IPath.fromPortableString("docs/index.md"));
+		tree.remove(IPath.fromPortableString("src/test"));
+		final String text = tree.render(FOCUS_PATH, 1000);
+		assertEquals("""
+				project
+				  docs
+				    guide.md
+				  pom.xml
+				  src
+				    main
+				      Main.java
+				""", text);
+		assertFalse(text.contains("target"));
+	}
+
+	private static ProjectFileTree createTree() {
+		final ProjectFileTree tree = new ProjectFileTree("project");
+		tree.add(IPath.fromPortableString("docs"), true);
+		tree.add(IPath.fromPortableString("docs/index.md"), false);
+		tree.add(IPath.fromPortableString("pom.xml"), false);
+		tree.add(IPath.fromPortableString("src"), true);
+		tree.add(IPath.fromPortableString("src/main"), true);
+		tree.add(IPath.fromPortableString("src/main/Main.java"), false);
+		tree.add(IPath.fromPortableString("src/test"), true);
+		tree.add(IPath.fromPortableString("src/test/MainTest.java"), false);
+		return tree;
+	}
+}
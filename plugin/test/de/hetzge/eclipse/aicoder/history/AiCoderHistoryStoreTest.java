@@ -0,0 +1,124 @@
+package de.hetzge.eclipse.aicoder.history;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocumentListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.hetzge.eclipse.aicoder.AiCoderActivator;
+import de.hetzge.eclipse.aicoder.CompletionMode;
+import de.hetzge.eclipse.aicoder.preferences.AiCoderPreferences;
+
+class AiCoderHistoryStoreTest {
+
+	@TempDir
+	Path stateLocation;
+
+	@AfterEach
+	void tearDown() {
+		AiCoderActivator.getDefault().getPreferenceStore().setToDefault(AiCoderPreferences.HISTORY_MAX_ENTRIES_KEY);
+	}
+
+	@Test
+	void test_bodies_are_read_lazily() throws IOException {
+		final AiCoderHistoryStore store = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		final AiCoderHistoryEntry entry = new AiCoderHistoryEntry(CompletionMode.INLINE, "Main.java", "previous");
+		store.save(entry);
+		entry.setInput("input");
+		entry.setOutput("output\nline");
+		entry.setStatus(HistoryStatus.ACCEPTED);
+		store.save(entry);
+		store.close();
+		assertTrue(entry.getPendingBodies().isEmpty());
+		assertEquals("input", entry.getInput());
+
+		final AiCoderHistoryStore reloadedStore = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		final List<AiCoderHistoryEntry> entries = reloadedStore.getEntries();
+		assertEquals(1, entries.size());
+		final AiCoderHistoryEntry reloadedEntry = entries.get(0);
+		assertEquals(HistoryStatus.ACCEPTED, reloadedEntry.getStatus());
+		assertEquals(2, reloadedEntry.getOutputLineCount());
+		assertEquals("previous", reloadedEntry.getPreviousContent());
+		assertEquals("output\nline", reloadedEntry.getOutput());
+		assertFalse(reloadedEntry.hasContent());
+		reloadedStore.close();
+	}
+
+	@Test
+	void test_retention_by_count() throws IOException {
+		AiCoderActivator.getDefault().getPreferenceStore().setValue(AiCoderPreferences.HISTORY_MAX_ENTRIES_KEY, 2);
+		final AiCoderHistoryStore store = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		for (int i = 0; i < 5; i++) {
+			store.save(new AiCoderHistoryEntry(CompletionMode.INLINE, "File" + i + ".java", "content " + i));
+		}
+		store.close();
+		final AiCoderHistoryStore reloadedStore = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		assertEquals(List.of("File4.java", "File3.java"), reloadedStore.getEntries().stream().map(AiCoderHistoryEntry::getFile).toList());
+		reloadedStore.close();
+	}
+
+	@Test
+	void test_torn_record_is_skipped() throws IOException {
+		final AiCoderHistoryStore store = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		store.save(new AiCoderHistoryEntry(CompletionMode.INLINE, "Main.java", "content"));
+		store.close();
+		try (Stream<Path> segments = Files.list(this.stateLocation.resolve("history"))) {
+			final Path segment = segments.findFirst().orElseThrow();
+			Files.writeString(segment, "{\"id\":1,\"times", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		}
+		final AiCoderHistoryStore reloadedStore = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		assertEquals(1, reloadedStore.getEntries().size());
+		assertEquals("content", reloadedStore.getEntries().get(0).getPreviousContent());
+		reloadedStore.close();
+	}
+
+	@Test
+	void test_document_snapshots_share_base() throws IOException, BadLocationException {
+		final Document document = new Document("class Main {\n}");
+		final DocumentJournal journal = new DocumentJournal(document);
+		document.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				journal.record(event);
+			}
+		});
+		final AiCoderHistoryStore store = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		final AiCoderHistoryEntry entry = new AiCoderHistoryEntry(CompletionMode.INLINE, "Main.java", journal.snapshot());
+		document.replace(13, 0, "\tint a;\n");
+		document.replace(0, 5, "record");
+		entry.setContent(journal.snapshot());
+		store.save(entry);
+		store.save(new AiCoderHistoryEntry(CompletionMode.INLINE, "Main.java", journal.snapshot()));
+		store.close();
+		assertEquals(1, entry.getBaseIds().size());
+
+		final AiCoderHistoryStore reloadedStore = AiCoderHistoryStore.load(IPath.fromPath(this.stateLocation));
+		final List<AiCoderHistoryEntry> entries = reloadedStore.getEntries();
+		assertEquals(2, entries.size());
+		assertEquals(entries.get(0).getBaseIds(), entries.get(1).getBaseIds());
+		assertEquals("class Main {\n}", entries.get(1).getPreviousContent());
+		assertEquals("record Main {\n\tint a;\n}", entries.get(1).getContent());
+		assertEquals("record Main {\n\tint a;\n}", entries.get(0).getPreviousContent());
+		reloadedStore.close();
+	}
+}
@@ -0,0 +1,82 @@
+package de.hetzge.eclipse.aicoder.inline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SyntacticBoundaryTerminatorTest {
+
+	@Test
+	void test_closed_block() {
+		final String content = "if (i > 0) {\n"
+				+ "			System.out.println(\"}\");\n"
+				+ "		}\n"
+				+ "		System.out.println(\"Hello World!\");";
+		test0("java", "\n	}\n}", content, "if (i > 0) {\n"
+				+ "			System.out.println(\"}\");\n"
+				+ "		}");
+		test0("js", "\n	}\n}", content, "if (i > 0) {\n"
+				+ "			System.out.println(\"}\");\n"
+				+ "		}");
+	}
+
+	@Test
+	void test_reopened_block() {
+		final String content = "if (i > 0) {\n"
+				+ "			a();\n"
+				+ "		} else {\n"
+				+ "			b();\n"
+				+ "		}\n"
+				+ "		c();";
+		test0("java", "", content, "if (i > 0) {\n"
+				+ "			a();\n"
+				+ "		} else {\n"
+				+ "			b();\n"
+				+ "		}");
+	}
+
+	@Test
+	void test_incomplete_line() {
+		test0("java", "", "list.forEach(item -> {\n"
+				+ "			a(item);\n"
+				+ "		})", -1);
+	}
+
+	@Test
+	void test_prefix_block() {
+		test0("java", "\n	}\n}", "a();\n"
+				+ "		b();\n"
+				+ "	}\n"
+				+ "\n"
+				+ "	void c() {", "a();\n"
+						+ "		b();");
+	}
+
+	@Test
+	void test_suffix_line() {
+		test0("java", "\n		return result;\n	}", "result = a();\n"
+				+ "		return result;\n", "result = a();");
+	}
+
+	@Test
+	void test_open_block() {
+		test0("java", "", "for (int i = 0; i < 10; i++) {\n"
+				+ "			a(i);\n", -1);
+	}
+
+	@Test
+	void test_count_mismatched_brackets() {
+		assertEquals(0, SyntacticBoundaryTerminator.countMismatchedBrackets("java", "a(b[0]);\n	}"));
+		assertEquals(2, SyntacticBoundaryTerminator.countMismatchedBrackets("java", "a(b[0);"));
+		assertEquals(1, SyntacticBoundaryTerminator.countMismatchedBrackets("txt", "if (x) {\n	a(\"}\");"));
+	}
+
+	private static void test0(String fileExtension, String suffix, String content, String expected) {
+		test0(fileExtension, suffix, content, expected.length());
+		assertEquals(expected, content.substring(0, SyntacticBoundaryTerminator.create(fileExtension, suffix).findEnd(content)));
+	}
+
+	private static void test0(String fileExtension, String suffix, String content, int expectedEnd) {
+		assertEquals(expectedEnd, SyntacticBoundaryTerminator.create(fileExtension, suffix).findEnd(content));
+	}
+}
@@ -0,0 +1,93 @@
+package de.hetzge.eclipse.aicoder.llm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import mjson.Json;
+
+class BytePairTokenizerTest {
+
+	@Test
+	void test_merge() throws IOException {
+		final BytePairTokenizer tokenizer = createTokenizer();
+		assertEquals(List.of(257, 32, 256), encode(tokenizer, "abab ab"));
+		assertEquals(3, tokenizer.countTokens("abab ab"));
+	}
+
+	@Test
+	void test_multibyte() throws IOException {
+		final BytePairTokenizer tokenizer = createTokenizer();
+		assertEquals(List.of(32, 258, 240, 159, 152, 128), encode(tokenizer, " ä😀"));
+		assertEquals(6, tokenizer.countTokens(" ä😀"));
+	}
+
+	@Test
+	void test_empty() throws IOException {
+		assertEquals(0, createTokenizer().countTokens(""));
+	}
+
+	@Test
+	void test_sentence_piece_merges_space_runs() {
+		final SentencePieceTokenizer tokenizer = createSentencePieceTokenizer();
+		assertEquals(List.of(7, 8), encode(tokenizer, "    ab"));
+		assertEquals(List.of(9, 6, 5), encode(tokenizer, " a  b"));
+		assertEquals(2, tokenizer.countTokens("    ab"));
+	}
+
+	@Test
+	void test_sentence_piece_byte_fallback() {
+		final SentencePieceTokenizer tokenizer = createSentencePieceTokenizer();
+		assertEquals(List.of(10, 11), encode(tokenizer, "ä"));
+		assertEquals(2, tokenizer.countTokens("ä"));
+	}
+
+	private static List<Integer> encode(BytePairTokenizer tokenizer, String text) {
+		final List<Integer> ids = new ArrayList<>();
+		tokenizer.encode(text, ids::add);
+		return ids;
+	}
+
+	private static List<Integer> encode(SentencePieceTokenizer tokenizer, String text) {
+		final List<Integer> ids = new ArrayList<>();
+		tokenizer.encode(text, ids::add);
+		return ids;
+	}
+
+	private static SentencePieceTokenizer createSentencePieceTokenizer() {
+		final List<String> tokens = List.of("<unk>", "x", "y", "▁", "a", "b", "▁▁", "▁▁▁▁", "ab", "▁a", "<0xC3>", "<0xA4>");
+		final Json vocabularyJson = Json.object();
+		for (int id = 0; id < tokens.size(); id++) {
+			vocabularyJson.set(tokens.get(id), id);
+		}
+		final Json tokenizerJson = Json.object().set("model", Json.object()
+				.set("vocab", vocabularyJson)
+				.set("merges", Json.array("▁ ▁", "▁▁ ▁▁", "a b", "▁ a"))
+				.set("byte_fallback", true));
+		assertTrue(SentencePieceTokenizer.isSentencePiece(tokenizerJson));
+		return SentencePieceTokenizer.loadHuggingFace(tokenizerJson);
+	}
+
+	private static BytePairTokenizer createTokenizer() throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		for (int value = 0; value < 256; value++) {
+			appendToken(builder, new byte[] { (byte) value }, value);
+		}
+		appendToken(builder, "ab".getBytes(StandardCharsets.UTF_8), 256);
+		appendToken(builder, "abab".getBytes(StandardCharsets.UTF_8), 257);
+		appendToken(builder, "ä".getBytes(StandardCharsets.UTF_8), 258);
+		return BytePairTokenizer.loadTiktoken(new ByteArrayInputStream(builder.toString().getBytes(StandardCharsets.UTF_8)), BytePairTokenizer.CL100K_PATTERN);
+	}
+
+	private static void appendToken(StringBuilder builder, byte[] token, int rank) {
+		builder.append(Base64.getEncoder().encodeToString(token)).append(' ').append(rank).append('\n');
+	}
+}
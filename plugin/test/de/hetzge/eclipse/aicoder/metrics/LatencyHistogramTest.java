@@ -0,0 +1,55 @@
+package de.hetzge.eclipse.aicoder.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void test_bucket_bounds() {
+		long previousUpperBound = -1;
+		for (long value = 0; value < 10_000_000; value += 1 + value / 64) {
+			final int index = LatencyHistogram.getBucketIndex(value);
+			final long upperBound = LatencyHistogram.getUpperBound(index);
+			assertTrue(value <= upperBound, "value " + value + " above its bucket");
+			assertTrue(upperBound - value <= Math.max(1, value / 16), "bucket of " + value + " too wide");
+			assertTrue(upperBound >= previousUpperBound);
+			previousUpperBound = upperBound;
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(LatencyHistogram.getBucketIndex(Long.MAX_VALUE)));
+	}
+
+	@Test
+	void test_percentiles() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (int millis = 1; millis <= 100; millis++) {
+			histogram.recordNanos(millis * 1_000_000L);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(100_000, histogram.getMaxMicros());
+		assertEquals(50_500, histogram.getMeanMicros(), 0.001);
+		assertWithinBucket(50_000, histogram.getValueAtPercentile(50));
+		assertWithinBucket(95_000, histogram.getValueAtPercentile(95));
+		assertWithinBucket(99_000, histogram.getValueAtPercentile(99));
+		assertEquals(100_000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	void test_open_metrics_buckets_are_cumulative() {
+		LatencyMetrics.INSTANCE.reset();
+		LatencyMetrics.INSTANCE.record(LatencyStage.RENDER, "OLLAMA - \"mock\"", 1_000_000);
+		LatencyMetrics.INSTANCE.record(LatencyStage.RENDER, "OLLAMA - \"mock\"", 3_000_000);
+		final String openMetrics = LatencyMetrics.INSTANCE.toOpenMetrics();
+		LatencyMetrics.INSTANCE.reset();
+		assertTrue(openMetrics.contains("aicoder_stage_latency_seconds_bucket{stage=\"render\",detail=\"\",model=\"OLLAMA - \\\"mock\\\"\",le=\"0.001023\"} 1\n"), openMetrics);
+		assertTrue(openMetrics.contains("le=\"+Inf\"} 2\n"), openMetrics);
+		assertTrue(openMetrics.contains("aicoder_stage_latency_seconds_count{stage=\"render\",detail=\"\",model=\"OLLAMA - \\\"mock\\\"\"} 2\n"), openMetrics);
+		assertTrue(openMetrics.endsWith("# EOF\n"));
+	}
+
+	private static void assertWithinBucket(long expected, long actual) {
+		assertTrue(actual >= expected && actual - expected <= expected / 16, "expected " + expected + " but was " + actual);
+	}
+}